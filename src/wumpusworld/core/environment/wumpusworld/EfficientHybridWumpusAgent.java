@@ -1,5 +1,8 @@
 package wumpusworld.core.environment.wumpusworld;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -10,12 +13,14 @@ import java.util.Set;
 import wumpusworld.core.agent.Notifier;
 import wumpusworld.core.logic.propositional.inference.DPLL;
 import wumpusworld.core.logic.propositional.inference.EntailmentChecker;
+import wumpusworld.core.logic.propositional.kb.data.CardinalityEncoding;
 import wumpusworld.core.search.framework.SearchForActions;
 import wumpusworld.core.search.framework.problem.GeneralProblem;
 import wumpusworld.core.search.framework.problem.Problem;
 import wumpusworld.core.search.framework.qsearch.GraphSearch;
 import wumpusworld.core.search.informed.AStarSearch;
 import wumpusworld.core.util.SetOps;
+import wumpusworld.core.util.Snapshots;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 270.<br>
@@ -85,13 +90,14 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 
 	public EfficientHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
 	                                  Notifier notifier) {
-		this(caveXDim, caveYDim, start, new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker), notifier);
+		this(caveXDim, caveYDim, start, new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker,
+				false, CardinalityEncoding.PAIRWISE, true), notifier);
 	}
 
-	public EfficientHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusKnowledgeBase kb,
+	public EfficientHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusReasoner kb,
 	                                  Notifier notifier) {
 		super(caveXDim, caveYDim, start, kb, notifier);
-		getKB().disableNavSentences(); // Optimization: Verbosity of produced sentences is reduced.
+		getReasoner().disableNavSentences(); // Optimization: Verbosity of produced sentences is reduced.
 		modelCave = new WumpusCave(caveXDim, caveYDim);
 		visitedRooms.add(currentPosition.getRoom());
 	}
@@ -106,10 +112,10 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 	public Optional<WumpusAction> act(WumpusPercept percept) {
 
 		// TELL(KB, MAKE-PERCEPT-SENTENCE(percept, t))
-		getKB().makePerceptSentence(percept, t);
+		getReasoner().makePerceptSentence(percept, t);
 		// TELL the KB the temporal "physics" sentences for time t
 		// Optimization: The agent is aware of it's position - the KB can profit from that!
-		getKB().tellTemporalPhysicsSentences(t, currentPosition);
+		getReasoner().tellTemporalPhysicsSentences(t, currentPosition);
 
 		Set<Room> safe = null;
 		Set<Room> unvisited = null;
@@ -118,7 +124,7 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 		if(plan.isEmpty()) {
 			notifyViews("Reasoning (t=" + t + ", Percept=" + percept + ", Pos=" + currentPosition + ") ...");
 			// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
-			safe = getKB().askSafeRooms(t, visitedRooms);
+			safe = getReasoner().askSafeRooms(t, visitedRooms);
 			notifyViews("Ask safe -> " + safe);
 		}
 
@@ -143,24 +149,17 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 		}
 
 		// if plan is empty and ASK(KB, HaveArrow<sup>t</sup>) = true then
-		if(plan.isEmpty() && getKB().askHaveArrow(t)) {
+		if(plan.isEmpty() && getReasoner().askHaveArrow(t)) {
 			// possible_wumpus <- {[x, y] : ASK(KB, ~W<sub>x,y</sub>) = false}
-			Set<Room> possibleWumpus = getKB().askPossibleWumpusRooms(t);
+			Set<Room> possibleWumpus = getReasoner().askPossibleWumpusRooms(t);
 			notifyViews("Ask possible Wumpus positions -> " + possibleWumpus);
 			// plan <- PLAN-SHOT(current, possible_wumpus, safe)
 			plan.addAll(planShot(possibleWumpus, safe));
 		}
 
 		// if plan is empty then //no choice but to take a risk
-		if(plan.isEmpty()) {
-			// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
-			// Optimization: Do not check visited rooms again.
-			Set<Room> notUnsafe = getKB().askNotUnsafeRooms(t, visitedRooms);
-			notifyViews("Ask not unsafe -> " + notUnsafe);
-			// plan <- PLAN-ROUTE(current, unvisited &cap; not_unsafe, safe)
-			// Correction: Last argument must be not_unsafe!
-			plan.addAll(planRouteToRooms(unvisited, notUnsafe));
-		}
+		if(plan.isEmpty())
+			plan.addAll(planRisk(unvisited, safe));
 
 		// if plan is empty then
 		if(plan.isEmpty()) {
@@ -174,7 +173,7 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 		// action <- POP(plan)
 		WumpusAction action = plan.remove();
 		// TELL(KB, MAKE-ACTION-SENTENCE(action, t))
-		getKB().makeActionSentence(action, t);
+		getReasoner().makeActionSentence(action, t);
 		// t <- t+1
 		t = t + 1;
 		updateAgentPosition(action);
@@ -192,6 +191,8 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 	 * goal from the current position.
 	 */
 	public List<WumpusAction> planRoute(Set<AgentPosition> goals, Set<Room> allowed) {
+		if(getRoutePlanner() != null)
+			return getRoutePlanner().planRoute(currentPosition, goals, allowed);
 		modelCave.setAllowed(allowed);
 		Problem<AgentPosition, WumpusAction> problem = new GeneralProblem<>(currentPosition,
 				WumpusFunctions.createActionsFunction(modelCave),
@@ -203,6 +204,48 @@ public class EfficientHybridWumpusAgent extends HybridWumpusAgent {
 		return actions.orElse(Collections.emptyList());
 	}
 
+	/**
+	 * Plans a route into a room which is not known to be safe. This is the
+	 * step where the agent has no choice but to take a risk.
+	 *
+	 * @param unvisited the unvisited rooms.
+	 * @param safe the rooms known to be safe.
+	 * @return the sequence of actions to reach one of the unvisited rooms which
+	 * are not unsafe.
+	 */
+	protected List<WumpusAction> planRisk(Set<Room> unvisited, Set<Room> safe) {
+		// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
+		// Optimization: Do not check visited rooms again.
+		Set<Room> notUnsafe = getReasoner().askNotUnsafeRooms(t, visitedRooms);
+		notifyViews("Ask not unsafe -> " + notUnsafe);
+		// plan <- PLAN-ROUTE(current, unvisited &cap; not_unsafe, safe)
+		// Correction: Last argument must be not_unsafe!
+		return planRouteToRooms(unvisited, notUnsafe);
+	}
+
+	protected Set<Room> getVisitedRooms() {
+		return visitedRooms;
+	}
+
+	@Override
+	protected void writeState(DataOutputStream out) throws IOException {
+		super.writeState(out);
+		out.writeInt(visitedRooms.size());
+		for(Room room : visitedRooms) {
+			out.writeInt(room.getX());
+			out.writeInt(room.getY());
+		}
+	}
+
+	@Override
+	protected void readState(ByteBuffer in) throws IOException {
+		super.readState(in);
+		int numRooms = Snapshots.checkIndex(in.getInt(), in.remaining() / 8 + 1);
+		visitedRooms.clear();
+		for(int i = 0; i < numRooms; i++)
+			visitedRooms.add(new Room(in.getInt(), in.getInt()));
+	}
+
 	/**
 	 * Uses the model cave to update the current agent position.
 	 */
@@ -1,5 +1,11 @@
 package wumpusworld.core.environment.wumpusworld;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -13,6 +19,7 @@ import wumpusworld.core.agent.Notifier;
 import wumpusworld.core.agent.impl.SimpleAgent;
 import wumpusworld.core.logic.propositional.inference.DPLL;
 import wumpusworld.core.logic.propositional.inference.EntailmentChecker;
+import wumpusworld.core.logic.propositional.kb.data.CardinalityEncoding;
 import wumpusworld.core.search.framework.Metrics;
 import wumpusworld.core.search.framework.SearchForActions;
 import wumpusworld.core.search.framework.problem.GeneralProblem;
@@ -20,6 +27,7 @@ import wumpusworld.core.search.framework.problem.Problem;
 import wumpusworld.core.search.framework.qsearch.GraphSearch;
 import wumpusworld.core.search.informed.AStarSearch;
 import wumpusworld.core.util.SetOps;
+import wumpusworld.core.util.Snapshots;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 270.<br>
@@ -77,6 +85,8 @@ import wumpusworld.core.util.SetOps;
  * @author Ruediger Lunde
  */
 public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction> {
+	private static final int STATE_MAGIC = 0x48574131; // "HWA1"
+	private static final int STATE_VERSION = 1;
 
 	private final Notifier notifier;
 	protected AgentPosition start;
@@ -89,7 +99,13 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 	/// plan, an action sequence, initially empty
 	protected Queue<WumpusAction> plan = new LinkedList<>(); // FIFOQueue
 	/// persistent: KB, a knowledge base, initially the atemporal "wumpus physics"
-	private WumpusKnowledgeBase kb;
+	private WumpusReasoner kb;
+	// position tracking (see enablePositionTracking)
+	private WumpusCave positionModel;
+	private AgentPosition previousPosition; // position before the last action
+	private int verificationInterval = -1; // -1: the KB is told the tracked position
+	private int reasoningSteps;
+	private WumpusRoutePlanner routePlanner; // null: A* search
 
 	public HybridWumpusAgent() {
 		// i.e. default is a 4x4 world as depicted in figure 7.2
@@ -102,10 +118,11 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 
 	public HybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
 	                         Notifier notifier) {
-		this(caveXDim, caveYDim, start, new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker), notifier);
+		this(caveXDim, caveYDim, start, new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker,
+				false, CardinalityEncoding.PAIRWISE, true), notifier);
 	}
 
-	public HybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusKnowledgeBase kb,
+	public HybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusReasoner kb,
 	                         Notifier notifier) {
 		this.kb = kb;
 		this.start = start;
@@ -113,10 +130,80 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 		this.notifier = notifier;
 	}
 
-	public WumpusKnowledgeBase getKB() {
+	public WumpusReasoner getReasoner() {
 		return kb;
 	}
 
+	/**
+	 * @return the knowledge base of the agent or null if another reasoner is used.
+	 */
+	public WumpusKnowledgeBase getKB() {
+		return kb instanceof WumpusKnowledgeBase ? (WumpusKnowledgeBase) kb : null;
+	}
+
+	/**
+	 * Optimization: The agent keeps its position up to date with a forward
+	 * model of its actions (as {@link EfficientHybridWumpusAgent} does) instead
+	 * of asking the KB for its location and orientation in each reasoning step,
+	 * which costs up to W&times;H+4 entailment checks. The tracked position is
+	 * told to the KB, and the navigation successor-state axioms are disabled.
+	 * Must be called before the first step.
+	 */
+	public void enablePositionTracking() {
+		initPositionTracking(-1);
+		kb.disableNavSentences();
+	}
+
+	/**
+	 * Debug version of {@link #enablePositionTracking()}: The KB keeps the
+	 * navigation successor-state axioms and derives the position on its own,
+	 * so that the tracked position can be verified against it (see
+	 * {@link #verifyPosition()}).
+	 *
+	 * @param verificationInterval if positive, the position is verified in every
+	 * n-th reasoning step (i.e. step with empty plan), otherwise only on demand.
+	 */
+	public void enablePositionTracking(int verificationInterval) {
+		initPositionTracking(Math.max(verificationInterval, 0));
+	}
+
+	/**
+	 * Optimization: Routes are planned incrementally by D* Lite (see
+	 * {@link WumpusRoutePlanner}) instead of a new A* search for each route.
+	 */
+	public void enableIncrementalRoutePlanning() {
+		routePlanner = new WumpusRoutePlanner(kb.getCaveXDimension(), kb.getCaveYDimension());
+	}
+
+	/**
+	 * @return the incremental route planner or null if routes are planned by A* search.
+	 */
+	protected WumpusRoutePlanner getRoutePlanner() {
+		return routePlanner;
+	}
+
+	/**
+	 * @return the position of the agent. Without position tracking, it is only
+	 * updated in reasoning steps.
+	 */
+	public AgentPosition getCurrentPosition() {
+		return currentPosition;
+	}
+
+	/**
+	 * Compares the tracked position with the position entailed by the KB at the
+	 * current time.
+	 *
+	 * @throws IllegalStateException if the positions differ or the KB does not
+	 * entail a position (e.g. because the navigation axioms are disabled).
+	 */
+	public void verifyPosition() {
+		AgentPosition entailed = kb.askCurrentPosition(t);
+		if(!entailed.equals(currentPosition))
+			throw new IllegalStateException("Tracked position " + currentPosition + " differs from position "
+					+ entailed + " entailed by the KB at time " + t + ".");
+	}
+
 	/**
 	 * function HYBRID-WUMPUS-AGENT(percept) returns an action<br>
 	 *
@@ -128,8 +215,13 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 
 		/// TELL(KB, MAKE-PERCEPT-SENTENCE(percept, t))
 		kb.makePerceptSentence(percept, t);
+		if(positionModel != null && percept.isBump())
+			currentPosition = previousPosition; // the last move forward failed
 		/// TELL the KB the temporal "physics" sentences for time t
-		kb.tellTemporalPhysicsSentences(t);
+		if(positionModel != null && verificationInterval < 0)
+			kb.tellTemporalPhysicsSentences(t, currentPosition);
+		else
+			kb.tellTemporalPhysicsSentences(t);
 
 		Set<Room> safe = null;
 		Set<Room> unvisited = null;
@@ -137,8 +229,12 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 		// Optimization: Do not ask anything during plan execution (different from pseudo-code)
 		if(plan.isEmpty()) {
 			notifyViews("Reasoning (t=" + t + ", Percept=" + percept + ") ...");
-			currentPosition = kb.askCurrentPosition(t);
-			notifyViews("Ask position -> " + currentPosition);
+			if(positionModel == null) {
+				currentPosition = kb.askCurrentPosition(t);
+				notifyViews("Ask position -> " + currentPosition);
+			} else if(verificationInterval > 0 && reasoningSteps++ % verificationInterval == 0) {
+				verifyPosition();
+			}
 			/// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
 			safe = kb.askSafeRooms(t);
 			notifyViews("Ask safe -> " + safe);
@@ -197,6 +293,8 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 		kb.makeActionSentence(action, t);
 		/// t <- t+1
 		t = t + 1;
+		if(positionModel != null)
+			updateTrackedPosition(action);
 		/// return action
 		return Optional.of(action);
 	}
@@ -229,6 +327,8 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 	 * goal from the current position.
 	 */
 	public List<WumpusAction> planRoute(Set<AgentPosition> goals, Set<Room> allowed) {
+		if(routePlanner != null)
+			return routePlanner.planRoute(currentPosition, goals, allowed);
 
 		WumpusCave cave = new WumpusCave(kb.getCaveXDimension(), kb.getCaveYDimension()).setAllowed(allowed);
 		Problem<AgentPosition, WumpusAction> problem = new GeneralProblem<>(currentPosition,
@@ -284,6 +384,105 @@ public class HybridWumpusAgent extends SimpleAgent<WumpusPercept, WumpusAction>
 		return kb.getMetrics();
 	}
 
+	/**
+	 * Writes the planning state of the agent (time, plan, current position, and
+	 * the state added by subclasses) to the channel, e.g. a
+	 * {@link java.nio.channels.FileChannel}. The knowledge base is not included,
+	 * it can be saved to the same channel by
+	 * {@link WumpusKnowledgeBase#saveSnapshot(WritableByteChannel)}.
+	 */
+	public void saveState(WritableByteChannel channel) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		Snapshots.writeHeader(out, STATE_MAGIC, STATE_VERSION);
+		writeState(out);
+		out.flush();
+		Snapshots.write(channel, bytes);
+	}
+
+	/**
+	 * Restores the planning state which has been written by
+	 * {@link #saveState(WritableByteChannel)}. Together with a restored knowledge
+	 * base (see {@link WumpusKnowledgeBase#loadSnapshot(ByteBuffer, EntailmentChecker)}),
+	 * the agent continues the game where the saved agent stopped.
+	 *
+	 * @throws IOException if the buffer does not contain a valid state.
+	 */
+	public void restoreState(ByteBuffer in) throws IOException {
+		try {
+			Snapshots.readHeader(in, STATE_MAGIC, STATE_VERSION);
+			readState(in);
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Truncated snapshot.", e);
+		}
+	}
+
+	/**
+	 * Writes the state of the agent. Subclasses with additional state extend this method.
+	 */
+	protected void writeState(DataOutputStream out) throws IOException {
+		out.writeInt(t);
+		writePosition(out, currentPosition);
+		out.writeInt(plan.size());
+		for(WumpusAction action : plan)
+			out.writeInt(action.ordinal());
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutputStream)}.
+	 */
+	protected void readState(ByteBuffer in) throws IOException {
+		t = in.getInt();
+		currentPosition = readPosition(in);
+		previousPosition = currentPosition;
+		WumpusAction[] actions = WumpusAction.values();
+		int planSize = Snapshots.checkIndex(in.getInt(), in.remaining() / 4 + 1);
+		plan.clear();
+		for(int i = 0; i < planSize; i++)
+			plan.add(actions[Snapshots.checkIndex(in.getInt(), actions.length)]);
+	}
+
+	protected static void writePosition(DataOutputStream out, AgentPosition position) throws IOException {
+		out.writeInt(position.getX());
+		out.writeInt(position.getY());
+		out.writeInt(position.getOrientation().ordinal());
+	}
+
+	protected static AgentPosition readPosition(ByteBuffer in) throws IOException {
+		int x = in.getInt();
+		int y = in.getInt();
+		AgentPosition.Orientation[] orientations = AgentPosition.Orientation.values();
+		return new AgentPosition(x, y, orientations[Snapshots.checkIndex(in.getInt(), orientations.length)]);
+	}
+
+	private void initPositionTracking(int verificationInterval) {
+		if(t > 0)
+			throw new IllegalStateException("Position tracking must be enabled before the first step.");
+		positionModel = new WumpusCave(kb.getCaveXDimension(), kb.getCaveYDimension());
+		previousPosition = currentPosition;
+		this.verificationInterval = verificationInterval;
+	}
+
+	/**
+	 * Applies the action to the tracked position. The model cave has the same
+	 * walls as the real cave, so moving into a wall is predicted correctly.
+	 * Bump percepts are taken into account nevertheless (see {@link #act(WumpusPercept)}).
+	 */
+	private void updateTrackedPosition(WumpusAction action) {
+		previousPosition = currentPosition;
+		switch(action) {
+			case FORWARD:
+				currentPosition = positionModel.moveForward(currentPosition);
+				break;
+			case TURN_LEFT:
+				currentPosition = positionModel.turnLeft(currentPosition);
+				break;
+			case TURN_RIGHT:
+				currentPosition = positionModel.turnRight(currentPosition);
+				break;
+		}
+	}
+
 	protected void notifyViews(String msg) {
 		if(notifier != null)
 			notifier.notify(msg);
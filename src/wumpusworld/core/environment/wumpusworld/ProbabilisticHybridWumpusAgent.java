@@ -0,0 +1,123 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import wumpusworld.core.agent.Notifier;
+import wumpusworld.core.logic.propositional.inference.DPLL;
+import wumpusworld.core.logic.propositional.inference.EntailmentChecker;
+import wumpusworld.core.logic.propositional.kb.data.CardinalityEncoding;
+import wumpusworld.core.search.framework.Metrics;
+
+/**
+ * A variant of the {@link EfficientHybridWumpusAgent} which takes calculated
+ * risks. The logical agent chooses any room which is not provably unsafe when
+ * there is no safe room left to explore. This agent additionally computes the
+ * probability of death for each candidate room next to the explored area (see
+ * {@link WumpusProbabilityModel}) and enters the room with the lowest risk.
+ */
+public class ProbabilisticHybridWumpusAgent extends EfficientHybridWumpusAgent {
+
+	private final WumpusProbabilityModel model;
+
+	public ProbabilisticHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start) {
+		this(caveXDim, caveYDim, start, new DPLL(), null);
+	}
+
+	public ProbabilisticHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start,
+	                                      EntailmentChecker checker, Notifier notifier) {
+		this(caveXDim, caveYDim, start, new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker,
+				false, CardinalityEncoding.PAIRWISE, true), notifier);
+	}
+
+	public ProbabilisticHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusReasoner kb,
+	                                      Notifier notifier) {
+		this(caveXDim, caveYDim, start, kb, notifier, WumpusProbabilityModel.DEFAULT_PIT_PROBABILITY);
+	}
+
+	/**
+	 * @param pitProbability the prior probability of a pit in a room.
+	 */
+	public ProbabilisticHybridWumpusAgent(int caveXDim, int caveYDim, AgentPosition start, WumpusReasoner kb,
+	                                      Notifier notifier, double pitProbability) {
+		super(caveXDim, caveYDim, start, kb, notifier);
+		model = new WumpusProbabilityModel(caveXDim, caveYDim, start.getRoom(), pitProbability);
+	}
+
+	public WumpusProbabilityModel getProbabilityModel() {
+		return model;
+	}
+
+	@Override
+	public Optional<WumpusAction> act(WumpusPercept percept) {
+		model.observe(currentPosition.getRoom(), percept);
+		return super.act(percept);
+	}
+
+	/**
+	 * Plans a route into the unvisited room with the lowest risk. Only rooms
+	 * which are not provably unsafe and can be reached via safe rooms are
+	 * considered.
+	 */
+	@Override
+	protected List<WumpusAction> planRisk(Set<Room> unvisited, Set<Room> safe) {
+		Set<Room> notUnsafe = getReasoner().askNotUnsafeRooms(t, getVisitedRooms());
+		notifyViews("Ask not unsafe -> " + notUnsafe);
+		List<Room> candidates = new ArrayList<>();
+		for(Room room : unvisited) {
+			if(notUnsafe.contains(room) && isAdjacent(room, safe))
+				candidates.add(room);
+		}
+		candidates.sort(Comparator.comparingDouble(model::getRisk));
+		for(Room room : candidates) {
+			Set<Room> allowed = new LinkedHashSet<>(safe);
+			allowed.add(room);
+			List<WumpusAction> result = planRouteToRooms(Collections.singleton(room), allowed);
+			if(!result.isEmpty()) {
+				notifyViews("Taking risk " + model.getRisk(room) + " -> " + room);
+				return result;
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	@Override
+	protected void writeState(DataOutputStream out) throws IOException {
+		super.writeState(out);
+		model.writeState(out);
+	}
+
+	@Override
+	protected void readState(ByteBuffer in) throws IOException {
+		super.readState(in);
+		model.readState(in);
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = super.getMetrics();
+		result.set("risk.cache.hits", model.getCacheHits());
+		result.set("risk.cache.misses", model.getCacheMisses());
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private static boolean isAdjacent(Room room, Set<Room> rooms) {
+		for(Room other : rooms) {
+			if(Math.abs(room.getX() - other.getX()) + Math.abs(room.getY() - other.getY()) == 1)
+				return true;
+		}
+		return false;
+	}
+}
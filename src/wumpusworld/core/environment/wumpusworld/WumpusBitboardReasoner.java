@@ -0,0 +1,389 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import wumpusworld.core.logic.propositional.inference.IndexedDPLL;
+import wumpusworld.core.search.framework.Metrics;
+
+/**
+ * A reasoner which is specialized to the fixed structure of the wumpus world
+ * and gives the same answers as the {@link WumpusKnowledgeBase}. The knowledge
+ * about the cave is kept in bit sets indexed by room (bitboards): visited
+ * rooms, breezy rooms, rooms known to be free of pits, and rooms which can
+ * still contain the wumpus. Each observation updates the bitboards by a few
+ * word-parallel operations:
+ * <ul>
+ * <li>A room without breeze makes its neighbours pit-free.</li>
+ * <li>A room with breeze requires a pit in one of its neighbours. A pit is
+ * known as soon as only one neighbour of a breezy room is not pit-free.</li>
+ * <li>Exactly one room contains the wumpus. A room with stench restricts the
+ * wumpus candidates to its neighbours, a room without stench removes its
+ * neighbours.</li>
+ * </ul>
+ * Pits and wumpus do not constrain each other and the clauses about pits are
+ * monotone, so these rules are complete: A pit (the wumpus) is entailed
+ * exactly in the cases described above and no enumeration of frontier
+ * configurations is needed.<br>
+ * <br>
+ * In verification mode (see {@link #enableVerification(WumpusKnowledgeBase)}),
+ * every tell is passed on to a knowledge base and every answer is compared with
+ * the answer of the knowledge base.
+ */
+public class WumpusBitboardReasoner implements WumpusReasoner {
+	private final int caveXDimension;
+	private final int caveYDimension;
+	private final AgentPosition start;
+	private final WumpusCave modelCave;
+	private final BitSet[] neighbours;
+	//
+	private final BitSet visited = new BitSet();
+	private final BitSet breezy = new BitSet();
+	private final BitSet smelly = new BitSet();
+	private final BitSet pitFree = new BitSet();
+	private final BitSet wumpusCandidates = new BitSet();
+	private final BitSet glitterTimes = new BitSet();
+	private AgentPosition currentPosition;
+	private WumpusPercept lastPercept;
+	private WumpusAction lastAction;
+	private int lastActionTime = -1;
+	private int shotTime = Integer.MAX_VALUE;
+	private int screamTime = Integer.MAX_VALUE;
+	//
+	private WumpusKnowledgeBase verifier;
+	private long queries;
+	private long reasoningTime; // in nanoseconds
+
+	public WumpusBitboardReasoner(int caveXDim, int caveYDim) {
+		this(caveXDim, caveYDim, new AgentPosition(1, 1, AgentPosition.Orientation.FACING_NORTH));
+	}
+
+	/**
+	 * Creates a reasoner which knows the atemporal "wumpus physics".
+	 *
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param start the initial position of the agent.
+	 */
+	public WumpusBitboardReasoner(int caveXDim, int caveYDim, AgentPosition start) {
+		caveXDimension = caveXDim;
+		caveYDimension = caveYDim;
+		this.start = start;
+		modelCave = new WumpusCave(caveXDim, caveYDim);
+		currentPosition = start;
+		neighbours = new BitSet[caveXDim * caveYDim];
+		for(int x = 1; x <= caveXDim; x++) {
+			for(int y = 1; y <= caveYDim; y++) {
+				BitSet n = new BitSet();
+				if(x > 1)
+					n.set(index(x - 1, y));
+				if(x < caveXDim)
+					n.set(index(x + 1, y));
+				if(y > 1)
+					n.set(index(x, y - 1));
+				if(y < caveYDim)
+					n.set(index(x, y + 1));
+				neighbours[index(x, y)] = n;
+			}
+		}
+		int s = index(start.getX(), start.getY());
+		pitFree.set(s);
+		wumpusCandidates.set(0, neighbours.length);
+		wumpusCandidates.clear(s);
+	}
+
+	/**
+	 * Enables verification against a knowledge base with the DPLL entailment checker.
+	 */
+	public void enableVerification() {
+		enableVerification(new WumpusKnowledgeBase(caveXDimension, caveYDimension, start, new IndexedDPLL()));
+	}
+
+	/**
+	 * Enables verification mode: All tells are passed on to the given knowledge
+	 * base, and each answer is compared with the answer of the knowledge base.
+	 * Must be called before the first tell.
+	 *
+	 * @param kb a knowledge base for the same cave and start position.
+	 * @throws IllegalStateException on each disagreement, with both answers in the message.
+	 */
+	public void enableVerification(WumpusKnowledgeBase kb) {
+		verifier = kb;
+	}
+
+	@Override
+	public int getCaveXDimension() {
+		return caveXDimension;
+	}
+
+	@Override
+	public int getCaveYDimension() {
+		return caveYDimension;
+	}
+
+	/**
+	 * Navigation sentences are not needed by this reasoner, only the knowledge
+	 * base used for verification is affected.
+	 */
+	@Override
+	public void disableNavSentences() {
+		if(verifier != null)
+			verifier.disableNavSentences();
+	}
+
+	@Override
+	public void makePerceptSentence(WumpusPercept p, int time) {
+		lastPercept = p;
+		if(p.isGlitter())
+			glitterTimes.set(time);
+		if(p.isScream())
+			screamTime = Math.min(screamTime, time);
+		if(verifier != null)
+			verifier.makePerceptSentence(p, time);
+	}
+
+	@Override
+	public void makeActionSentence(WumpusAction a, int time) {
+		lastAction = a;
+		lastActionTime = time;
+		if(a == WumpusAction.SHOOT)
+			shotTime = Math.min(shotTime, time);
+		if(verifier != null)
+			verifier.makeActionSentence(a, time);
+	}
+
+	/**
+	 * Derives the current position from the last action and the bump percept
+	 * and adds the percept of time t to the knowledge about the current room.
+	 */
+	@Override
+	public void tellTemporalPhysicsSentences(int t) {
+		long tStart = System.nanoTime();
+		if(lastActionTime == t - 1 && lastAction != null) {
+			switch(lastAction) {
+				case FORWARD:
+					if(!lastPercept.isBump())
+						currentPosition = modelCave.moveForward(currentPosition);
+					break;
+				case TURN_LEFT:
+					currentPosition = modelCave.turnLeft(currentPosition);
+					break;
+				case TURN_RIGHT:
+					currentPosition = modelCave.turnRight(currentPosition);
+					break;
+			}
+		}
+		observe(currentPosition);
+		reasoningTime += System.nanoTime() - tStart;
+		if(verifier != null)
+			verifier.tellTemporalPhysicsSentences(t);
+	}
+
+	@Override
+	public void tellTemporalPhysicsSentences(int t, AgentPosition agentPosition) {
+		long tStart = System.nanoTime();
+		currentPosition = agentPosition;
+		observe(agentPosition);
+		reasoningTime += System.nanoTime() - tStart;
+		if(verifier != null)
+			verifier.tellTemporalPhysicsSentences(t, agentPosition);
+	}
+
+	@Override
+	public AgentPosition askCurrentPosition(int t) {
+		queries++;
+		AgentPosition result = currentPosition;
+		if(verifier != null)
+			verify("askCurrentPosition(" + t + ")", result, verifier.askCurrentPosition(t));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askSafeRooms(int t) {
+		Set<Room> result = safeRooms(t, visited);
+		if(verifier != null)
+			verify("askSafeRooms(" + t + ")", result, verifier.askSafeRooms(t));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askSafeRooms(int t, Set<Room> visited) {
+		Set<Room> result = safeRooms(t, toBitSet(visited));
+		if(verifier != null)
+			verify("askSafeRooms(" + t + ", " + visited + ")", result, verifier.askSafeRooms(t, visited));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askNotUnsafeRooms(int t) {
+		Set<Room> result = notUnsafeRooms(t, new BitSet());
+		if(verifier != null)
+			verify("askNotUnsafeRooms(" + t + ")", result, verifier.askNotUnsafeRooms(t));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askNotUnsafeRooms(int t, Set<Room> visited) {
+		Set<Room> result = notUnsafeRooms(t, toBitSet(visited));
+		if(verifier != null)
+			verify("askNotUnsafeRooms(" + t + ", " + visited + ")", result, verifier.askNotUnsafeRooms(t, visited));
+		return result;
+	}
+
+	@Override
+	public boolean askGlitter(int t) {
+		queries++;
+		boolean result = glitterTimes.get(t) || isInconsistent();
+		if(verifier != null)
+			verify("askGlitter(" + t + ")", result, verifier.askGlitter(t));
+		return result;
+	}
+
+	@Override
+	public boolean askHaveArrow(int t) {
+		queries++;
+		boolean result = t <= shotTime || isInconsistent();
+		if(verifier != null)
+			verify("askHaveArrow(" + t + ")", result, verifier.askHaveArrow(t));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askPossibleWumpusRooms(int t) {
+		long tStart = System.nanoTime();
+		queries++;
+		// ~W is entailed for all rooms which are no candidates
+		Set<Room> result = isInconsistent() ? Collections.emptySet() : toRooms(wumpusCandidates::get);
+		reasoningTime += System.nanoTime() - tStart;
+		if(verifier != null)
+			verify("askPossibleWumpusRooms(" + t + ")", result, verifier.askPossibleWumpusRooms(t));
+		return result;
+	}
+
+	@Override
+	public Set<Room> askUnvisitedRooms(int t) {
+		queries++;
+		Set<Room> result = isInconsistent() ? Collections.emptySet() : toRooms(i -> !visited.get(i));
+		if(verifier != null)
+			verify("askUnvisitedRooms(" + t + ")", result, verifier.askUnvisitedRooms(t));
+		return result;
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = verifier != null ? verifier.getMetrics() : new Metrics();
+		result.set("reasoner.queries", queries);
+		result.set("reasoner.time[ms]", reasoningTime / 1e6);
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private int index(int x, int y) {
+		return (x - 1) * caveYDimension + y - 1;
+	}
+
+	private void observe(AgentPosition position) {
+		int i = index(position.getX(), position.getY());
+		visited.set(i);
+		if(lastPercept == null)
+			return;
+		if(lastPercept.isBreeze())
+			breezy.set(i);
+		else
+			pitFree.or(neighbours[i]);
+		if(lastPercept.isStench()) {
+			smelly.set(i);
+			wumpusCandidates.and(neighbours[i]);
+		} else {
+			wumpusCandidates.andNot(neighbours[i]);
+		}
+	}
+
+	/**
+	 * Returns the rooms which must contain a pit: the only neighbour of a
+	 * breezy room which is not known to be pit-free.
+	 *
+	 * @return the pits or null if the observations are inconsistent.
+	 */
+	private BitSet knownPits() {
+		BitSet result = new BitSet();
+		BitSet candidates = new BitSet();
+		for(int i = breezy.nextSetBit(0); i >= 0; i = breezy.nextSetBit(i + 1)) {
+			candidates.clear();
+			candidates.or(neighbours[i]);
+			candidates.andNot(pitFree);
+			int numCandidates = candidates.cardinality();
+			if(numCandidates == 0)
+				return null;
+			if(numCandidates == 1)
+				result.or(candidates);
+		}
+		return result;
+	}
+
+	/**
+	 * An inconsistent knowledge base entails everything.
+	 */
+	private boolean isInconsistent() {
+		return wumpusCandidates.isEmpty() || knownPits() == null;
+	}
+
+	// OK is entailed if ~P is entailed and (the wumpus is dead or ~W is entailed)
+	private Set<Room> safeRooms(int t, BitSet visited) {
+		long tStart = System.nanoTime();
+		queries++;
+		boolean alive = t < screamTime;
+		Set<Room> result = isInconsistent() ? toRooms(i -> true) : toRooms(i -> visited.get(i)
+				|| pitFree.get(i) && (!alive || !wumpusCandidates.get(i)));
+		reasoningTime += System.nanoTime() - tStart;
+		return result;
+	}
+
+	// ~OK is entailed if P is entailed or (the wumpus is alive and W is entailed)
+	private Set<Room> notUnsafeRooms(int t, BitSet visited) {
+		long tStart = System.nanoTime();
+		queries++;
+		boolean alive = t < screamTime;
+		BitSet pits = knownPits();
+		Set<Room> result;
+		if(pits == null || wumpusCandidates.isEmpty()) {
+			result = toRooms(visited::get);
+		} else {
+			int wumpus = wumpusCandidates.cardinality() == 1 ? wumpusCandidates.nextSetBit(0) : -1;
+			result = toRooms(i -> visited.get(i) || !pits.get(i) && !(alive && i == wumpus));
+		}
+		reasoningTime += System.nanoTime() - tStart;
+		return result;
+	}
+
+	private BitSet toBitSet(Set<Room> rooms) {
+		BitSet result = new BitSet();
+		for(Room r : rooms)
+			result.set(index(r.getX(), r.getY()));
+		return result;
+	}
+
+	/**
+	 * Returns the selected rooms in the order used by the knowledge base (x first, then y).
+	 */
+	private Set<Room> toRooms(IntPredicate selected) {
+		Set<Room> result = new LinkedHashSet<>();
+		for(int x = 1; x <= caveXDimension; x++)
+			for(int y = 1; y <= caveYDimension; y++)
+				if(selected.test(index(x, y)))
+					result.add(new Room(x, y));
+		return result;
+	}
+
+	private static void verify(String query, Object answer, Object expected) {
+		if(!answer.equals(expected))
+			throw new IllegalStateException("Reasoner disagrees with knowledge base on " + query
+					+ ": " + answer + " instead of " + expected);
+	}
+}
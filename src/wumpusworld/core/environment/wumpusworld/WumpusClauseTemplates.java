@@ -0,0 +1,147 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Precomputed CNF templates for the sentences of the wumpus physics. A
+ * template is a list of clauses over placeholder literals: code i + 1 stands
+ * for the i-th argument of {@link #instantiate(int[][], PropositionSymbol...)},
+ * code -(i + 1) for its negation. The templates are computed once by
+ * eliminating the biconditionals and distributing OR over AND, exactly as
+ * the CNF conversion does for each told sentence, so that telling the
+ * instantiated clauses is equivalent to telling the sentences.
+ */
+class WumpusClauseTemplates {
+
+	/**
+	 * L &rArr; (Percept &hArr; Property), arguments: L, Percept, Property.
+	 */
+	static final int[][] PERCEPT_LINK = {{-1, -2, 3}, {-1, 2, -3}};
+
+	/**
+	 * OK &hArr; &not;P &and; &not;(W &and; WumpusAlive), arguments: OK, P, W, WumpusAlive.
+	 */
+	static final int[][] OK_TO_MOVE_INTO = {{-1, -2}, {-1, -3, -4}, {1, 2, 3}, {1, 2, 4}};
+
+	/**
+	 * F' &hArr; F &and; &not;E, arguments: F', F, E.
+	 */
+	static final int[][] FLUENT_AND_NOT = equivalence(1, new int[][][]{{{2}, {-3}}});
+
+	/**
+	 * F' &hArr; (A1 &and; B1) &or; (A2 &and; B2) &or; (F &and; &not;TurnLeft &and; &not;TurnRight),
+	 * arguments: F', A1, B1, A2, B2, F, TurnLeft, TurnRight.
+	 */
+	static final int[][] ORIENTATION = equivalence(1, new int[][][]{
+			{{2}, {3}}, {{4}, {5}}, {{6}, {-7}, {-8}}});
+
+	/**
+	 * Property &hArr; N1 &or; ... &or; Nk, indexed by k, arguments: Property, N1, ..., Nk.
+	 */
+	static final int[][][] NEIGHBOURHOOD = new int[5][][];
+
+	/**
+	 * L' &hArr; (L &and; (&not;Forward &or; Bump')) &or; (L1 &and; Facing1 &and; Forward) &or; ...
+	 * &or; (Lk &and; Facingk &and; Forward), indexed by k, arguments: L', L, Forward, Bump', L1,
+	 * Facing1, ..., Lk, Facingk.
+	 */
+	static final int[][][] LOCATION = new int[5][][];
+
+	static {
+		for(int k = 0; k < 5; k++) {
+			int[][][] disjuncts = new int[k][][];
+			for(int i = 0; i < k; i++)
+				disjuncts[i] = new int[][]{{i + 2}};
+			NEIGHBOURHOOD[k] = equivalence(1, disjuncts);
+
+			disjuncts = new int[k + 1][][];
+			disjuncts[0] = new int[][]{{2}, {-3, 4}};
+			for(int i = 0; i < k; i++)
+				disjuncts[i + 1] = new int[][]{{5 + 2 * i}, {6 + 2 * i}, {3}};
+			LOCATION[k] = equivalence(1, disjuncts);
+		}
+	}
+
+	/**
+	 * Creates the clauses of a template.
+	 *
+	 * @param template a template.
+	 * @param args the symbols to be used for the placeholders.
+	 * @return the instantiated clauses.
+	 */
+	static List<Clause> instantiate(int[][] template, PropositionSymbol... args) {
+		List<Clause> result = new ArrayList<>(template.length);
+		for(int[] clause : template) {
+			Literal[] literals = new Literal[clause.length];
+			for(int i = 0; i < clause.length; i++)
+				literals[i] = new Literal(args[Math.abs(clause[i]) - 1], clause[i] > 0);
+			result.add(new Clause(literals));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the CNF of head &hArr; D1 &or; ... &or; Dn where each disjunct is
+	 * given as a conjunction of clauses.
+	 */
+	static int[][] equivalence(int head, int[][][] disjuncts) {
+		Set<List<Integer>> result = new LinkedHashSet<>();
+		// head => D1 v ... v Dn: one clause of each disjunct, distributed
+		product(-head, disjuncts, 0, new ArrayList<>(), result);
+		// Di => head: ~Di v head, where ~Di is a disjunction of conjunctions of negated literals
+		for(int[][] disjunct : disjuncts) {
+			int[][][] negated = new int[disjunct.length][][];
+			for(int i = 0; i < disjunct.length; i++) {
+				negated[i] = new int[disjunct[i].length][];
+				for(int j = 0; j < disjunct[i].length; j++)
+					negated[i][j] = new int[]{-disjunct[i][j]};
+			}
+			product(head, negated, 0, new ArrayList<>(), result);
+		}
+		int[][] clauses = new int[result.size()][];
+		int i = 0;
+		for(List<Integer> clause : result)
+			clauses[i++] = clause.stream().mapToInt(Integer::intValue).toArray();
+		return clauses;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * Adds all clauses consisting of the fixed literal and one alternative of
+	 * each group (from index i on) to the result. Tautologies are skipped.
+	 */
+	private static void product(int fixed, int[][][] groups, int i, List<Integer> chosen,
+	                            Set<List<Integer>> result) {
+		if(i == groups.length) {
+			Set<Integer> clause = new LinkedHashSet<>();
+			clause.add(fixed);
+			clause.addAll(chosen);
+			for(int literal : clause)
+				if(clause.contains(-literal))
+					return;
+			Integer[] sorted = clause.toArray(new Integer[0]);
+			Arrays.sort(sorted, (a, b) -> Math.abs(a) != Math.abs(b) ? Math.abs(a) - Math.abs(b) : a - b);
+			result.add(Arrays.asList(sorted));
+			return;
+		}
+		for(int[] alternative : groups[i]) {
+			int size = chosen.size();
+			for(int literal : alternative)
+				chosen.add(literal);
+			product(fixed, groups, i + 1, chosen, result);
+			while(chosen.size() > size)
+				chosen.remove(chosen.size() - 1);
+		}
+	}
+}
@@ -46,6 +46,38 @@ public class WumpusFunctions {
 		};
 	}
 
+	/**
+	 * Returns the positions from which a position can be reached by one action.
+	 * Moves are included even if the room moved into is not allowed (for
+	 * incremental search, see {@link WumpusRoutePlanner}).
+	 */
+	public static Function<AgentPosition, List<AgentPosition>> createPredecessorsFunction(WumpusCave cave) {
+		return state -> {
+			List<AgentPosition> predecessors = new ArrayList<>(3);
+			predecessors.add(cave.turnRight(state)); // and then TURN_LEFT
+			predecessors.add(cave.turnLeft(state)); // and then TURN_RIGHT
+			int x = state.getX();
+			int y = state.getY();
+			switch(state.getOrientation()) {
+				case FACING_NORTH:
+					y--;
+					break;
+				case FACING_SOUTH:
+					y++;
+					break;
+				case FACING_EAST:
+					x--;
+					break;
+				case FACING_WEST:
+					x++;
+					break;
+			}
+			if(x >= 1 && x <= cave.getCaveXDimension() && y >= 1 && y <= cave.getCaveYDimension())
+				predecessors.add(new AgentPosition(x, y, state.getOrientation())); // and then FORWARD
+			return predecessors;
+		};
+	}
+
 	public static ToDoubleFunction<Node<AgentPosition, WumpusAction>> createManhattanDistanceFunction
 			(Set<AgentPosition> goals) {
 		return node -> {
@@ -1,19 +1,51 @@
 package wumpusworld.core.environment.wumpusworld;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import wumpusworld.core.logic.propositional.inference.EntailmentChecker;
-import wumpusworld.core.logic.propositional.inference.OptimizedDPLL;
+import wumpusworld.core.logic.propositional.inference.IncrementalEntailmentChecker;
+import wumpusworld.core.logic.propositional.inference.IndexedDPLL;
+import wumpusworld.core.logic.propositional.inference.OBDDEntailmentChecker;
+import wumpusworld.core.logic.propositional.inference.SolverStatistics;
+import wumpusworld.core.logic.propositional.inference.SymbolForgetting;
+import wumpusworld.core.logic.propositional.kb.EntailmentCache;
 import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.CardinalityEncoding;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.CompiledClauses;
+import wumpusworld.core.logic.propositional.kb.data.DimacsWriter;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
 import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
 import wumpusworld.core.logic.propositional.parsing.ast.Connective;
 import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
 import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
 import wumpusworld.core.search.framework.Metrics;
+import wumpusworld.core.util.LatencyHistogram;
+import wumpusworld.core.util.Snapshots;
+import wumpusworld.core.util.Tasks;
 
 /**
  * A Knowledge base tailored to the Wumpus World environment.
@@ -23,7 +55,7 @@ import wumpusworld.core.search.framework.Metrics;
  * @author Federico Baron
  * @author Alessandro Daniele
  */
-public class WumpusKnowledgeBase extends KnowledgeBase {
+public class WumpusKnowledgeBase extends KnowledgeBase implements WumpusReasoner {
 	public static final String LOCATION = "L";
 	public static final String LOCATION_VISITED = "LV"; // tuning...
 	public static final String BREEZE = "B";
@@ -46,16 +78,44 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	public static final String ACTION_TURN_LEFT = WumpusAction.TURN_LEFT.getSymbol();
 	public static final String ACTION_TURN_RIGHT = WumpusAction.TURN_RIGHT.getSymbol();
 	public static final String OK_TO_MOVE_INTO = "OK";
+	public static final String WUMPUS_AUXILIARY = "WAux"; // auxiliary symbols of the "at most one wumpus" encoding
+
+	private static final int SNAPSHOT_MAGIC = 0x574B4231; // "WKB1"
+	private static final int SNAPSHOT_VERSION = 2;
+	private static final Map<String, KnowledgeBase> physicsPrefixes = new ConcurrentHashMap<>();
+	private static final Map<String, CompiledClauses> compiledPhysics = new ConcurrentHashMap<>();
 
 	private int caveXDimension;
 	private int caveYDimension;
 	private AgentPosition start;
 	private EntailmentChecker checker;
 	private boolean disableNavSentences;
-	private long reasoningTime; // in milliseconds
+	private boolean directClauses;
+	private CardinalityEncoding wumpusEncoding;
+	private boolean temporalWindow;
+	// time step + 1 of each temporal symbol, indexed by symbol ID (0 for atemporal symbols)
+	private int[] symbolTimes = new int[0];
+	private int retainedFluents;
+	private EntailmentCache entailmentCache = new EntailmentCache();
+	private int cachedEpoch; // epoch of the clause store the cached answers refer to
+	// parallel query mode
+	private ExecutorService queryExecutor;
+	private int queryParallelism;
+	private Supplier<? extends EntailmentChecker> workerCheckers;
+	private final Deque<EntailmentChecker> idleWorkerCheckers = new ConcurrentLinkedDeque<>();
+	private long reasoningTime; // in nanoseconds
+	// instrumentation
+	private final Map<WumpusQueryKind, LatencyHistogram> queryLatencies = new EnumMap<>(WumpusQueryKind.class);
+	private WumpusReasoningListener reasoningListener;
+	private long solverQueries; // queries passed on to the checker
+	private long[] stepStart = new long[5]; // reasoning time, solver queries, solve calls, decisions, propagations
+	private Metrics lastStep;
+	private long slowQueryThreshold = -1; // in nanoseconds, -1: no capture
+	private Path slowQueryDirectory;
+	private int capturedQueries;
 
 	public WumpusKnowledgeBase(int caveXDim, int caveYDim) {
-		this(caveXDim, caveYDim, new OptimizedDPLL());
+		this(caveXDim, caveYDim, new IndexedDPLL());
 	}
 
 	public WumpusKnowledgeBase(int caveXDim, int caveYDim, EntailmentChecker checker) {
@@ -70,17 +130,227 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	 * @param caveYDim y dimensions of the wumpus world's cave.
 	 */
 	public WumpusKnowledgeBase(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker) {
+		this(caveXDim, caveYDim, start, checker, false);
+	}
+
+	/**
+	 * Create a Knowledge Base that contains the atemporal "wumpus physics".
+	 *
+	 * @param checker the SAT solver implementation to use for answering 'ask' queries.
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param directClauses if true, the "wumpus physics" is told as clauses instantiated from
+	 * precomputed CNF templates (see {@link WumpusClauseTemplates}) instead of sentences, which
+	 * avoids the CNF conversion. The resulting KB is equivalent.
+	 */
+	public WumpusKnowledgeBase(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
+	                           boolean directClauses) {
+		this(caveXDim, caveYDim, start, checker, directClauses, CardinalityEncoding.PAIRWISE);
+	}
+
+	/**
+	 * Create a Knowledge Base that contains the atemporal "wumpus physics".
+	 *
+	 * @param checker the SAT solver implementation to use for answering 'ask' queries.
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param directClauses if true, the "wumpus physics" is told as clauses instantiated from
+	 * precomputed CNF templates instead of sentences.
+	 * @param wumpusEncoding the encoding of "there is at most one wumpus". The pairwise encoding
+	 * produces a clause for every pair of rooms, the other encodings need auxiliary symbols
+	 * but only a linear number of clauses.
+	 */
+	public WumpusKnowledgeBase(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
+	                           boolean directClauses, CardinalityEncoding wumpusEncoding) {
+		this(caveXDim, caveYDim, start, checker, directClauses, wumpusEncoding, false);
+	}
+
+	/**
+	 * Create a Knowledge Base that contains the atemporal "wumpus physics".
+	 *
+	 * @param checker the SAT solver implementation to use for answering 'ask' queries.
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param directClauses if true, the "wumpus physics" is told as clauses instantiated from
+	 * precomputed CNF templates instead of sentences.
+	 * @param wumpusEncoding the encoding of "there is at most one wumpus".
+	 * @param sharedPhysics if true, the atemporal "wumpus physics" is not told again but
+	 * taken from a frozen parent knowledge base which is created once per set of parameters and
+	 * shared by all knowledge bases (also across threads). Only the temporal sentences and the
+	 * percepts are stored in this knowledge base. The content is the same as without sharing.
+	 */
+	public WumpusKnowledgeBase(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
+	                           boolean directClauses, CardinalityEncoding wumpusEncoding, boolean sharedPhysics) {
+		this(caveXDim, caveYDim, start, checker, directClauses, wumpusEncoding, sharedPhysics, !sharedPhysics);
+	}
+
+	private WumpusKnowledgeBase(int caveXDim, int caveYDim, AgentPosition start, EntailmentChecker checker,
+	                            boolean directClauses, CardinalityEncoding wumpusEncoding, boolean sharedPhysics,
+	                            boolean tellPhysics) {
+		super(sharedPhysics ? getSharedPhysics(caveXDim, caveYDim, start, directClauses, wumpusEncoding) : null);
 		this.start = start;
 		this.checker = checker;
+		this.directClauses = directClauses;
+		this.wumpusEncoding = wumpusEncoding;
 		caveXDimension = caveXDim;
 		caveYDimension = caveYDim;
-		tellAtemporalPhysicsSentences();
+		if(tellPhysics)
+			tellAtemporalPhysicsSentences();
 	}
 
+	/**
+	 * Reads a knowledge base from a snapshot which has been written by
+	 * {@link #saveSnapshot(java.nio.channels.WritableByteChannel)}, e.g. from a
+	 * memory-mapped file (see {@link Snapshots#map(java.nio.file.Path)}). The
+	 * clauses are told directly, so no sentence needs to be converted. If the
+	 * knowledge base shared the atemporal "wumpus physics", the snapshot only
+	 * contains the clauses told afterwards. Settings like the temporal window
+	 * are restored, parallel query mode is not.
+	 *
+	 * @param checker the SAT solver implementation to use for answering 'ask' queries.
+	 * @throws IOException if the buffer does not contain a valid snapshot.
+	 */
+	public static WumpusKnowledgeBase loadSnapshot(ByteBuffer in, EntailmentChecker checker) throws IOException {
+		try {
+			Snapshots.readHeader(in, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+			int caveXDim = in.getInt();
+			int caveYDim = in.getInt();
+			int startX = in.getInt();
+			int startY = in.getInt();
+			AgentPosition.Orientation[] orientations = AgentPosition.Orientation.values();
+			AgentPosition start = new AgentPosition(startX, startY,
+					orientations[Snapshots.checkIndex(in.getInt(), orientations.length)]);
+			CardinalityEncoding[] encodings = CardinalityEncoding.values();
+			CardinalityEncoding wumpusEncoding = encodings[Snapshots.checkIndex(in.getInt(), encodings.length)];
+			byte flags = in.get();
+			WumpusKnowledgeBase result = new WumpusKnowledgeBase(caveXDim, caveYDim, start, checker,
+					(flags & 1) != 0, wumpusEncoding, (flags & 2) != 0, false);
+			result.disableNavSentences = (flags & 4) != 0;
+			result.temporalWindow = (flags & 8) != 0;
+			result.retainedFluents = in.getInt();
+			result.reasoningTime = in.getLong();
+			result.readClauses(in);
+			int[] symbolTimes = new int[Snapshots.checkIndex(in.getInt(), result.getSymbolTable().size() + 1)];
+			for(int i = 0; i < symbolTimes.length; i++)
+				symbolTimes[i] = in.getInt();
+			result.symbolTimes = symbolTimes;
+			return result;
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Truncated snapshot.", e);
+		}
+	}
+
+	@Override
+	protected void writeSnapshot(DataOutputStream out) throws IOException {
+		Snapshots.writeHeader(out, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+		out.writeInt(caveXDimension);
+		out.writeInt(caveYDimension);
+		out.writeInt(start.getX());
+		out.writeInt(start.getY());
+		out.writeInt(start.getOrientation().ordinal());
+		out.writeInt(wumpusEncoding.ordinal());
+		out.writeByte((directClauses ? 1 : 0) | (getParent() != null ? 2 : 0)
+				| (disableNavSentences ? 4 : 0) | (temporalWindow ? 8 : 0));
+		out.writeInt(retainedFluents);
+		out.writeLong(reasoningTime);
+		writeClauses(out, getParent() != null);
+		int numSymbols = Math.min(symbolTimes.length, getSymbolTable().size());
+		out.writeInt(numSymbols);
+		for(int i = 0; i < numSymbols; i++)
+			out.writeInt(symbolTimes[i]);
+	}
+
+	/**
+	 * Returns the frozen knowledge base with the atemporal "wumpus physics" for
+	 * the given parameters. It is created on first use.
+	 */
+	private static KnowledgeBase getSharedPhysics(int caveXDim, int caveYDim, AgentPosition start,
+	                                              boolean directClauses, CardinalityEncoding wumpusEncoding) {
+		return physicsPrefixes.computeIfAbsent(getPhysicsKey(caveXDim, caveYDim, start, directClauses, wumpusEncoding),
+				k -> {
+					WumpusKnowledgeBase kb = new WumpusKnowledgeBase(caveXDim, caveYDim, start, null,
+							directClauses, wumpusEncoding);
+					kb.freeze();
+					return kb;
+				});
+	}
+
+	private static String getPhysicsKey(int caveXDim, int caveYDim, AgentPosition start,
+	                                    boolean directClauses, CardinalityEncoding wumpusEncoding) {
+		return caveXDim + "x" + caveYDim + "@" + start.getX() + "," + start.getY()
+				+ (directClauses ? "/direct/" : "/") + wumpusEncoding;
+	}
+
+	/**
+	 * Compiles the atemporal "wumpus physics" into an OBDD. The result only
+	 * depends on the parameters and is cached. Knowledge bases created with the
+	 * same parameters start with the compiled clauses and can be queried with an
+	 * {@link OBDDEntailmentChecker} for the result. The auxiliary symbols of the
+	 * wumpus encoding are hidden.
+	 *
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param start the initial position of the agent.
+	 * @param directClauses see {@link #WumpusKnowledgeBase(int, int, AgentPosition, EntailmentChecker, boolean)}.
+	 * @param wumpusEncoding the encoding of "there is at most one wumpus".
+	 * @return the compiled clauses of the atemporal "wumpus physics".
+	 */
+	public static CompiledClauses compileAtemporalPhysics(int caveXDim, int caveYDim, AgentPosition start,
+	                                                      boolean directClauses, CardinalityEncoding wumpusEncoding) {
+		String key = getPhysicsKey(caveXDim, caveYDim, start, directClauses, wumpusEncoding);
+		return compiledPhysics.computeIfAbsent(key, k -> {
+			WumpusKnowledgeBase kb = new WumpusKnowledgeBase(caveXDim, caveYDim, start, null,
+					directClauses, wumpusEncoding, true);
+			List<PropositionSymbol> order = new ArrayList<>();
+			addPhysicsOrder(kb, PIT, BREEZE, false, order);
+			addPhysicsOrder(kb, WUMPUS, STENCH, true, order);
+			return CompiledClauses.compile(kb.getClauseStore().asList(), order,
+					symbol -> symbol.getSymbol().startsWith(WUMPUS_AUXILIARY + "_"));
+		});
+	}
+
+	/**
+	 * Orders the room symbols column by column. Each percept symbol (breeze or
+	 * stench) follows the last of the room symbols (pit or wumpus) it depends
+	 * on, so that the diagram only needs to keep track of about one column.
+	 */
+	private static void addPhysicsOrder(WumpusKnowledgeBase kb, String roomPrefix, String perceptPrefix,
+	                                    boolean auxiliary, List<PropositionSymbol> order) {
+		int xDim = kb.caveXDimension;
+		int yDim = kb.caveYDimension;
+		// percepts[i] contains the percept symbols whose last neighbour is the i-th room
+		List<List<PropositionSymbol>> percepts = new ArrayList<>();
+		for(int i = 0; i < xDim * yDim; i++)
+			percepts.add(new ArrayList<>());
+		for(int x = 1; x <= xDim; x++) {
+			for(int y = 1; y <= yDim; y++) {
+				int last = (x - 1) * yDim + y - 1;
+				if(x < xDim)
+					last = x * yDim + y - 1;
+				else if(y < yDim)
+					last = (x - 1) * yDim + y;
+				else if(y > 1)
+					last = (x - 1) * yDim + y - 2;
+				percepts.get(last).add(kb.newSymbol(perceptPrefix, x, y));
+			}
+		}
+		for(int x = 1; x <= xDim; x++) {
+			for(int y = 1; y <= yDim; y++) {
+				int i = (x - 1) * yDim + y - 1;
+				order.add(kb.newSymbol(roomPrefix, x, y));
+				if(auxiliary) // the encodings create auxiliary symbols along the list of rooms
+					order.add(kb.newSymbol(WUMPUS_AUXILIARY, i));
+				order.addAll(percepts.get(i));
+			}
+		}
+	}
+
+	@Override
 	public int getCaveXDimension() {
 		return caveXDimension;
 	}
 
+	@Override
 	public int getCaveYDimension() {
 		return caveYDimension;
 	}
@@ -88,11 +358,95 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	/**
 	 * Disables creation of computational expensive temporal navigation sentences.
 	 */
+	@Override
 	public void disableNavSentences() {
 		disableNavSentences = true;
 	}
 
+	/**
+	 * Enables a sliding temporal window: Whenever the temporal physics for time t
+	 * is told, all symbols of earlier time steps are forgotten (see
+	 * {@link SymbolForgetting}). Fluents which are determined by the KB are
+	 * replaced by their values, so that the knowledge gained from them remains as
+	 * facts about the atemporal symbols (e.g. P_x_y, W_x_y, LV_x_y) and the
+	 * current fluents. Therefore, KB size and reasoning time per step stay
+	 * roughly constant. Queries about earlier time steps are not supported
+	 * anymore. Requires the "wumpus physics" to be told as clauses.<br>
+	 * <br>
+	 * Incremental checkers (e.g. the incremental CDCL solver,
+	 * {@link IndexedDPLL}, {@link OBDDEntailmentChecker}) do not start over
+	 * after each step: They keep the forgotten clauses, which do not change the
+	 * answers about the remaining symbols, and only add the new ones. They are
+	 * rebuilt when the forgotten clauses make up half of their clauses.
+	 */
+	public void enableTemporalWindow() {
+		if(!directClauses)
+			throw new IllegalStateException("Temporal window requires direct clauses.");
+		temporalWindow = true;
+	}
+
+	/**
+	 * Enables parallel evaluation of batch queries (see {@link #askAll(List)}) on the
+	 * common fork-join pool.
+	 *
+	 * @param workerCheckers creates the entailment checkers of the workers.
+	 */
+	public void enableParallelQueries(Supplier<? extends EntailmentChecker> workerCheckers) {
+		enableParallelQueries(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), workerCheckers);
+	}
+
+	/**
+	 * Enables parallel evaluation of batch queries (see {@link #askAll(List)}), which
+	 * are used by all room queries. The queries of a batch are split into at most
+	 * <code>parallelism</code> chunks which are answered concurrently. The KB is not
+	 * modified while the workers read its clauses. Each worker uses an entailment
+	 * checker of its own, which is returned to a pool afterwards unless it threw
+	 * an exception, so that incremental checkers keep their state between
+	 * batches. Results are merged
+	 * in query order, so that answers do not depend on scheduling. Cancellation of
+	 * the calling task (see {@link Tasks#currIsCancelled()}) is passed on to the
+	 * workers.
+	 *
+	 * @param executor executes the chunks, e.g. a fork-join pool or a virtual thread executor.
+	 * @param parallelism the maximal number of chunks per batch.
+	 * @param workerCheckers creates the entailment checkers of the workers.
+	 */
+	public void enableParallelQueries(ExecutorService executor, int parallelism,
+	                                  Supplier<? extends EntailmentChecker> workerCheckers) {
+		queryExecutor = executor;
+		queryParallelism = Math.max(1, parallelism);
+		this.workerCheckers = workerCheckers;
+		idleWorkerCheckers.clear();
+	}
+
+	/**
+	 * Writes the clauses of the KB to a DIMACS CNF file (see {@link DimacsWriter})
+	 * whenever the checker needs more than the given time for a query, so that
+	 * slow steps can be analyzed offline (e.g. by
+	 * {@link wumpusworld.core.logic.propositional.inference.SATBenchmark}). For a
+	 * single query &alpha;, the file contains KB &and; &not;&alpha;, which is
+	 * unsatisfiable iff &alpha; is entailed. For a batch of queries (see
+	 * {@link #askAll(List)}), it contains the KB, and the queries are listed in
+	 * comments. The files are numbered consecutively.
+	 *
+	 * @param thresholdNanos the latency above which queries are captured, or -1 to disable capture.
+	 * @param directory the directory for the files.
+	 */
+	public void enableSlowQueryCapture(long thresholdNanos, Path directory) {
+		slowQueryThreshold = thresholdNanos;
+		slowQueryDirectory = directory;
+	}
+
+	@Override
 	public AgentPosition askCurrentPosition(int t) {
+		long tStart = System.nanoTime();
+		AgentPosition result = checker instanceof IncrementalEntailmentChecker
+				? askCurrentPositionAtOnce(t) : askCurrentPositionOneByOne(t);
+		recordQuery(WumpusQueryKind.POSITION, tStart);
+		return result;
+	}
+
+	private AgentPosition askCurrentPositionOneByOne(int t) {
 		int locX = -1, locY = -1;
 		for(int x = 1; x <= getCaveXDimension() && locX == -1; x++) {
 			for(int y = 1; y <= getCaveYDimension() && locY == -1; y++) {
@@ -119,39 +473,83 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		return current;
 	}
 
+	// Optimization: Location and orientation are determined by one batch query.
+	private AgentPosition askCurrentPositionAtOnce(int t) {
+		AgentPosition.Orientation[] orientations = AgentPosition.Orientation.values();
+		List<Sentence> queries = new ArrayList<>();
+		for(int x = 1; x <= getCaveXDimension(); x++)
+			for(int y = 1; y <= getCaveYDimension(); y++)
+				queries.add(newSymbol(LOCATION, t, x, y));
+		for(AgentPosition.Orientation orientation : orientations)
+			queries.add(newSymbol(orientation.getSymbol(), t));
+		Boolean[] answers = askAll(queries);
+
+		int locX = -1, locY = -1;
+		for(int i = 0; i < getCaveXDimension() * getCaveYDimension() && locX == -1; i++) {
+			if(Boolean.TRUE.equals(answers[i])) {
+				locX = i / getCaveYDimension() + 1;
+				locY = i % getCaveYDimension() + 1;
+			}
+		}
+		if(locX == -1 || locY == -1)
+			throw new IllegalStateException("Inconsistent KB, unable to determine current room position.");
+		int offset = getCaveXDimension() * getCaveYDimension();
+		for(int i = 0; i < orientations.length; i++) {
+			if(Boolean.TRUE.equals(answers[offset + i]))
+				return new AgentPosition(locX, locY, orientations[i]);
+		}
+		throw new IllegalStateException("Inconsistent KB, unable to determine current room orientation.");
+	}
+
 	// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
+	@Override
 	public Set<Room> askSafeRooms(int t) {
-		Set<Room> safe = new LinkedHashSet<>();
+		long tStart = System.nanoTime();
+		List<Room> rooms = new ArrayList<>();
+		List<Sentence> queries = new ArrayList<>();
 		for(int x = 1; x <= getCaveXDimension(); x++) {
 			for(int y = 1; y <= getCaveYDimension(); y++) {
 				// Correction: Already visited rooms are safe! This is important because not all pits
 				// can be located by percept. Not-unsafe plan execution adds knowledge about pit and wumpus
 				// locations by surviving dangerous moves but this knowledge is not covered by OK_TO_MOVE_INTO.
-				if(ask(new ComplexSentence(newSymbol(LOCATION_VISITED, x, y),
-						Connective.OR, newSymbol(OK_TO_MOVE_INTO, t, x, y)))) {
-					safe.add(new Room(x, y));
-				}
+				rooms.add(new Room(x, y));
+				queries.add(new ComplexSentence(newSymbol(LOCATION_VISITED, x, y),
+						Connective.OR, newSymbol(OK_TO_MOVE_INTO, t, x, y)));
 			}
 		}
+		Set<Room> safe = selectRooms(rooms, askAll(queries), true);
+		recordQuery(WumpusQueryKind.SAFE, tStart);
 		return safe;
 	}
 
 	// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
 	// Optimization: In this version, the agent can provide information about already visited rooms.
 	// There is no need to check again.
+	@Override
 	public Set<Room> askSafeRooms(int t, Set<Room> visited) {
+		long tStart = System.nanoTime();
+		List<Sentence> queries = new ArrayList<>();
+		for(int x = 1; x <= getCaveXDimension(); x++)
+			for(int y = 1; y <= getCaveYDimension(); y++)
+				if(!visited.contains(new Room(x, y)))
+					queries.add(newSymbol(OK_TO_MOVE_INTO, t, x, y));
+		Boolean[] answers = askAll(queries);
+
 		Set<Room> safe = new LinkedHashSet<>();
+		int i = 0;
 		for(int x = 1; x <= getCaveXDimension(); x++) {
 			for(int y = 1; y <= getCaveYDimension(); y++) {
 				Room r = new Room(x, y);
-				if(visited.contains(r) || ask(newSymbol(OK_TO_MOVE_INTO, t, x, y)))
-					safe.add(new Room(x, y));
+				if(visited.contains(r) || Boolean.TRUE.equals(answers[i++]))
+					safe.add(r);
 			}
 		}
+		recordQuery(WumpusQueryKind.SAFE, tStart);
 		return safe;
 	}
 
 	// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
+	@Override
 	public Set<Room> askNotUnsafeRooms(int t) {
 		return askNotUnsafeRooms(t, Collections.emptySet());
 	}
@@ -159,45 +557,72 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
 	// Optimization: In this version, the agent can provide information about already visited rooms.
 	// There is no need to check again.
+	@Override
 	public Set<Room> askNotUnsafeRooms(int t, Set<Room> visited) {
+		long tStart = System.nanoTime();
+		List<Sentence> queries = new ArrayList<>();
+		for(int x = 1; x <= getCaveXDimension(); x++)
+			for(int y = 1; y <= getCaveYDimension(); y++)
+				if(!visited.contains(new Room(x, y)))
+					queries.add(new ComplexSentence(Connective.NOT, newSymbol(OK_TO_MOVE_INTO, t, x, y)));
+		Boolean[] answers = askAll(queries);
+
 		Set<Room> notUnsafe = new LinkedHashSet<>();
+		int i = 0;
 		for(int x = 1; x <= getCaveXDimension(); x++) {
 			for(int y = 1; y <= getCaveYDimension(); y++) {
 				Room r = new Room(x, y);
-				if(visited.contains(r) || !ask(new ComplexSentence
-						(Connective.NOT, newSymbol(OK_TO_MOVE_INTO, t, x, y))))
+				if(visited.contains(r) || !Boolean.TRUE.equals(answers[i++]))
 					notUnsafe.add(r);
 			}
 		}
+		recordQuery(WumpusQueryKind.NOT_UNSAFE, tStart);
 		return notUnsafe;
 	}
 
+	@Override
 	public boolean askGlitter(int t) {
-		return ask(newSymbol(PERCEPT_GLITTER, t));
+		long tStart = System.nanoTime();
+		boolean result = ask(newSymbol(PERCEPT_GLITTER, t));
+		recordQuery(WumpusQueryKind.GLITTER, tStart);
+		return result;
 	}
 
+	@Override
 	public boolean askHaveArrow(int t) {
-		return ask(newSymbol(HAVE_ARROW, t));
+		long tStart = System.nanoTime();
+		boolean result = ask(newSymbol(HAVE_ARROW, t));
+		recordQuery(WumpusQueryKind.ARROW, tStart);
+		return result;
 	}
 
 	// possible_wumpus <- {[x, y] : ASK(KB, ~W<sub>x,y</sub>) = false}
+	@Override
 	public Set<Room> askPossibleWumpusRooms(int t) {
-		Set<Room> possible = new LinkedHashSet<>();
-		for(int x = 1; x <= getCaveXDimension(); x++)
-			for(int y = 1; y <= getCaveYDimension(); y++)
-				if(!ask(new ComplexSentence(Connective.NOT, newSymbol(WUMPUS, x, y))))
-					possible.add(new Room(x, y));
-		return possible;
+		long tStart = System.nanoTime();
+		List<Room> rooms = new ArrayList<>();
+		List<Sentence> queries = new ArrayList<>();
+		for(int x = 1; x <= getCaveXDimension(); x++) {
+			for(int y = 1; y <= getCaveYDimension(); y++) {
+				rooms.add(new Room(x, y));
+				queries.add(new ComplexSentence(Connective.NOT, newSymbol(WUMPUS, x, y)));
+			}
+		}
+		Set<Room> possibleWumpus = selectRooms(rooms, askAll(queries), false);
+		recordQuery(WumpusQueryKind.POSSIBLE_WUMPUS, tStart);
+		return possibleWumpus;
 	}
 
 	// unvisited <- {[x, y] : ASK(KB, L<sup>t'</sup><sub>x,y</sub>) = false for all t' &le; t}
+	@Override
 	public Set<Room> askUnvisitedRooms(int t) {
-		Set<Room> unvisited = new LinkedHashSet<>();
-
+		long tStart = System.nanoTime();
+		List<Room> rooms = new ArrayList<>();
+		List<Sentence> queries = new ArrayList<>();
 		for(int x = 1; x <= getCaveXDimension(); x++) {
 			for(int y = 1; y <= getCaveYDimension(); y++) {
-				if(!ask(newSymbol(LOCATION_VISITED, x, y)))
-					unvisited.add(new Room(x, y)); // i.e. is false for all t' <= t
+				rooms.add(new Room(x, y));
+				queries.add(newSymbol(LOCATION_VISITED, x, y)); // i.e. is false for all t' <= t
 
 //				way to slow: (try it out!)
 //				for (int tPrime = 0; tPrime <= t; tPrime++) {
@@ -208,16 +633,157 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 //				}
 			}
 		}
+		Set<Room> unvisited = selectRooms(rooms, askAll(queries), false);
+		recordQuery(WumpusQueryKind.UNVISITED, tStart);
 		return unvisited;
 	}
 
+	/**
+	 * Asks several queries at once. With an incremental checker, the answers
+	 * are computed by one backbone computation (see
+	 * {@link IncrementalEntailmentChecker#classify(KnowledgeBase, List)}), so that
+	 * each model found by the solver rules out many queries at once. Otherwise,
+	 * each query is asked separately. In parallel query mode (see
+	 * {@link #enableParallelQueries(ExecutorService, int, Supplier)}), the queries
+	 * are distributed over several workers.
+	 *
+	 * @return an array with one entry per query: true if the query is entailed. Note
+	 * that negations of queries are only classified (FALSE) with incremental checkers,
+	 * so callers must not distinguish FALSE from null.
+	 */
+	public Boolean[] askAll(List<? extends Sentence> queries) {
+		Boolean[] result = new Boolean[queries.size()];
+		if(queryExecutor == null && !(checker instanceof IncrementalEntailmentChecker)) {
+			for(int i = 0; i < result.length; i++)
+				if(ask(queries.get(i)))
+					result[i] = Boolean.TRUE;
+			return result;
+		}
+		// only the queries without cached answer are passed on
+		long version = getVersion();
+		List<Sentence> open = new ArrayList<>(queries.size());
+		int[] positions = new int[queries.size()];
+		for(int i = 0; i < result.length; i++) {
+			Boolean cached = entailmentCache.lookup(queries.get(i), version);
+			if(cached == null) {
+				positions[open.size()] = i;
+				open.add(queries.get(i));
+			} else if(cached) {
+				result[i] = Boolean.TRUE;
+			}
+		}
+		if(!open.isEmpty()) {
+			long tStart = System.nanoTime();
+			Boolean[] answers = queryExecutor != null ? askAllInParallel(open) : askAll(checker, open);
+			long nanos = System.nanoTime() - tStart;
+			reasoningTime += nanos;
+			if(slowQueryThreshold >= 0 && nanos > slowQueryThreshold)
+				captureSlowQuery(open, null, nanos);
+			solverQueries += open.size();
+			// answers of a cancelled search are not reliable
+			boolean cacheable = !Tasks.currIsCancelled();
+			for(int j = 0; j < answers.length; j++) {
+				result[positions[j]] = answers[j];
+				if(cacheable)
+					entailmentCache.put(open.get(j), Boolean.TRUE.equals(answers[j]), version);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Answers the queries with the given checker (see {@link #askAll(List)}), without caching.
+	 */
+	private Boolean[] askAll(EntailmentChecker checker, List<Sentence> queries) {
+		if(checker instanceof IncrementalEntailmentChecker)
+			return ((IncrementalEntailmentChecker) checker).classify(this, queries);
+		Boolean[] result = new Boolean[queries.size()];
+		for(int i = 0; i < result.length; i++)
+			if(checker.isEntailed(this, queries.get(i)))
+				result[i] = Boolean.TRUE;
+		return result;
+	}
+
+	/**
+	 * Splits the queries into chunks and answers them concurrently, each chunk
+	 * with a worker checker of its own.
+	 */
+	private Boolean[] askAllInParallel(List<Sentence> queries) {
+		int numChunks = Math.min(queryParallelism, queries.size());
+		List<Future<Boolean[]>> futures = new ArrayList<>(numChunks);
+		for(int c = 0; c < numChunks; c++) {
+			List<Sentence> chunk = queries.subList(c * queries.size() / numChunks,
+					(c + 1) * queries.size() / numChunks);
+			futures.add(queryExecutor.submit(Tasks.inheritCancellation(() -> {
+				EntailmentChecker worker = idleWorkerCheckers.pollFirst();
+				if(worker == null)
+					worker = workerCheckers.get();
+				// a worker which throws is dropped, only workers which answered all queries are reused
+				Boolean[] answers = askAll(worker, chunk);
+				idleWorkerCheckers.offerFirst(worker);
+				return answers;
+			})));
+		}
+		Boolean[] result = new Boolean[queries.size()];
+		try {
+			for(int c = 0; c < numChunks; c++) {
+				Boolean[] answers = futures.get(c).get();
+				System.arraycopy(answers, 0, result, c * queries.size() / numChunks, answers.length);
+			}
+		} catch(InterruptedException e) {
+			for(Future<Boolean[]> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for query results.", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether the query is entailed by the KB. Incremental checkers
+	 * (see {@link IncrementalEntailmentChecker}) keep the KB clauses resident
+	 * and only receive the clauses told since the last query, so that the
+	 * room queries of one step share the solver state. Answers are cached (see
+	 * {@link EntailmentCache}): Positive answers are reused until clauses are
+	 * retracted, negative answers until the next clause is told.
+	 */
 	public boolean ask(Sentence query) {
-		long tStart = System.currentTimeMillis();
+		long version = getVersion();
+		Boolean cached = entailmentCache.lookup(query, version);
+		if(cached != null)
+			return cached;
+		long tStart = System.nanoTime();
 		boolean result = checker.isEntailed(this, query);
-		reasoningTime += System.currentTimeMillis() - tStart;
+		long nanos = System.nanoTime() - tStart;
+		reasoningTime += nanos;
+		if(slowQueryThreshold >= 0 && nanos > slowQueryThreshold)
+			captureSlowQuery(Collections.singletonList(query), result, nanos);
+		solverQueries++;
+		if(!Tasks.currIsCancelled())
+			entailmentCache.put(query, result, version);
 		return result;
 	}
 
+	/**
+	 * Returns the version of the KB used for caching answers. Within an epoch,
+	 * clauses are only appended to the clause store or forgotten (see
+	 * {@link #forgetFluentsBefore(int)}), so that the number of additions
+	 * identifies the version. A new epoch (i.e. any other retraction)
+	 * invalidates all cached answers.
+	 */
+	private long getVersion() {
+		ClauseStore store = getClauseStore();
+		if(store.getEpoch() != cachedEpoch) {
+			entailmentCache.clear();
+			cachedEpoch = store.getEpoch();
+		}
+		return ((long) store.getEpoch() << 32) | store.getAdditions();
+	}
+
 	/**
 	 * Add to KB sentences that describe the perception p
 	 * (only about the current time).
@@ -225,7 +791,16 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	 * @param p perception that must be added to KB
 	 * @param time current time
 	 */
+	@Override
 	public void makePerceptSentence(WumpusPercept p, int time) {
+		if(directClauses) {
+			tellLiteral(newSymbol(PERCEPT_STENCH, time), p.isStench());
+			tellLiteral(newSymbol(PERCEPT_BREEZE, time), p.isBreeze());
+			tellLiteral(newSymbol(PERCEPT_GLITTER, time), p.isGlitter());
+			tellLiteral(newSymbol(PERCEPT_BUMP, time), p.isBump());
+			tellLiteral(newSymbol(PERCEPT_SCREAM, time), p.isScream());
+			return;
+		}
 		if(p.isStench())
 			tell(newSymbol(PERCEPT_STENCH, time));
 		else
@@ -258,13 +833,17 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	 * @param a action that must be added to KB
 	 * @param time current time
 	 */
+	@Override
 	public void makeActionSentence(WumpusAction a, int time) {
 		for(WumpusAction action : WumpusAction.values()) {
-			if(action.equals(a))
+			if(directClauses)
+				tellLiteral(newSymbol(action.getSymbol(), time), action.equals(a));
+			else if(action.equals(a))
 				tell(newSymbol(action.getSymbol(), time));
 			else
 				tell(new ComplexSentence(Connective.NOT, newSymbol(action.getSymbol(), time)));
 		}
+		completeStep(time);
 	}
 
 	/**
@@ -274,9 +853,9 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		//
 		// 7.7.1 - The current state of the World
 		// The agent knows that the starting square contains no pit
-		tell(new ComplexSentence(Connective.NOT, newSymbol(PIT, start.getX(), start.getY())));
+		tellLiteral(newSymbol(PIT, start.getX(), start.getY()), false);
 		// and no wumpus.
-		tell(new ComplexSentence(Connective.NOT, newSymbol(WUMPUS, start.getX(), start.getY())));
+		tellLiteral(newSymbol(WUMPUS, start.getX(), start.getY()), false);
 
 		// Atemporal rules about breeze and stench
 		// For each square, the agent knows that the square is breezy
@@ -305,10 +884,17 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 					wumpsIn.add(newSymbol(WUMPUS, x, y - 1));
 				}
 
-				tell(new ComplexSentence
-						(newSymbol(BREEZE, x, y), Connective.BICONDITIONAL, Sentence.newDisjunction(pitsIn)));
-				tell(new ComplexSentence
-						(newSymbol(STENCH, x, y), Connective.BICONDITIONAL, Sentence.newDisjunction(wumpsIn)));
+				if(directClauses) {
+					pitsIn.add(0, newSymbol(BREEZE, x, y));
+					wumpsIn.add(0, newSymbol(STENCH, x, y));
+					tellTemplate(WumpusClauseTemplates.NEIGHBOURHOOD[pitsIn.size() - 1], pitsIn);
+					tellTemplate(WumpusClauseTemplates.NEIGHBOURHOOD[wumpsIn.size() - 1], wumpsIn);
+				} else {
+					tell(new ComplexSentence
+							(newSymbol(BREEZE, x, y), Connective.BICONDITIONAL, Sentence.newDisjunction(pitsIn)));
+					tell(new ComplexSentence
+							(newSymbol(STENCH, x, y), Connective.BICONDITIONAL, Sentence.newDisjunction(wumpsIn)));
+				}
 			}
 		}
 
@@ -319,20 +905,25 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 			for(int y = 1; y <= caveYDimension; y++)
 				wumpsAtLeast.add(newSymbol(WUMPUS, x, y));
 
-		tell(Sentence.newDisjunction(wumpsAtLeast));
+		if(directClauses)
+			tell(new Clause(toLiterals(wumpsAtLeast)));
+		else
+			tell(Sentence.newDisjunction(wumpsAtLeast));
 
 		// Then, we have to say that there is at most one wumpus.
-		// For each pair of locations, we add a sentence saying
-		// that at least one of them must be wumpus-free.
-		int numRooms = (caveXDimension * caveYDimension);
-		for(int i = 0; i < numRooms; i++) {
-			for(int j = i + 1; j < numRooms; j++) {
-				tell(new ComplexSentence(Connective.OR,
-						new ComplexSentence
-								(Connective.NOT, newSymbol(WUMPUS, (i / caveXDimension) + 1, (i % caveYDimension) + 1)),
-						new ComplexSentence
-								(Connective.NOT, newSymbol(WUMPUS, (j / caveXDimension) + 1, (j % caveYDimension) + 1))));
+		if(wumpusEncoding == CardinalityEncoding.PAIRWISE && !directClauses) {
+			// For each pair of locations, we add a sentence saying
+			// that at least one of them must be wumpus-free.
+			for(int i = 0; i < wumpsAtLeast.size(); i++) {
+				for(int j = i + 1; j < wumpsAtLeast.size(); j++) {
+					tell(new ComplexSentence(Connective.OR,
+							new ComplexSentence(Connective.NOT, wumpsAtLeast.get(i)),
+							new ComplexSentence(Connective.NOT, wumpsAtLeast.get(j))));
+				}
 			}
+		} else {
+			// Optimization: Encodings with auxiliary symbols keep the KB linear in the number of rooms.
+			tellClauses(wumpusEncoding.atMostOne(wumpsAtLeast, i -> newSymbol(WUMPUS_AUXILIARY, i)));
 		}
 	}
 
@@ -345,15 +936,20 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	 *
 	 * @param t current time step.
 	 */
+	@Override
 	public void tellTemporalPhysicsSentences(int t) {
+		if(temporalWindow)
+			forgetFluentsBefore(t);
 		if(t == 0) {
 			// temporal rules at time zero
-			tell(newSymbol(LOCATION, 0, start.getX(), start.getY()));
-			tell(newSymbol(start.getOrientation().getSymbol(), 0));
-			tell(newSymbol(HAVE_ARROW, 0));
-			tell(newSymbol(WUMPUS_ALIVE, 0));
+			tellLiteral(newSymbol(LOCATION, 0, start.getX(), start.getY()), true);
+			tellLiteral(newSymbol(start.getOrientation().getSymbol(), 0), true);
+			tellLiteral(newSymbol(HAVE_ARROW, 0), true);
+			tellLiteral(newSymbol(WUMPUS_ALIVE, 0), true);
 			// Optimization: Make questions about unvisited locations faster
-			tell(newSymbol(LOCATION_VISITED, start.getX(), start.getY()));
+			tellLiteral(newSymbol(LOCATION_VISITED, start.getX(), start.getY()), true);
+			if(temporalWindow)
+				tellUniqueStart();
 		}
 
 		// We can connect stench and breeze percepts directly
@@ -362,15 +958,7 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		// and any square [x,y], we assert
 		for(int x = 1; x <= caveXDimension; x++) {
 			for(int y = 1; y <= caveYDimension; y++) {
-				tell(new ComplexSentence(
-						newSymbol(LOCATION, t, x, y),
-						Connective.IMPLICATION,
-						new ComplexSentence(newSymbol(PERCEPT_BREEZE, t), Connective.BICONDITIONAL, newSymbol(BREEZE, x, y))));
-
-				tell(new ComplexSentence(
-						newSymbol(LOCATION, t, x, y),
-						Connective.IMPLICATION,
-						new ComplexSentence(newSymbol(PERCEPT_STENCH, t), Connective.BICONDITIONAL, newSymbol(STENCH, x, y))));
+				tellPerceptLinks(t, x, y);
 			}
 		}
 
@@ -379,10 +967,14 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 			for(int y = 1; y <= caveYDimension; y++) {
 				tellSuccessorStateLocationAxiom(t, x, y);
 				// Optimization to make questions about unvisited locations faster
-				tell(new ComplexSentence(
-						newSymbol(LOCATION, t + 1, x, y),
-						Connective.IMPLICATION,
-						newSymbol(LOCATION_VISITED, x, y)));
+				if(directClauses)
+					tell(new Clause(new Literal(newSymbol(LOCATION, t + 1, x, y), false),
+							new Literal(newSymbol(LOCATION_VISITED, x, y))));
+				else
+					tell(new ComplexSentence(
+							newSymbol(LOCATION, t + 1, x, y),
+							Connective.IMPLICATION,
+							newSymbol(LOCATION_VISITED, x, y)));
 			}
 		}
 		tellSuccessorStateOrientationAxioms(t);
@@ -395,32 +987,25 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	 *
 	 * @param t current time step.
 	 */
+	@Override
 	public void tellTemporalPhysicsSentences(int t, AgentPosition agentPosition) {
+		if(temporalWindow)
+			forgetFluentsBefore(t);
 		if(t == 0) {
 			// temporal rules at time zero
-			tell(newSymbol(HAVE_ARROW, 0));
-			tell(newSymbol(WUMPUS_ALIVE, 0));
+			tellLiteral(newSymbol(HAVE_ARROW, 0), true);
+			tellLiteral(newSymbol(WUMPUS_ALIVE, 0), true);
 		}
-		tell(newSymbol(LOCATION, t, agentPosition.getX(), agentPosition.getY()));
-		tell(newSymbol(agentPosition.getOrientation().getSymbol(), t));
+		tellLiteral(newSymbol(LOCATION, t, agentPosition.getX(), agentPosition.getY()), true);
+		tellLiteral(newSymbol(agentPosition.getOrientation().getSymbol(), t), true);
 		// Optimization to make questions about unvisited locations faster
-		tell(newSymbol(LOCATION_VISITED, agentPosition.getX(), agentPosition.getY()));
+		tellLiteral(newSymbol(LOCATION_VISITED, agentPosition.getX(), agentPosition.getY()), true);
 
 		// We can connect stench and breeze percepts directly
 		// to the properties of the squares where they are experienced
 		// through the location fluent as follows. For any time step t
 		// and any square [x,y], we assert
-		tell(new ComplexSentence(
-				newSymbol(LOCATION, t, agentPosition.getX(), agentPosition.getY()),
-				Connective.IMPLICATION,
-				new ComplexSentence(newSymbol(PERCEPT_BREEZE, t), Connective.BICONDITIONAL,
-						newSymbol(BREEZE, agentPosition.getX(), agentPosition.getY()))));
-
-		tell(new ComplexSentence(
-				newSymbol(LOCATION, t, agentPosition.getX(), agentPosition.getY()),
-				Connective.IMPLICATION,
-				new ComplexSentence(newSymbol(PERCEPT_STENCH, t), Connective.BICONDITIONAL,
-						newSymbol(STENCH, agentPosition.getX(), agentPosition.getY()))));
+		tellPerceptLinks(t, agentPosition.getX(), agentPosition.getY());
 
 		tellCommonTemporalPhysicsSentences(t);
 		if(!disableNavSentences) {
@@ -429,12 +1014,69 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		}
 	}
 
+	/**
+	 * Tells that the agent is in no other room and faces no other direction at
+	 * time zero. Without these facts, the location and orientation fluents of
+	 * other rooms and directions remain undetermined forever and cannot be
+	 * forgotten.
+	 */
+	private void tellUniqueStart() {
+		for(int x = 1; x <= caveXDimension; x++)
+			for(int y = 1; y <= caveYDimension; y++)
+				if(x != start.getX() || y != start.getY())
+					tellLiteral(newSymbol(LOCATION, 0, x, y), false);
+		for(AgentPosition.Orientation orientation : AgentPosition.Orientation.values())
+			if(orientation != start.getOrientation())
+				tellLiteral(newSymbol(orientation.getSymbol(), 0), false);
+	}
+
+	/**
+	 * Forgets all temporal symbols of time steps before t. Cached positive
+	 * answers remain valid, as forgetting preserves all entailments about the
+	 * remaining symbols. The forgotten clauses are retracted without starting a
+	 * new epoch of the clause store (see
+	 * {@link wumpusworld.core.logic.propositional.kb.KnowledgeBase#retractForgotten(java.util.Collection)}),
+	 * since the symbols of earlier time steps are never used again.
+	 */
+	private void forgetFluentsBefore(int t) {
+		long tStart = System.nanoTime();
+		retainedFluents = SymbolForgetting.forget(this, symbol -> {
+			int id = getSymbolTable().getId(symbol);
+			return id < symbolTimes.length && symbolTimes[id] > 0 && symbolTimes[id] <= t;
+		}).size();
+		reasoningTime += System.nanoTime() - tStart;
+	}
+
+	private void tellPerceptLinks(int t, int x, int y) {
+		if(directClauses) {
+			tellTemplate(WumpusClauseTemplates.PERCEPT_LINK,
+					newSymbol(LOCATION, t, x, y), newSymbol(PERCEPT_BREEZE, t), newSymbol(BREEZE, x, y));
+			tellTemplate(WumpusClauseTemplates.PERCEPT_LINK,
+					newSymbol(LOCATION, t, x, y), newSymbol(PERCEPT_STENCH, t), newSymbol(STENCH, x, y));
+			return;
+		}
+		tell(new ComplexSentence(
+				newSymbol(LOCATION, t, x, y),
+				Connective.IMPLICATION,
+				new ComplexSentence(newSymbol(PERCEPT_BREEZE, t), Connective.BICONDITIONAL, newSymbol(BREEZE, x, y))));
+
+		tell(new ComplexSentence(
+				newSymbol(LOCATION, t, x, y),
+				Connective.IMPLICATION,
+				new ComplexSentence(newSymbol(PERCEPT_STENCH, t), Connective.BICONDITIONAL, newSymbol(STENCH, x, y))));
+	}
+
 	private void tellCommonTemporalPhysicsSentences(int t) {
 		for(int x = 1; x <= caveXDimension; x++) {
 			for(int y = 1; y <= caveYDimension; y++) {
 				// The most important question for the agent is whether
 				// a square is OK to move into, that is, the square contains
 				// no pit nor live wumpus.
+				if(directClauses) {
+					tellTemplate(WumpusClauseTemplates.OK_TO_MOVE_INTO, newSymbol(OK_TO_MOVE_INTO, t, x, y),
+							newSymbol(PIT, x, y), newSymbol(WUMPUS, x, y), newSymbol(WUMPUS_ALIVE, t));
+					continue;
+				}
 				tell(new ComplexSentence(
 						newSymbol(OK_TO_MOVE_INTO, t, x, y),
 						Connective.BICONDITIONAL,
@@ -450,6 +1092,16 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 			}
 		}
 
+		if(directClauses) {
+			// Rule about the arrow
+			tellTemplate(WumpusClauseTemplates.FLUENT_AND_NOT,
+					newSymbol(HAVE_ARROW, t + 1), newSymbol(HAVE_ARROW, t), newSymbol(ACTION_SHOOT, t));
+			// Rule about wumpus (dead or alive)
+			tellTemplate(WumpusClauseTemplates.FLUENT_AND_NOT,
+					newSymbol(WUMPUS_ALIVE, t + 1), newSymbol(WUMPUS_ALIVE, t), newSymbol(PERCEPT_SCREAM, t + 1));
+			return;
+		}
+
 		// Rule about the arrow
 		tell(new ComplexSentence(
 				newSymbol(HAVE_ARROW, t + 1),
@@ -473,6 +1125,31 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	private void tellSuccessorStateLocationAxiom(int t, int x, int y) {
 		// Successor state axiom for square [x, y]
 		// Rules about current location
+		if(directClauses) {
+			List<PropositionSymbol> args = new ArrayList<>();
+			args.add(newSymbol(LOCATION, t + 1, x, y));
+			args.add(newSymbol(LOCATION, t, x, y));
+			args.add(newSymbol(ACTION_FORWARD, t));
+			args.add(newSymbol(PERCEPT_BUMP, t + 1));
+			if(x > 1) { // West room is possible
+				args.add(newSymbol(LOCATION, t, x - 1, y));
+				args.add(newSymbol(FACING_EAST, t));
+			}
+			if(y < caveYDimension) { // North room is possible
+				args.add(newSymbol(LOCATION, t, x, y + 1));
+				args.add(newSymbol(FACING_SOUTH, t));
+			}
+			if(x < caveXDimension) { // East room is possible
+				args.add(newSymbol(LOCATION, t, x + 1, y));
+				args.add(newSymbol(FACING_WEST, t));
+			}
+			if(y > 1) { // South room is possible
+				args.add(newSymbol(LOCATION, t, x, y - 1));
+				args.add(newSymbol(FACING_NORTH, t));
+			}
+			tellTemplate(WumpusClauseTemplates.LOCATION[(args.size() - 4) / 2], args);
+			return;
+		}
 		List<Sentence> locDisjuncts = new ArrayList<>();
 		locDisjuncts.add(new ComplexSentence(
 				newSymbol(LOCATION, t, x, y),
@@ -528,6 +1205,23 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		//
 		// Successor state axioms (independent of location)
 		// Rules about current orientation
+		if(directClauses) {
+			PropositionSymbol left = newSymbol(ACTION_TURN_LEFT, t);
+			PropositionSymbol right = newSymbol(ACTION_TURN_RIGHT, t);
+			PropositionSymbol north = newSymbol(FACING_NORTH, t);
+			PropositionSymbol south = newSymbol(FACING_SOUTH, t);
+			PropositionSymbol east = newSymbol(FACING_EAST, t);
+			PropositionSymbol west = newSymbol(FACING_WEST, t);
+			tellTemplate(WumpusClauseTemplates.ORIENTATION,
+					newSymbol(FACING_NORTH, t + 1), west, right, east, left, north, left, right);
+			tellTemplate(WumpusClauseTemplates.ORIENTATION,
+					newSymbol(FACING_SOUTH, t + 1), west, left, east, right, south, left, right);
+			tellTemplate(WumpusClauseTemplates.ORIENTATION,
+					newSymbol(FACING_EAST, t + 1), north, right, south, left, east, left, right);
+			tellTemplate(WumpusClauseTemplates.ORIENTATION,
+					newSymbol(FACING_WEST, t + 1), north, left, south, right, west, left, right);
+			return;
+		}
 		// Facing North
 		tell(new ComplexSentence(
 				newSymbol(FACING_NORTH, t + 1),
@@ -605,24 +1299,199 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		}
 	}
 
+	private void setTime(PropositionSymbol symbol, int timeStep) {
+		int id = symbol.getId();
+		if(id >= symbolTimes.length)
+			symbolTimes = Arrays.copyOf(symbolTimes, Math.max(2 * symbolTimes.length, id + 64));
+		symbolTimes[id] = timeStep + 1;
+	}
+
+	/**
+	 * Tells the given symbol (if value is true) or its negation.
+	 */
+	private void tellLiteral(PropositionSymbol symbol, boolean value) {
+		if(directClauses)
+			tell(new Clause(new Literal(symbol, value)));
+		else
+			tell(value ? symbol : new ComplexSentence(Connective.NOT, symbol));
+	}
+
+	private void tellTemplate(int[][] template, PropositionSymbol... args) {
+		tellClauses(WumpusClauseTemplates.instantiate(template, args));
+	}
+
+	private void tellTemplate(int[][] template, List<PropositionSymbol> args) {
+		tellTemplate(template, args.toArray(new PropositionSymbol[0]));
+	}
+
+	private static List<Literal> toLiterals(List<PropositionSymbol> symbols) {
+		List<Literal> result = new ArrayList<>(symbols.size());
+		for(PropositionSymbol symbol : symbols)
+			result.add(new Literal(symbol));
+		return result;
+	}
+
+	/**
+	 * Returns the rooms whose query was (if <code>entailed</code> is true) or was
+	 * not (if <code>entailed</code> is false) entailed.
+	 */
+	private static Set<Room> selectRooms(List<Room> rooms, Boolean[] answers, boolean entailed) {
+		Set<Room> result = new LinkedHashSet<>();
+		for(int i = 0; i < rooms.size(); i++) {
+			if(Boolean.TRUE.equals(answers[i]) == entailed)
+				result.add(rooms.get(i));
+		}
+		return result;
+	}
+
+	// Optimization: Symbols are interned, repeated requests neither concatenate strings nor allocate objects.
 	public PropositionSymbol newSymbol(String prefix, int timeStep) {
-		return new PropositionSymbol(prefix + "_" + timeStep);
+		PropositionSymbol result = getSymbolTable().symbol(prefix, timeStep);
+		if(!prefix.equals(WUMPUS_AUXILIARY))
+			setTime(result, timeStep);
+		return result;
 	}
 
 	public PropositionSymbol newSymbol(String prefix, int x, int y) {
-		return new PropositionSymbol(prefix + "_" + x + "_" + y);
+		return getSymbolTable().symbol(prefix, x, y);
 	}
 
 	public PropositionSymbol newSymbol(String prefix, int timeStep, int x, int y) {
-		return newSymbol(newSymbol(prefix, timeStep).toString(), x, y);
+		PropositionSymbol result = getSymbolTable().symbol(prefix, timeStep, x, y);
+		setTime(result, timeStep);
+		return result;
 	}
 
+	@Override
 	public Metrics getMetrics() {
 		Metrics result = new Metrics();
 		result.set("kb.size", size());
 		result.set("kb.sym.size", getSymbols().size());
 		result.set("kb.cnf.size", asCNF().size());
-		result.set("reasoning.time[s]", reasoningTime / 1000);
+		if(temporalWindow)
+			result.set("kb.window.retained", retainedFluents);
+		result.set("cache.hits", entailmentCache.getHits());
+		result.set("cache.misses", entailmentCache.getMisses());
+		result.set("reasoning.time[ms]", reasoningTime / 1e6);
+		result.set("solver.queries", solverQueries);
+		long[] solverStatistics = getSolverStatistics();
+		if(solverStatistics != null) {
+			result.set("solver.calls", solverStatistics[0]);
+			result.set("solver.decisions", solverStatistics[1]);
+			result.set("solver.propagations", solverStatistics[2]);
+		}
+		for(Map.Entry<WumpusQueryKind, LatencyHistogram> entry : queryLatencies.entrySet()) {
+			String prefix = "query." + entry.getKey().getName();
+			LatencyHistogram histogram = entry.getValue();
+			result.set(prefix + ".count", histogram.getCount());
+			result.set(prefix + ".mean[us]", histogram.getMean() / 1e3);
+			result.set(prefix + ".p50[us]", histogram.getPercentile(0.5) / 1e3);
+			result.set(prefix + ".p99[us]", histogram.getPercentile(0.99) / 1e3);
+			result.set(prefix + ".max[us]", histogram.getMax() / 1e3);
+		}
+		if(lastStep != null)
+			result.setAll(lastStep);
+		return result;
+	}
+
+	/**
+	 * @return the latency histogram of the given kind of question (see {@link WumpusReasoner}).
+	 */
+	public LatencyHistogram getQueryLatencies(WumpusQueryKind kind) {
+		return queryLatencies.computeIfAbsent(kind, k -> new LatencyHistogram());
+	}
+
+	/**
+	 * Sets a listener which receives the latency of each question and the
+	 * metrics of each step, or null.
+	 */
+	public void setReasoningListener(WumpusReasoningListener listener) {
+		reasoningListener = listener;
+	}
+
+	//
+	// INSTRUMENTATION
+	//
+
+	/**
+	 * Writes a file as described in {@link #enableSlowQueryCapture(long, Path)}.
+	 *
+	 * @param answer the answer of a single query, null for a batch.
+	 */
+	private void captureSlowQuery(List<? extends Sentence> queries, Boolean answer, long nanos) {
+		List<Clause> clauses = new ArrayList<>(getClauseStore().asList());
+		List<String> comments = new ArrayList<>();
+		comments.add(String.format("slow wumpus query: %.3f ms, %d queries", nanos / 1e6, queries.size()));
+		for(Sentence query : queries)
+			comments.add("query: " + query);
+		if(answer != null) {
+			clauses.addAll(ConvertToConjunctionOfClauses.apply
+					(new ComplexSentence(Connective.NOT, queries.get(0))).getClauses());
+			comments.add("clauses: KB & ~query, " + (answer ? "unsatisfiable (entailed)" : "satisfiable (not entailed)"));
+		} else {
+			comments.add("clauses: KB");
+		}
+		Path file = slowQueryDirectory.resolve(String.format("slow-query-%04d.cnf", ++capturedQueries));
+		try {
+			DimacsWriter.write(clauses, file, comments.toArray(new String[0]));
+		} catch(IOException e) {
+			throw new UncheckedIOException("Cannot capture slow query to " + file, e);
+		}
+	}
+
+	private void recordQuery(WumpusQueryKind kind, long tStart) {
+		long nanos = System.nanoTime() - tStart;
+		getQueryLatencies(kind).record(nanos);
+		if(reasoningListener != null)
+			reasoningListener.queryAnswered(kind, nanos);
+	}
+
+	/**
+	 * Computes the effort of the step which ends at time t (see
+	 * {@link #makeActionSentence(WumpusAction, int)}) and notifies the listener.
+	 */
+	private void completeStep(int t) {
+		long[] solverStatistics = getSolverStatistics();
+		long[] current = {reasoningTime, solverQueries, 0, 0, 0};
+		if(solverStatistics != null)
+			System.arraycopy(solverStatistics, 0, current, 2, solverStatistics.length);
+		Metrics step = new Metrics();
+		step.set("step.t", t);
+		step.set("step.reasoning.time[ms]", (current[0] - stepStart[0]) / 1e6);
+		step.set("step.solver.queries", current[1] - stepStart[1]);
+		if(solverStatistics != null) {
+			step.set("step.solver.calls", current[2] - stepStart[2]);
+			step.set("step.solver.decisions", current[3] - stepStart[3]);
+			step.set("step.solver.propagations", current[4] - stepStart[4]);
+		}
+		step.set("step.kb.clauses", getClauseStore().size());
+		step.set("step.kb.symbols", getSymbolTable().size());
+		stepStart = current;
+		lastStep = step;
+		if(reasoningListener != null)
+			reasoningListener.stepCompleted(t, step);
+	}
+
+	/**
+	 * Sums up the statistics of the checkers which provide them (see
+	 * {@link SolverStatistics}), including the idle workers of parallel query mode.
+	 *
+	 * @return solve calls, decisions and propagations, or null if no checker provides statistics.
+	 */
+	private long[] getSolverStatistics() {
+		long[] result = null;
+		List<EntailmentChecker> checkers = new ArrayList<>(idleWorkerCheckers);
+		checkers.add(checker);
+		for(EntailmentChecker c : checkers) {
+			if(c instanceof SolverStatistics) {
+				SolverStatistics statistics = (SolverStatistics) c;
+				if(result == null)
+					result = new long[3];
+				result[0] += statistics.getSolveCalls();
+				result[1] += statistics.getDecisions();
+				result[2] += statistics.getPropagations();
+			}
+		}
 		return result;
 	}
 }
@@ -0,0 +1,313 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import wumpusworld.core.util.Snapshots;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 499.<br>
+ * <br>
+ * Computes the probabilities of pits and the wumpus for the rooms of a cave
+ * from the observed breezes and stenches. Each room except the start contains
+ * a pit with a fixed prior probability (0.2 in the book), and the wumpus is
+ * in one of the rooms except the start with uniform probability.<br>
+ * <br>
+ * For pits, only the <b>frontier</b> matters: the rooms which are not known
+ * to be pit-free and are neighbours of a breezy room. A breezy room states
+ * that at least one of its frontier neighbours contains a pit. The frontier
+ * is split into connected components of rooms which share such constraints.
+ * The components are conditionally independent, so the probabilities are
+ * computed by enumerating the pit configurations of each component separately
+ * and summing the prior probabilities of the consistent ones. The results are
+ * cached by the constraints of the component, so that only components changed
+ * by the last observation are enumerated again. The cache only keeps the
+ * components of the current frontier. Components with more than
+ * {@link #MAX_ENUMERATED_ROOMS} rooms are approximated by considering each
+ * constraint on its own.<br>
+ * <br>
+ * For the wumpus, the constraints are much simpler: A stench restricts the
+ * possible rooms to the neighbours, no stench excludes them. All remaining
+ * candidates are equally likely.
+ */
+public class WumpusProbabilityModel {
+	public static final double DEFAULT_PIT_PROBABILITY = 0.2;
+	public static final int MAX_ENUMERATED_ROOMS = 16;
+
+	private final int caveXDimension;
+	private final int caveYDimension;
+	private final double pitProbability;
+	private final Set<Room> pitFree = new HashSet<>();
+	private final Set<Room> breezy = new LinkedHashSet<>();
+	private final Set<Room> wumpusCandidates = new LinkedHashSet<>();
+	private boolean wumpusAlive = true;
+	//
+	private Map<Room, Double> pitProbabilities;
+	private final Map<Set<Set<Room>>, Map<Room, Double>> componentCache = new HashMap<>();
+	private int cacheHits;
+	private int cacheMisses;
+
+	public WumpusProbabilityModel(int caveXDim, int caveYDim, Room start) {
+		this(caveXDim, caveYDim, start, DEFAULT_PIT_PROBABILITY);
+	}
+
+	/**
+	 * @param caveXDim x dimensions of the wumpus world's cave.
+	 * @param caveYDim y dimensions of the wumpus world's cave.
+	 * @param start the room where the agent starts (contains neither pit nor wumpus).
+	 * @param pitProbability prior probability of a pit in a room.
+	 */
+	public WumpusProbabilityModel(int caveXDim, int caveYDim, Room start, double pitProbability) {
+		caveXDimension = caveXDim;
+		caveYDimension = caveYDim;
+		this.pitProbability = pitProbability;
+		for(int x = 1; x <= caveXDim; x++)
+			for(int y = 1; y <= caveYDim; y++)
+				wumpusCandidates.add(new Room(x, y));
+		wumpusCandidates.remove(start);
+		pitFree.add(start);
+	}
+
+	/**
+	 * Adds the percept which the agent has perceived in the given room. The
+	 * room itself is known to be safe as the agent is still alive.
+	 */
+	public void observe(Room room, WumpusPercept percept) {
+		List<Room> neighbours = getNeighbours(room);
+		boolean changed = pitFree.add(room);
+		if(percept.isBreeze())
+			changed |= breezy.add(room);
+		else
+			changed |= pitFree.addAll(neighbours);
+		if(changed)
+			pitProbabilities = null;
+
+		if(percept.isStench())
+			wumpusCandidates.retainAll(neighbours);
+		else
+			wumpusCandidates.removeAll(neighbours);
+		wumpusCandidates.remove(room);
+		if(percept.isScream())
+			wumpusAlive = false;
+	}
+
+	/**
+	 * @return the probability that the room contains a pit.
+	 */
+	public double getPitProbability(Room room) {
+		if(pitFree.contains(room))
+			return 0;
+		if(pitProbabilities == null)
+			pitProbabilities = computePitProbabilities();
+		return pitProbabilities.getOrDefault(room, pitProbability);
+	}
+
+	/**
+	 * @return the probability that the room contains a living wumpus.
+	 */
+	public double getWumpusProbability(Room room) {
+		if(!wumpusAlive || !wumpusCandidates.contains(room))
+			return 0;
+		return 1.0 / wumpusCandidates.size();
+	}
+
+	/**
+	 * @return the probability that the agent dies when entering the room.
+	 */
+	public double getRisk(Room room) {
+		return 1 - (1 - getPitProbability(room)) * (1 - getWumpusProbability(room));
+	}
+
+	/**
+	 * Writes the observations (not the cached probabilities).
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		writeRooms(out, pitFree);
+		writeRooms(out, breezy);
+		writeRooms(out, wumpusCandidates);
+		out.writeBoolean(wumpusAlive);
+	}
+
+	/**
+	 * Replaces the observations by those written by {@link #writeState(DataOutputStream)}.
+	 */
+	public void readState(ByteBuffer in) throws IOException {
+		readRooms(in, pitFree);
+		readRooms(in, breezy);
+		readRooms(in, wumpusCandidates);
+		wumpusAlive = in.get() != 0;
+		pitProbabilities = null;
+	}
+
+	public int getCacheHits() {
+		return cacheHits;
+	}
+
+	public int getCacheMisses() {
+		return cacheMisses;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private static void writeRooms(DataOutputStream out, Set<Room> rooms) throws IOException {
+		out.writeInt(rooms.size());
+		for(Room room : rooms) {
+			out.writeInt(room.getX());
+			out.writeInt(room.getY());
+		}
+	}
+
+	private static void readRooms(ByteBuffer in, Set<Room> rooms) throws IOException {
+		int size = Snapshots.checkIndex(in.getInt(), in.remaining() / 8 + 1);
+		rooms.clear();
+		for(int i = 0; i < size; i++)
+			rooms.add(new Room(in.getInt(), in.getInt()));
+	}
+
+	private List<Room> getNeighbours(Room room) {
+		List<Room> result = new ArrayList<>(4);
+		int x = room.getX();
+		int y = room.getY();
+		if(x > 1)
+			result.add(new Room(x - 1, y));
+		if(x < caveXDimension)
+			result.add(new Room(x + 1, y));
+		if(y > 1)
+			result.add(new Room(x, y - 1));
+		if(y < caveYDimension)
+			result.add(new Room(x, y + 1));
+		return result;
+	}
+
+	private Map<Room, Double> computePitProbabilities() {
+		// one constraint per breezy room: at least one of the frontier rooms contains a pit
+		List<Set<Room>> constraints = new ArrayList<>();
+		for(Room room : breezy) {
+			Set<Room> frontier = new LinkedHashSet<>(getNeighbours(room));
+			frontier.removeAll(pitFree);
+			constraints.add(frontier);
+		}
+		Map<Room, Double> result = new HashMap<>();
+		List<Set<Set<Room>>> components = getComponents(constraints);
+		for(Set<Set<Room>> component : components) {
+			Map<Room, Double> probabilities = componentCache.get(component);
+			if(probabilities != null) {
+				cacheHits++;
+			} else {
+				cacheMisses++;
+				probabilities = computePitProbabilities(component);
+				componentCache.put(component, probabilities);
+			}
+			result.putAll(probabilities);
+		}
+		// components which are not part of the current frontier will not occur again
+		componentCache.keySet().retainAll(components);
+		return result;
+	}
+
+	/**
+	 * Groups the constraints into sets of constraints which are connected by shared rooms.
+	 */
+	private List<Set<Set<Room>>> getComponents(List<Set<Room>> constraints) {
+		List<Set<Set<Room>>> result = new ArrayList<>();
+		List<Set<Room>> componentRooms = new ArrayList<>();
+		for(Set<Room> constraint : constraints) {
+			Set<Set<Room>> merged = new HashSet<>();
+			Set<Room> mergedRooms = new HashSet<>(constraint);
+			merged.add(constraint);
+			for(int i = result.size() - 1; i >= 0; i--) {
+				if(!Collections.disjoint(componentRooms.get(i), constraint)) {
+					merged.addAll(result.remove(i));
+					mergedRooms.addAll(componentRooms.remove(i));
+				}
+			}
+			result.add(merged);
+			componentRooms.add(mergedRooms);
+		}
+		return result;
+	}
+
+	private Map<Room, Double> computePitProbabilities(Set<Set<Room>> component) {
+		Map<Room, Integer> indices = new LinkedHashMap<>();
+		for(Set<Room> constraint : component)
+			for(Room room : constraint)
+				indices.putIfAbsent(room, indices.size());
+		List<Room> rooms = new ArrayList<>(indices.keySet());
+		Map<Room, Double> result = new HashMap<>();
+
+		if(rooms.size() > MAX_ENUMERATED_ROOMS) {
+			// P(pit | constraint) for each constraint on its own, the most informative one wins.
+			for(Set<Room> constraint : component) {
+				double p = pitProbability / (1 - Math.pow(1 - pitProbability, constraint.size()));
+				for(Room room : constraint)
+					result.merge(room, p, Math::max);
+			}
+			return result;
+		}
+
+		// constraints[i] contains the masks of the constraints whose last room has index i
+		List<List<Long>> constraints = new ArrayList<>();
+		for(int i = 0; i < rooms.size(); i++)
+			constraints.add(new ArrayList<>());
+		for(Set<Room> constraint : component) {
+			long mask = 0;
+			int last = -1;
+			for(Room room : constraint) {
+				int idx = indices.get(room);
+				mask |= 1L << idx;
+				last = Math.max(last, idx);
+			}
+			if(last >= 0)
+				constraints.get(last).add(mask);
+		}
+		double[] pitWeights = new double[rooms.size()];
+		double total = enumerate(0, 0L, 1.0, constraints, pitWeights);
+		for(int i = 0; i < rooms.size(); i++)
+			result.put(rooms.get(i), total > 0 ? pitWeights[i] / total : 1);
+		return result;
+	}
+
+	/**
+	 * Sums up the probabilities of all consistent pit configurations which
+	 * extend the given assignment of the rooms 0, ..., i-1.
+	 *
+	 * @return the sum of the probabilities. The sums restricted to
+	 * configurations with a pit in room j are added to pitWeights[j].
+	 */
+	private double enumerate(int i, long pits, double probability, List<List<Long>> constraints,
+	                         double[] pitWeights) {
+		if(i == pitWeights.length) {
+			for(int j = 0; j < pitWeights.length; j++)
+				if((pits & (1L << j)) != 0)
+					pitWeights[j] += probability;
+			return probability;
+		}
+		double result = 0;
+		for(int pit = 1; pit >= 0; pit--) {
+			long assignment = pit == 1 ? pits | (1L << i) : pits;
+			boolean consistent = true;
+			for(long mask : constraints.get(i)) {
+				if((assignment & mask) == 0) {
+					consistent = false;
+					break;
+				}
+			}
+			if(consistent)
+				result += enumerate(i + 1, assignment,
+						probability * (pit == 1 ? pitProbability : 1 - pitProbability), constraints, pitWeights);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,25 @@
+package wumpusworld.core.environment.wumpusworld;
+
+/**
+ * The kinds of questions a wumpus agent asks its knowledge base (see
+ * {@link WumpusReasoner}). Latencies are recorded separately for each kind
+ * (see {@link WumpusReasoningListener}).
+ */
+public enum WumpusQueryKind {
+
+	POSITION("position"), SAFE("safe"), NOT_UNSAFE("not-unsafe"), POSSIBLE_WUMPUS("possible-wumpus"),
+	UNVISITED("unvisited"), GLITTER("glitter"), ARROW("arrow");
+
+	private final String name;
+
+	WumpusQueryKind(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name used in metric keys, e.g. "not-unsafe".
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,84 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.util.Set;
+
+import wumpusworld.core.search.framework.Metrics;
+
+/**
+ * The interface between the hybrid wumpus agents and their knowledge about the
+ * cave. The agent tells what it perceives and does, and asks which rooms are
+ * safe, not unsafe, etc. The reference implementation is the propositional
+ * {@link WumpusKnowledgeBase}; all implementations are expected to give the
+ * same answers.
+ */
+public interface WumpusReasoner {
+
+	int getCaveXDimension();
+
+	int getCaveYDimension();
+
+	/**
+	 * Disables creation of computational expensive temporal navigation sentences.
+	 */
+	void disableNavSentences();
+
+	/**
+	 * Add to KB sentences that describe the perception p
+	 * (only about the current time).
+	 *
+	 * @param p perception that must be added to KB
+	 * @param time current time
+	 */
+	void makePerceptSentence(WumpusPercept p, int time);
+
+	/**
+	 * Add to KB sentences that describe the action a
+	 *
+	 * @param a action that must be added to KB
+	 * @param time current time
+	 */
+	void makeActionSentence(WumpusAction a, int time);
+
+	/**
+	 * TELL the KB the temporal "physics" sentences for time t. The current
+	 * position has to be derived from the actions told so far.
+	 *
+	 * @param t current time step.
+	 */
+	void tellTemporalPhysicsSentences(int t);
+
+	/**
+	 * TELL the KB the temporal "physics" sentences for time t.
+	 * This version profits from the agent's knowledge about its current position.
+	 *
+	 * @param t current time step.
+	 * @param agentPosition the current position of the agent.
+	 */
+	void tellTemporalPhysicsSentences(int t, AgentPosition agentPosition);
+
+	AgentPosition askCurrentPosition(int t);
+
+	// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
+	Set<Room> askSafeRooms(int t);
+
+	// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}, visited rooms are known to be safe
+	Set<Room> askSafeRooms(int t, Set<Room> visited);
+
+	// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
+	Set<Room> askNotUnsafeRooms(int t);
+
+	// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}, visited rooms are known to be safe
+	Set<Room> askNotUnsafeRooms(int t, Set<Room> visited);
+
+	boolean askGlitter(int t);
+
+	boolean askHaveArrow(int t);
+
+	// possible_wumpus <- {[x, y] : ASK(KB, ~W<sub>x,y</sub>) = false}
+	Set<Room> askPossibleWumpusRooms(int t);
+
+	// unvisited <- {[x, y] : ASK(KB, L<sup>t'</sup><sub>x,y</sub>) = false for all t' &le; t}
+	Set<Room> askUnvisitedRooms(int t);
+
+	Metrics getMetrics();
+}
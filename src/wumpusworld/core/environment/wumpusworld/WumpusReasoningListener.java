@@ -0,0 +1,30 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import wumpusworld.core.search.framework.Metrics;
+
+/**
+ * Receives the measurements of a {@link WumpusKnowledgeBase}, e.g. to export
+ * them to a monitoring system. Listeners are called synchronously by the
+ * thread which uses the knowledge base, so they should return quickly.
+ */
+public interface WumpusReasoningListener {
+
+	/**
+	 * Called after a question of the agent has been answered.
+	 *
+	 * @param kind the kind of question.
+	 * @param nanos the time needed to answer it (including cached answers).
+	 */
+	default void queryAnswered(WumpusQueryKind kind, long nanos) {
+	}
+
+	/**
+	 * Called when the action of time step t has been told, i.e. at the end of a
+	 * step of the agent.
+	 *
+	 * @param stepMetrics the effort of the step and the size of the knowledge base
+	 * afterwards (the "step.*" keys of {@link WumpusKnowledgeBase#getMetrics()}).
+	 */
+	default void stepCompleted(int t, Metrics stepMetrics) {
+	}
+}
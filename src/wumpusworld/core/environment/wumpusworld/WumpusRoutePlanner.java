@@ -0,0 +1,142 @@
+package wumpusworld.core.environment.wumpusworld;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import wumpusworld.core.search.informed.DStarLiteSearch;
+
+/**
+ * Incremental route planning for the hybrid agents (see
+ * {@link HybridWumpusAgent#enableIncrementalRoutePlanning()}). Routes are
+ * computed by {@link DStarLiteSearch}, which keeps its values between the
+ * calls. Between two calls, the agent usually moves a few steps and a few
+ * rooms become allowed, so that only a small part of the values has to be
+ * repaired.<br>
+ * <br>
+ * Within one reasoning step, the agent plans routes to quite different goals
+ * (e.g. unvisited rooms, shooting positions, and the start room). Therefore,
+ * a few searches are kept, and each route is planned by the search whose goals
+ * and allowed rooms are most similar, or by a new search if all of them
+ * differ too much. The routes are as short as the routes found by A*, but ties
+ * may be broken differently.
+ */
+public class WumpusRoutePlanner {
+	private static final int MAX_SEARCHES = 4;
+
+	private final int caveXDimension;
+	private final int caveYDimension;
+	private final LinkedList<Planner> planners = new LinkedList<>(); // most recently used first
+
+	public WumpusRoutePlanner(int caveXDim, int caveYDim) {
+		caveXDimension = caveXDim;
+		caveYDimension = caveYDim;
+	}
+
+	/**
+	 * Returns a sequence of actions with minimal length.
+	 *
+	 * @param current the current position of the agent.
+	 * @param goals a set of agent positions; try to plan a route to one of them
+	 * @param allowed a set of squares that can form part of the route
+	 * @return the actions or an empty list if no goal can be reached.
+	 */
+	public List<WumpusAction> planRoute(AgentPosition current, Set<AgentPosition> goals, Set<Room> allowed) {
+		Planner planner = selectPlanner(goals, allowed);
+		planner.setAllowed(allowed);
+		planner.search.setGoals(goals);
+		return planner.search.findActions(current).orElse(Collections.emptyList());
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * Returns the search whose repair is expected to be cheapest (measured by
+	 * the number of states to be updated), and moves it to the front.
+	 */
+	private Planner selectPlanner(Set<AgentPosition> goals, Set<Room> allowed) {
+		Planner best = null;
+		int bestCost = goals.size() + 4 * allowed.size(); // approximately the costs of a new search
+		for(Planner planner : planners) {
+			int cost = difference(planner.search.getGoals(), goals) + 4 * difference(planner.allowed, allowed);
+			if(cost < bestCost) {
+				best = planner;
+				bestCost = cost;
+			}
+		}
+		if(best != null) {
+			planners.remove(best);
+		} else {
+			best = new Planner();
+			if(planners.size() == MAX_SEARCHES)
+				planners.removeLast();
+		}
+		planners.addFirst(best);
+		return best;
+	}
+
+	/**
+	 * @return the size of the symmetric difference.
+	 */
+	private static <T> int difference(Set<T> s1, Set<T> s2) {
+		int result = 0;
+		for(T e : s1)
+			if(!s2.contains(e))
+				result++;
+		for(T e : s2)
+			if(!s1.contains(e))
+				result++;
+		return result;
+	}
+
+	/**
+	 * A search together with the model cave which defines its transitions.
+	 */
+	private class Planner {
+		final WumpusCave cave = new WumpusCave(caveXDimension, caveYDimension);
+		final Function<AgentPosition, List<AgentPosition>> predecessorsFn =
+				WumpusFunctions.createPredecessorsFunction(cave);
+		final Set<Room> allowed;
+		final DStarLiteSearch<AgentPosition, WumpusAction> search;
+
+		Planner() {
+			allowed = new HashSet<>();
+			cave.setAllowed(allowed);
+			search = new DStarLiteSearch<>(WumpusFunctions.createActionsFunction(cave),
+					WumpusFunctions.createResultFunction(cave), predecessorsFn,
+					(s1, s2) -> Math.abs(s1.getX() - s2.getX()) + Math.abs(s1.getY() - s2.getY()));
+		}
+
+		/**
+		 * Changes the allowed rooms and reports the positions from which a changed room is entered.
+		 */
+		void setAllowed(Set<Room> newAllowed) {
+			List<Room> changed = new ArrayList<>();
+			for(Iterator<Room> it = allowed.iterator(); it.hasNext(); ) {
+				Room room = it.next();
+				if(!newAllowed.contains(room)) {
+					changed.add(room);
+					it.remove();
+				}
+			}
+			for(Room room : newAllowed)
+				if(allowed.add(room))
+					changed.add(room);
+			if(changed.isEmpty())
+				return;
+			cave.setAllowed(allowed);
+			Set<AgentPosition> states = new HashSet<>();
+			for(Room room : changed)
+				for(AgentPosition.Orientation orientation : AgentPosition.Orientation.values())
+					states.addAll(predecessorsFn.apply(new AgentPosition(room, orientation)));
+			search.updateStates(states);
+		}
+	}
+}
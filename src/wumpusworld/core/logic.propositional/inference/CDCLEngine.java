@@ -0,0 +1,788 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import wumpusworld.core.logic.propositional.kb.data.ArrayModel;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * The core of a conflict-driven clause-learning (CDCL) SAT solver working on
+ * literal codes as defined by {@link CompactClauseDatabase} (variable numbers
+ * starting with 1, negative numbers for negative literals). The engine
+ * combines the following techniques:
+ * <ul>
+ * <li>unit propagation based on two watched literals per clause,</li>
+ * <li>conflict analysis with first-UIP clause learning, non-chronological
+ * backjumping and local clause minimization,</li>
+ * <li>VSIDS branching with phase saving,</li>
+ * <li>restarts following the Luby sequence,</li>
+ * <li>activity-based deletion of learned clauses,</li>
+ * <li>solving under assumptions, so that one engine can answer many queries
+ * over the same clauses (incremental SAT).</li>
+ * </ul>
+ * Clauses can be added between calls of {@link #solve(int...)}. Learned
+ * clauses are implied by the original clauses and are therefore kept across
+ * calls.<br>
+ * <br>
+ * Note: Engines are not thread-safe. Only {@link #cancel()} may be called
+ * from other threads.
+ *
+ * @see CDCLSolver
+ */
+public class CDCLEngine {
+	private static final int NO_REASON = -1;
+	private static final int RESTART_BASE = 100;
+
+	// clause database
+	private int[][] clauses = new int[64][];
+	private boolean[] learned = new boolean[64];
+	private double[] clauseActivity = new double[64];
+	private int numClauses; // including deleted
+	private int numLearned;
+	private int[] freeClauseIds = new int[16];
+	private int numFreeClauseIds;
+	private double clauseInc = 1;
+	private double maxLearned;
+
+	// watch lists, indexed by literal index (see idx)
+	private int[][] watches = new int[2][];
+	private int[] watchSizes = new int[2];
+
+	// variables
+	private int numVars;
+	private final ArrayModel assignment = new ArrayModel(0);
+	private int[] level = new int[1];
+	private int[] reason = new int[1];
+	private boolean[] phase = new boolean[1];
+	private double[] activity = new double[1];
+	private boolean[] seen = new boolean[1];
+	private double varInc = 1;
+	private final VarHeap heap = new VarHeap();
+
+	// search state
+	private int[] trailLim = new int[16];
+	private int decisionLevel;
+	private int qhead;
+	private boolean ok = true;
+	private byte[] model = new byte[1];
+	private int[] learntBuffer = new int[16];
+	private int[] toClear = new int[16];
+	private volatile boolean cancelled;
+
+	// configuration
+	private double varDecay = 0.95;
+	private double clauseDecay = 0.999;
+	private double randomDecisionFrequency = 0;
+	private int restartBase = RESTART_BASE;
+	private Random random = new Random(91648253);
+
+	// statistics
+	private long decisions;
+	private long propagations;
+	private long conflicts;
+	private long restarts;
+	private long solveCalls;
+
+	/**
+	 * Creates an empty engine.
+	 */
+	public CDCLEngine() {
+		watches[0] = new int[4];
+		watches[1] = new int[4];
+	}
+
+	//
+	// CONFIGURATION
+	//
+
+	/**
+	 * Sets the seed for random decisions and the initial variable order.
+	 */
+	public void setRandomSeed(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Sets the probability of making a random decision instead of following VSIDS (default 0).
+	 */
+	public void setRandomDecisionFrequency(double frequency) {
+		randomDecisionFrequency = frequency;
+	}
+
+	/**
+	 * Sets the number of conflicts which corresponds to one unit of the Luby restart sequence.
+	 */
+	public void setRestartBase(int conflicts) {
+		restartBase = conflicts;
+	}
+
+	/**
+	 * Sets the VSIDS decay factor (default 0.95).
+	 */
+	public void setVariableDecay(double decay) {
+		varDecay = decay;
+	}
+
+	/**
+	 * Sets the initial phase of all currently unassigned variables which have not been decided yet.
+	 */
+	public void setDefaultPhase(boolean value) {
+		Arrays.fill(phase, value);
+	}
+
+	//
+	// PROBLEM SPECIFICATION
+	//
+
+	/**
+	 * @return the number of variables known by the engine.
+	 */
+	public int getNumberOfVariables() {
+		return numVars;
+	}
+
+	/**
+	 * Makes sure that the engine can handle the given number of variables.
+	 */
+	public void ensureVariables(int n) {
+		if(n <= numVars)
+			return;
+		assignment.ensureVariables(n);
+		if(n + 1 > level.length) {
+			int len = Math.max(n + 1, 2 * level.length);
+			level = Arrays.copyOf(level, len);
+			reason = Arrays.copyOf(reason, len);
+			phase = Arrays.copyOf(phase, len);
+			activity = Arrays.copyOf(activity, len);
+			seen = Arrays.copyOf(seen, len);
+			model = Arrays.copyOf(model, len);
+			watches = Arrays.copyOf(watches, 2 * len);
+			watchSizes = Arrays.copyOf(watchSizes, 2 * len);
+			heap.ensureCapacity(len);
+		}
+		for(int v = numVars + 1; v <= n; v++) {
+			watches[2 * v] = new int[4];
+			watches[2 * v + 1] = new int[4];
+			reason[v] = NO_REASON;
+			activity[v] = random.nextDouble() * 0.00001;
+			heap.insert(v);
+		}
+		numVars = n;
+	}
+
+	/**
+	 * Adds a clause to the problem. The literal array is copied.
+	 *
+	 * @return false if the clauses have become unsatisfiable (independent of
+	 * assumptions), true otherwise.
+	 */
+	public boolean addClause(int... literals) {
+		cancelUntil(0);
+		if(!ok)
+			return false;
+		int[] lits = literals.clone();
+		int maxVar = 0;
+		for(int lit : lits)
+			maxVar = Math.max(maxVar, Math.abs(lit));
+		ensureVariables(maxVar);
+		// simplify with respect to root level assignments, remove duplicates and tautologies
+		Arrays.sort(lits);
+		for(int lit : lits)
+			if(lit > 0 && Arrays.binarySearch(lits, -lit) >= 0)
+				return true; // tautology
+		int j = 0;
+		int prev = 0;
+		for(int lit : lits) {
+			byte value = assignment.valueOf(lit);
+			if(value == ArrayModel.TRUE)
+				return true; // clause is satisfied
+			if(value != ArrayModel.FALSE && lit != prev)
+				lits[j++] = prev = lit;
+		}
+		if(j == 0) {
+			ok = false;
+		} else if(j == 1) {
+			enqueue(lits[0], NO_REASON);
+			ok = propagate() == NO_REASON;
+		} else {
+			attachClause(Arrays.copyOf(lits, j), false);
+		}
+		return ok;
+	}
+
+	/**
+	 * @return false if the clauses are known to be unsatisfiable.
+	 */
+	public boolean isOk() {
+		return ok;
+	}
+
+	//
+	// SOLVING
+	//
+
+	/**
+	 * Searches for a model satisfying all clauses and the given assumptions.
+	 *
+	 * @param assumptions literals which are assumed to be true for this call only.
+	 * @return true if satisfiable (see {@link #modelValue(int)}), false if
+	 * unsatisfiable under the assumptions, null if the search was
+	 * cancelled.
+	 */
+	public Boolean solve(int... assumptions) {
+		solveCalls++;
+		cancelled = false;
+		if(!ok)
+			return false;
+		for(int lit : assumptions)
+			ensureVariables(Math.abs(lit));
+		if(maxLearned == 0)
+			maxLearned = Math.max(numClauses / 3.0, 1000);
+		Boolean result = null;
+		int restart = 0;
+		while(result == null) {
+			long budget = (long) (luby(restart++) * restartBase);
+			result = search(budget, assumptions);
+			if(result == null && (cancelled || Tasks.currIsCancelled()))
+				break;
+			if(result == null)
+				restarts++;
+		}
+		if(Boolean.TRUE.equals(result)) {
+			for(int v = 1; v <= numVars; v++)
+				model[v] = assignment.valueOf(v);
+		}
+		cancelUntil(0);
+		return result;
+	}
+
+	/**
+	 * Returns the value of a literal in the model found by the last successful
+	 * call of {@link #solve(int...)}.
+	 *
+	 * @return {@link ArrayModel#TRUE}, {@link ArrayModel#FALSE}, or
+	 * {@link ArrayModel#UNASSIGNED} for variables not known at that time.
+	 */
+	public byte modelValue(int literal) {
+		int var = Math.abs(literal);
+		if(var > numVars)
+			return ArrayModel.UNASSIGNED;
+		return literal > 0 ? model[var] : (byte) -model[var];
+	}
+
+	/**
+	 * Returns the value of a literal if it is implied by the clauses at the
+	 * root level (i.e. without search).
+	 */
+	public byte rootValue(int literal) {
+		int var = Math.abs(literal);
+		if(var > numVars || level[var] != 0)
+			return ArrayModel.UNASSIGNED;
+		return assignment.valueOf(literal);
+	}
+
+	/**
+	 * Stops a running search as soon as possible. Can be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	//
+	// STATISTICS
+	//
+
+	public long getDecisions() {
+		return decisions;
+	}
+
+	public long getPropagations() {
+		return propagations;
+	}
+
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	public long getRestarts() {
+		return restarts;
+	}
+
+	public long getSolveCalls() {
+		return solveCalls;
+	}
+
+	/**
+	 * @return the number of clauses currently stored (original and learned).
+	 */
+	public int getNumberOfClauses() {
+		return numClauses - numFreeClauseIds;
+	}
+
+	/**
+	 * @return the number of learned clauses currently stored.
+	 */
+	public int getNumberOfLearnedClauses() {
+		return numLearned;
+	}
+
+	//
+	// PRIVATE - search
+	//
+
+	private Boolean search(long conflictBudget, int[] assumptions) {
+		long conflictsAtStart = conflicts;
+		int iterations = 0;
+		while(true) {
+			if((++iterations & 0xFF) == 0 && (cancelled || Tasks.currIsCancelled()))
+				return null;
+			int confl = propagate();
+			if(confl != NO_REASON) {
+				conflicts++;
+				if(decisionLevel == 0) {
+					ok = false;
+					return false;
+				}
+				int learntSize = analyze(confl);
+				int backtrackLevel = learntSize == 1 ? 0 : level[Math.abs(learntBuffer[1])];
+				cancelUntil(backtrackLevel);
+				int[] learnt = Arrays.copyOf(learntBuffer, learntSize);
+				if(learntSize == 1) {
+					enqueue(learnt[0], NO_REASON);
+				} else {
+					int cid = attachClause(learnt, true);
+					bumpClause(cid);
+					enqueue(learnt[0], cid);
+				}
+				varInc /= varDecay;
+				clauseInc /= clauseDecay;
+			} else {
+				if(conflicts - conflictsAtStart >= conflictBudget) {
+					cancelUntil(0);
+					return null; // restart
+				}
+				if(numLearned - assignment.getTrailSize() >= maxLearned) {
+					reduceLearned();
+					maxLearned *= 1.1;
+				}
+				int next = 0;
+				while(decisionLevel < assumptions.length) {
+					int p = assumptions[decisionLevel];
+					byte value = assignment.valueOf(p);
+					if(value == ArrayModel.TRUE) {
+						newDecisionLevel(); // dummy decision level
+					} else if(value == ArrayModel.FALSE) {
+						return false; // unsatisfiable under assumptions
+					} else {
+						next = p;
+						break;
+					}
+				}
+				if(next == 0) {
+					next = pickBranchLiteral();
+					if(next == 0)
+						return true; // all variables assigned, model found
+					decisions++;
+				}
+				newDecisionLevel();
+				enqueue(next, NO_REASON);
+			}
+		}
+	}
+
+	private int pickBranchLiteral() {
+		int next = 0;
+		if(randomDecisionFrequency > 0 && !heap.isEmpty() && random.nextDouble() < randomDecisionFrequency) {
+			int v = heap.get(random.nextInt(heap.size()));
+			if(!assignment.isAssigned(v))
+				next = v;
+		}
+		while(next == 0) {
+			if(heap.isEmpty())
+				return 0;
+			int v = heap.removeMax();
+			if(!assignment.isAssigned(v))
+				next = v;
+		}
+		return phase[next] ? next : -next;
+	}
+
+	/**
+	 * Unit propagation based on watched literals.
+	 *
+	 * @return the ID of a conflicting clause or NO_REASON.
+	 */
+	private int propagate() {
+		int confl = NO_REASON;
+		while(qhead < assignment.getTrailSize()) {
+			int p = assignment.getTrailLiteral(qhead++);
+			int falseLit = -p;
+			int wi = idx(falseLit);
+			int[] ws = watches[wi];
+			int size = watchSizes[wi];
+			int i = 0, j = 0;
+			propagations++;
+			while(i < size) {
+				int cid = ws[i++];
+				int[] c = clauses[cid];
+				if(c == null)
+					continue; // deleted clause, drop watch
+				if(c[0] == falseLit) {
+					c[0] = c[1];
+					c[1] = falseLit;
+				}
+				if(assignment.valueOf(c[0]) == ArrayModel.TRUE) {
+					ws[j++] = cid;
+					continue;
+				}
+				boolean found = false;
+				for(int k = 2; k < c.length; k++) {
+					if(assignment.valueOf(c[k]) != ArrayModel.FALSE) {
+						c[1] = c[k];
+						c[k] = falseLit;
+						addWatch(c[1], cid);
+						found = true;
+						break;
+					}
+				}
+				if(found)
+					continue;
+				ws[j++] = cid;
+				if(assignment.valueOf(c[0]) == ArrayModel.FALSE) {
+					confl = cid;
+					qhead = assignment.getTrailSize();
+					while(i < size)
+						ws[j++] = ws[i++];
+				} else {
+					enqueue(c[0], cid);
+				}
+			}
+			watchSizes[wi] = j;
+			if(confl != NO_REASON)
+				break;
+		}
+		return confl;
+	}
+
+	/**
+	 * First-UIP conflict analysis. The learned clause is written into
+	 * learntBuffer with the asserting literal at position 0 and a literal of
+	 * the highest remaining decision level at position 1.
+	 *
+	 * @return the size of the learned clause.
+	 */
+	private int analyze(int confl) {
+		int pathCount = 0;
+		int p = 0;
+		int size = 1; // position 0 is reserved for the asserting literal
+		int index = assignment.getTrailSize() - 1;
+		do {
+			int[] c = clauses[confl];
+			if(learned[confl])
+				bumpClause(confl);
+			for(int k = (p == 0 ? 0 : 1); k < c.length; k++) {
+				int q = c[k];
+				int v = Math.abs(q);
+				if(!seen[v] && level[v] > 0) {
+					bumpVariable(v);
+					seen[v] = true;
+					if(level[v] >= decisionLevel) {
+						pathCount++;
+					} else {
+						if(size == learntBuffer.length)
+							learntBuffer = Arrays.copyOf(learntBuffer, 2 * size);
+						learntBuffer[size++] = q;
+					}
+				}
+			}
+			// select next literal to look at
+			while(!seen[Math.abs(assignment.getTrailLiteral(index--))]) ;
+			p = assignment.getTrailLiteral(index + 1);
+			confl = reason[Math.abs(p)];
+			seen[Math.abs(p)] = false;
+			pathCount--;
+		} while(pathCount > 0);
+		learntBuffer[0] = -p;
+
+		// local minimization: remove literals implied by other literals of the clause
+		if(size > toClear.length)
+			toClear = Arrays.copyOf(toClear, Math.max(size, 2 * toClear.length));
+		System.arraycopy(learntBuffer, 0, toClear, 0, size);
+		int j = 1;
+		for(int i = 1; i < size; i++) {
+			int v = Math.abs(learntBuffer[i]);
+			int r = reason[v];
+			boolean redundant = r != NO_REASON;
+			if(redundant) {
+				int[] c = clauses[r];
+				for(int k = 1; k < c.length; k++) {
+					int u = Math.abs(c[k]);
+					if(!seen[u] && level[u] > 0) {
+						redundant = false;
+						break;
+					}
+				}
+			}
+			if(!redundant)
+				learntBuffer[j++] = learntBuffer[i];
+		}
+		for(int i = 1; i < size; i++)
+			seen[Math.abs(toClear[i])] = false;
+		size = j;
+
+		// move a literal of the highest level to position 1
+		if(size > 1) {
+			int maxI = 1;
+			for(int i = 2; i < size; i++)
+				if(level[Math.abs(learntBuffer[i])] > level[Math.abs(learntBuffer[maxI])])
+					maxI = i;
+			int tmp = learntBuffer[1];
+			learntBuffer[1] = learntBuffer[maxI];
+			learntBuffer[maxI] = tmp;
+		}
+		return size;
+	}
+
+	private void enqueue(int literal, int reasonClause) {
+		int v = Math.abs(literal);
+		assignment.assign(literal);
+		level[v] = decisionLevel;
+		reason[v] = reasonClause;
+	}
+
+	private void newDecisionLevel() {
+		if(decisionLevel == trailLim.length)
+			trailLim = Arrays.copyOf(trailLim, 2 * trailLim.length);
+		trailLim[decisionLevel++] = assignment.getTrailSize();
+	}
+
+	private void cancelUntil(int lvl) {
+		if(decisionLevel > lvl) {
+			int limit = trailLim[lvl];
+			for(int i = assignment.getTrailSize() - 1; i >= limit; i--) {
+				int lit = assignment.getTrailLiteral(i);
+				int v = Math.abs(lit);
+				phase[v] = lit > 0;
+				reason[v] = NO_REASON;
+				if(!heap.contains(v))
+					heap.insert(v);
+			}
+			assignment.undoTo(limit);
+			qhead = limit;
+			decisionLevel = lvl;
+		}
+	}
+
+	//
+	// PRIVATE - clause database
+	//
+
+	private int attachClause(int[] c, boolean isLearned) {
+		int cid;
+		if(numFreeClauseIds > 0) {
+			cid = freeClauseIds[--numFreeClauseIds];
+		} else {
+			if(numClauses == clauses.length) {
+				clauses = Arrays.copyOf(clauses, 2 * numClauses);
+				learned = Arrays.copyOf(learned, 2 * numClauses);
+				clauseActivity = Arrays.copyOf(clauseActivity, 2 * numClauses);
+			}
+			cid = numClauses++;
+		}
+		clauses[cid] = c;
+		learned[cid] = isLearned;
+		clauseActivity[cid] = 0;
+		if(isLearned)
+			numLearned++;
+		addWatch(c[0], cid);
+		addWatch(c[1], cid);
+		return cid;
+	}
+
+	private void addWatch(int literal, int cid) {
+		int wi = idx(literal);
+		int size = watchSizes[wi];
+		if(size == watches[wi].length)
+			watches[wi] = Arrays.copyOf(watches[wi], 2 * size);
+		watches[wi][size] = cid;
+		watchSizes[wi] = size + 1;
+	}
+
+	/**
+	 * Removes about half of the learned clauses, preferring clauses with low
+	 * activity. Binary clauses and clauses which are reasons for current
+	 * assignments are kept. Watches of removed clauses are dropped lazily
+	 * during propagation.
+	 */
+	private void reduceLearned() {
+		int[] candidates = new int[numLearned];
+		int n = 0;
+		for(int cid = 0; cid < numClauses; cid++) {
+			if(clauses[cid] != null && learned[cid] && clauses[cid].length > 2 && !isLocked(cid))
+				candidates[n++] = cid;
+		}
+		Integer[] sorted = new Integer[n];
+		for(int i = 0; i < n; i++)
+			sorted[i] = candidates[i];
+		Arrays.sort(sorted, (a, b) -> Double.compare(clauseActivity[a], clauseActivity[b]));
+		double threshold = clauseInc / Math.max(n, 1);
+		for(int i = 0; i < n; i++) {
+			int cid = sorted[i];
+			if(i < n / 2 || clauseActivity[cid] < threshold)
+				removeClause(cid);
+		}
+		// remove watches of deleted clauses eagerly to keep propagation fast
+		for(int wi = 2; wi < 2 * (numVars + 1); wi++) {
+			int[] ws = watches[wi];
+			int j = 0;
+			for(int i = 0; i < watchSizes[wi]; i++)
+				if(clauses[ws[i]] != null)
+					ws[j++] = ws[i];
+			watchSizes[wi] = j;
+		}
+	}
+
+	private boolean isLocked(int cid) {
+		int v = Math.abs(clauses[cid][0]);
+		return reason[v] == cid && assignment.isTrue(clauses[cid][0]);
+	}
+
+	private void removeClause(int cid) {
+		clauses[cid] = null;
+		numLearned--;
+		if(numFreeClauseIds == freeClauseIds.length)
+			freeClauseIds = Arrays.copyOf(freeClauseIds, 2 * numFreeClauseIds);
+		freeClauseIds[numFreeClauseIds++] = cid;
+	}
+
+	private void bumpClause(int cid) {
+		clauseActivity[cid] += clauseInc;
+		if(clauseActivity[cid] > 1e20) {
+			for(int i = 0; i < numClauses; i++)
+				clauseActivity[i] *= 1e-20;
+			clauseInc *= 1e-20;
+		}
+	}
+
+	private void bumpVariable(int v) {
+		activity[v] += varInc;
+		if(activity[v] > 1e100) {
+			for(int i = 1; i <= numVars; i++)
+				activity[i] *= 1e-100;
+			varInc *= 1e-100;
+		}
+		if(heap.contains(v))
+			heap.increased(v);
+	}
+
+	//
+	// PRIVATE - helpers
+	//
+
+	private static int idx(int literal) {
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+
+	/**
+	 * Finite subsequences of the Luby sequence: 1, 1, 2, 1, 1, 2, 4, 1, ...
+	 */
+	private static double luby(int x) {
+		int size = 1, seq = 0;
+		while(size < x + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		while(size - 1 != x) {
+			size = (size - 1) >> 1;
+			seq--;
+			x = x % size;
+		}
+		return Math.pow(2, seq);
+	}
+
+	/**
+	 * Binary max-heap of variables ordered by activity.
+	 */
+	private class VarHeap {
+		private int[] heap = new int[1];
+		private int[] indices = new int[1]; // position in heap + 1, 0 if not contained
+		private int size;
+
+		void ensureCapacity(int n) {
+			if(n > heap.length) {
+				heap = Arrays.copyOf(heap, n);
+				indices = Arrays.copyOf(indices, n);
+			}
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		int get(int i) {
+			return heap[i];
+		}
+
+		boolean contains(int v) {
+			return indices[v] != 0;
+		}
+
+		void insert(int v) {
+			heap[size] = v;
+			indices[v] = size + 1;
+			siftUp(size++);
+		}
+
+		void increased(int v) {
+			siftUp(indices[v] - 1);
+		}
+
+		int removeMax() {
+			int result = heap[0];
+			indices[result] = 0;
+			size--;
+			if(size > 0) {
+				heap[0] = heap[size];
+				indices[heap[0]] = 1;
+				siftDown(0);
+			}
+			return result;
+		}
+
+		private void siftUp(int i) {
+			int v = heap[i];
+			while(i > 0) {
+				int parent = (i - 1) >> 1;
+				if(activity[heap[parent]] >= activity[v])
+					break;
+				heap[i] = heap[parent];
+				indices[heap[i]] = i + 1;
+				i = parent;
+			}
+			heap[i] = v;
+			indices[v] = i + 1;
+		}
+
+		private void siftDown(int i) {
+			int v = heap[i];
+			while(2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if(child + 1 < size && activity[heap[child + 1]] > activity[heap[child]])
+					child++;
+				if(activity[heap[child]] <= activity[v])
+					break;
+				heap[i] = heap[child];
+				indices[heap[i]] = i + 1;
+				i = child;
+			}
+			heap[i] = v;
+			indices[v] = i + 1;
+		}
+	}
+}
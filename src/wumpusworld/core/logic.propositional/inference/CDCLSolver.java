@@ -0,0 +1,168 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.Collection;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.Model;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+
+/**
+ * A conflict-driven clause-learning (CDCL) SAT solver. In contrast to
+ * {@link DPLL}, the solver learns a new clause from every conflict, jumps back
+ * non-chronologically, and propagates units with two watched literals per
+ * clause instead of re-evaluating all clauses on each decision. Branching
+ * follows the VSIDS heuristic. See {@link CDCLEngine} for details.<br>
+ * <br>
+ * Clauses are translated into literal codes by a {@link SymbolTable}, which is
+ * private to each call, so that the solver can be shared by knowledge bases
+ * and threads as long as calls do not overlap. The solver can be used
+ * everywhere a {@link SATSolver}, {@link SatisfiabilityChecker} or
+ * {@link EntailmentChecker} is expected. As in {@link DPLL}, a cancelled
+ * search (see {@link wumpusworld.core.util.Tasks}) is treated like an
+ * unsatisfiable one.
+ */
+public class CDCLSolver implements SATSolver, SatisfiabilityChecker, EntailmentChecker, SolverStatistics {
+	private long randomSeed = 91648253;
+	private double randomDecisionFrequency = 0;
+	//
+	private long solveCalls;
+	private long decisions;
+	private long propagations;
+	private long conflicts;
+	private volatile CDCLEngine currentEngine;
+
+	/**
+	 * Sets the seed for random decisions and the initial variable order.
+	 */
+	public void setRandomSeed(long seed) {
+		randomSeed = seed;
+	}
+
+	/**
+	 * Sets the probability of making a random decision instead of following VSIDS (default 0).
+	 */
+	public void setRandomDecisionFrequency(double frequency) {
+		randomDecisionFrequency = frequency;
+	}
+
+	@Override
+	public Model solve(Set<Clause> cnf) {
+		SymbolTable symbolTable = new SymbolTable();
+		CDCLEngine engine = createEngine(symbolTable, cnf);
+		Boolean result = solve(engine);
+		if(!Boolean.TRUE.equals(result))
+			return null;
+		Model model = new Model();
+		for(int id = 0; id < symbolTable.size(); id++) {
+			PropositionSymbol symbol = symbolTable.getSymbol(id);
+			model = model.unionInPlace(symbol, engine.modelValue(id + 1) > 0);
+		}
+		return model;
+	}
+
+	@Override
+	public boolean isSatisfiable(Sentence s) {
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.apply(s).getClauses();
+		CDCLEngine engine = createEngine(new SymbolTable(), clauses);
+		return Boolean.TRUE.equals(solve(engine));
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// kb |= alpha, can be done by testing unsatisfiability of kb & ~alpha.
+		Sentence notQuery = new ComplexSentence(Connective.NOT, alpha);
+		SymbolTable symbolTable = new SymbolTable();
+		CDCLEngine engine = createEngine(symbolTable, kb.asCNF());
+		addClauses(engine, symbolTable, ConvertToConjunctionOfClauses.apply(notQuery).getClauses());
+		return !Boolean.TRUE.equals(solve(engine));
+	}
+
+	/**
+	 * Stops a running search as soon as possible. Can be called from any thread.
+	 */
+	public void cancel() {
+		CDCLEngine engine = currentEngine;
+		if(engine != null)
+			engine.cancel();
+	}
+
+	@Override
+	public long getSolveCalls() {
+		return solveCalls;
+	}
+
+	/**
+	 * @return the number of decisions made by all searches so far.
+	 */
+	@Override
+	public long getDecisions() {
+		return decisions;
+	}
+
+	/**
+	 * @return the number of literals propagated by all searches so far.
+	 */
+	@Override
+	public long getPropagations() {
+		return propagations;
+	}
+
+	/**
+	 * @return the number of conflicts encountered by all searches so far.
+	 */
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * Creates a configured engine containing the given clauses.
+	 */
+	protected CDCLEngine createEngine(SymbolTable symbolTable, Collection<Clause> clauses) {
+		CDCLEngine engine = new CDCLEngine();
+		engine.setRandomSeed(randomSeed);
+		engine.setRandomDecisionFrequency(randomDecisionFrequency);
+		addClauses(engine, symbolTable, clauses);
+		return engine;
+	}
+
+	/**
+	 * Translates the given clauses into literal codes and adds them to the engine.
+	 */
+	protected static void addClauses(CDCLEngine engine, SymbolTable symbolTable, Collection<Clause> clauses) {
+		for(Clause clause : clauses) {
+			if(clause.isTautology())
+				continue;
+			if(!engine.addClause(CompactClauseDatabase.encode(clause, symbolTable)))
+				return; // unsatisfiable, no need to continue
+		}
+		// symbols without clauses still need a value in the model
+		engine.ensureVariables(symbolTable.size());
+	}
+
+	/**
+	 * Solves the clauses of the engine under the given assumptions and updates the statistics.
+	 */
+	protected Boolean solve(CDCLEngine engine, int... assumptions) {
+		long decisionsBefore = engine.getDecisions();
+		long propagationsBefore = engine.getPropagations();
+		long conflictsBefore = engine.getConflicts();
+		solveCalls++;
+		currentEngine = engine;
+		try {
+			return engine.solve(assumptions);
+		} finally {
+			currentEngine = null;
+			decisions += engine.getDecisions() - decisionsBefore;
+			propagations += engine.getPropagations() - propagationsBefore;
+			conflicts += engine.getConflicts() - conflictsBefore;
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.ArrayModel;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+
+/**
+ * An incremental version of the {@link CDCLSolver}. One {@link CDCLEngine} is
+ * kept resident together with its watches and learned clauses. A query
+ * &alpha; is answered by solving under the assumption of the clauses of
+ * &not;&alpha;: If &not;&alpha; is a conjunction of literals, the literals
+ * are assumed directly. Otherwise, each clause C of &not;&alpha; is added as
+ * C &or; &not;a with a fresh activation variable a, which is assumed during the
+ * query and permanently falsified afterwards. Therefore, a query never changes
+ * the meaning of the resident clauses.<br>
+ * <br>
+ * The clauses of finished queries are satisfied by the falsified activation
+ * variables, but still occupy the engine. When the activation variables
+ * outnumber the other variables (and exceed a minimum), the engine is rebuilt
+ * from the resident clauses before the next query, which drops them together
+ * with the learned clauses.<br>
+ * <br>
+ * Batch queries ({@link #classify(KnowledgeBase, List)}) are answered by a
+ * backbone computation: For each query q, the goals "q is entailed" and "&not;q
+ * is entailed" are refuted by models of &not;q and q respectively. Each model
+ * found refutes all goals it is a counterexample for, and all open goals are
+ * proven together by a single unsatisfiable call. Thus, the number of solver
+ * calls is bounded by the number of distinct counterexamples needed plus one
+ * instead of one call per goal.
+ */
+public class IncrementalCDCLSolver extends CDCLSolver implements IncrementalEntailmentChecker {
+	private static final String ACTIVATION_PREFIX = "$act";
+	private static final int MIN_ACTIVATION_VARIABLES_FOR_REBUILD = 4096;
+
+	private CDCLEngine engine;
+	private SymbolTable symbolTable;
+	private final List<Clause> residentClauses = new ArrayList<>();
+	private int numActivationVariables;
+	// the activation variables of the current query
+	private int[] activeVariables = new int[16];
+	private int numActiveVariables;
+	//
+	private ClauseStore origin; // see ClauseStore#getOrigin()
+	private int syncedAdditions; // see ClauseStore#getAdditions()
+	private int syncedEpoch;
+
+	public IncrementalCDCLSolver() {
+		reset();
+	}
+
+	@Override
+	public void addClauses(Collection<Clause> clauses) {
+		residentClauses.addAll(clauses);
+		addClauses(engine, symbolTable, clauses);
+	}
+
+	@Override
+	public boolean isEntailed(Sentence alpha) {
+		rebuildIfNeeded();
+		int literal = encodeLiteral(alpha);
+		if(literal != 0) {
+			engine.ensureVariables(symbolTable.size());
+			return !Boolean.TRUE.equals(solve(engine, -literal));
+		}
+		Set<Clause> notAlpha = ConvertToConjunctionOfClauses.apply
+				(new ComplexSentence(Connective.NOT, alpha)).getClauses();
+		for(Clause clause : notAlpha) {
+			if(clause.isEmpty())
+				return true; // ~alpha is unsatisfiable
+		}
+		int[] assumptions = new int[notAlpha.size()];
+		int numAssumptions = 0;
+		for(Clause clause : notAlpha) {
+			if(clause.isTautology())
+				continue;
+			int[] literals = CompactClauseDatabase.encode(clause, symbolTable);
+			if(literals.length == 1) {
+				assumptions[numAssumptions++] = literals[0];
+			} else {
+				int activation = newActivationVariable();
+				int[] guarded = new int[literals.length + 1];
+				System.arraycopy(literals, 0, guarded, 0, literals.length);
+				guarded[literals.length] = -activation;
+				engine.addClause(guarded);
+				assumptions[numAssumptions++] = activation;
+			}
+		}
+		engine.ensureVariables(symbolTable.size());
+		Boolean result = solve(engine, numAssumptions < assumptions.length
+				? Arrays.copyOf(assumptions, numAssumptions) : assumptions);
+		retireActivationVariables();
+		// As in DPLL, a cancelled search counts as unsatisfiable.
+		return !Boolean.TRUE.equals(result);
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		synchronize(kb);
+		return isEntailed(alpha);
+	}
+
+	@Override
+	public Boolean[] classify(KnowledgeBase kb, List<? extends Sentence> queries) {
+		synchronize(kb);
+		return classify(queries);
+	}
+
+	/**
+	 * Classifies the queries with respect to the resident clauses (see
+	 * {@link #classify(KnowledgeBase, List)}).
+	 */
+	public Boolean[] classify(List<? extends Sentence> queries) {
+		rebuildIfNeeded();
+		int numGoals = 2 * queries.size();
+		// goal 2i: query i is entailed, goal 2i + 1: negation of query i is entailed.
+		// counterexamples[g] contains the clauses of the complement of goal g,
+		// witnesses[g] a literal which implies them (0 if they are valid, then
+		// every model of the clauses refutes the goal).
+		int[][][] counterexamples = new int[numGoals][][];
+		int[] witnesses = new int[numGoals];
+		boolean[] open = new boolean[numGoals];
+		int numOpen = 0;
+		for(int i = 0; i < queries.size(); i++) {
+			Sentence query = queries.get(i);
+			counterexamples[2 * i] = encodeCNF(new ComplexSentence(Connective.NOT, query));
+			counterexamples[2 * i + 1] = encodeCNF(query);
+		}
+		for(int g = 0; g < numGoals; g++) {
+			if(counterexamples[g] != null) {
+				witnesses[g] = newWitness(counterexamples[g]);
+				open[g] = true;
+				numOpen++;
+			} // else: complement is unsatisfiable, goal holds trivially
+		}
+		boolean[] refuted = new boolean[numGoals];
+		engine.ensureVariables(symbolTable.size());
+		while(numOpen > 0) {
+			// Is there a model which refutes at least one of the open goals?
+			int[] clause = new int[numOpen + 1];
+			int size = 0;
+			boolean anyModel = false;
+			for(int g = 0; g < numGoals; g++) {
+				if(open[g]) {
+					if(witnesses[g] == 0)
+						anyModel = true;
+					else
+						clause[size++] = witnesses[g];
+				}
+			}
+			Boolean result;
+			if(anyModel) {
+				result = solve(engine);
+			} else {
+				int activation = newActivationVariable();
+				clause[size++] = -activation;
+				engine.addClause(Arrays.copyOf(clause, size));
+				result = solve(engine, activation);
+				engine.addClause(-activation); // the witness definitions are retired below
+			}
+			// As in DPLL, a cancelled search counts as unsatisfiable.
+			if(!Boolean.TRUE.equals(result))
+				break; // all open goals are entailed
+			for(int g = 0; g < numGoals; g++) {
+				if(open[g] && isSatisfiedByModel(counterexamples[g])) {
+					open[g] = false;
+					refuted[g] = true;
+					numOpen--;
+				}
+			}
+		}
+		retireActivationVariables();
+		Boolean[] classification = new Boolean[queries.size()];
+		for(int i = 0; i < queries.size(); i++) {
+			if(!refuted[2 * i])
+				classification[i] = Boolean.TRUE;
+			else if(!refuted[2 * i + 1])
+				classification[i] = Boolean.FALSE;
+		}
+		return classification;
+	}
+
+	@Override
+	public void reset() {
+		symbolTable = new SymbolTable();
+		engine = createEngine(symbolTable, Collections.emptyList());
+		residentClauses.clear();
+		numActivationVariables = 0;
+		numActiveVariables = 0;
+		origin = null;
+		syncedAdditions = 0;
+		syncedEpoch = 0;
+	}
+
+	/**
+	 * Adds the clauses which have been told to the knowledge base since the
+	 * last synchronization. If the checker has been used with another knowledge
+	 * base before or clauses have been retracted since then, all resident
+	 * clauses are dropped first. Snapshots of a knowledge base (see
+	 * {@link ClauseStore#snapshot()}) count as the same knowledge base.
+	 * Forgotten clauses (see {@link KnowledgeBase#retractForgotten(Collection)})
+	 * stay resident until they make up half of the resident clauses.
+	 */
+	protected void synchronize(KnowledgeBase kb) {
+		ClauseStore store = kb.getClauseStore();
+		if(origin != store.getOrigin() || store.getEpoch() != syncedEpoch || store.getAdditions() < syncedAdditions
+				|| residentClauses.size() > 2 * store.size()) {
+			reset();
+			origin = store.getOrigin();
+			syncedEpoch = store.getEpoch();
+		}
+		int from = store.getPosition(syncedAdditions);
+		int size = store.size();
+		if(from < size)
+			addClauses(store.asList().subList(from, size));
+		syncedAdditions = store.getAdditions();
+	}
+
+	/**
+	 * @return the resident engine.
+	 */
+	protected CDCLEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return the symbol table defining the variable numbers of the resident engine.
+	 */
+	protected SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * @return the literal codes of the CNF of the given sentence or null if
+	 * the sentence is unsatisfiable by construction (contains an empty clause).
+	 */
+	private int[][] encodeCNF(Sentence s) {
+		int literal = encodeLiteral(s);
+		if(literal != 0)
+			return new int[][]{{literal}}; // no conversion needed
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.apply(s).getClauses();
+		int[][] result = new int[clauses.size()][];
+		int size = 0;
+		for(Clause clause : clauses) {
+			if(clause.isEmpty())
+				return null;
+			if(!clause.isTautology())
+				result[size++] = CompactClauseDatabase.encode(clause, symbolTable);
+		}
+		return size < result.length ? Arrays.copyOf(result, size) : result;
+	}
+
+	/**
+	 * @return the literal code of the given sentence if it is a proposition
+	 * symbol or a negated proposition symbol (other than True and False), 0
+	 * otherwise.
+	 */
+	private int encodeLiteral(Sentence s) {
+		boolean positive = true;
+		if(s.isNotSentence()) {
+			s = s.getSimplerSentence(0);
+			positive = false;
+		}
+		if(!s.isPropositionSymbol())
+			return 0;
+		PropositionSymbol symbol = (PropositionSymbol) s;
+		if(symbol.isAlwaysTrue() || symbol.isAlwaysFalse())
+			return 0;
+		int var = symbolTable.intern(symbol).getId() + 1;
+		return positive ? var : -var;
+	}
+
+	/**
+	 * Returns a literal which implies the given clauses. For a single unit
+	 * clause, this is the literal itself. Otherwise, a fresh variable d is
+	 * defined by d &rArr; clauses. The definition does not constrain any other
+	 * variable and can therefore remain in the engine.
+	 *
+	 * @return the literal or 0 if there are no clauses.
+	 */
+	private int newWitness(int[][] clauses) {
+		if(clauses.length == 0)
+			return 0;
+		if(clauses.length == 1 && clauses[0].length == 1)
+			return clauses[0][0];
+		int witness = newActivationVariable();
+		for(int[] clause : clauses) {
+			int[] guarded = Arrays.copyOf(clause, clause.length + 1);
+			guarded[clause.length] = -witness;
+			engine.addClause(guarded);
+		}
+		return witness;
+	}
+
+	private boolean isSatisfiedByModel(int[][] clauses) {
+		for(int[] clause : clauses) {
+			boolean satisfied = false;
+			for(int literal : clause) {
+				if(engine.modelValue(literal) == ArrayModel.TRUE) {
+					satisfied = true;
+					break;
+				}
+			}
+			if(!satisfied)
+				return false;
+		}
+		return true;
+	}
+
+	private int newActivationVariable() {
+		int var = symbolTable.intern(ACTIVATION_PREFIX + numActivationVariables++).getId() + 1;
+		if(numActiveVariables == activeVariables.length)
+			activeVariables = Arrays.copyOf(activeVariables, 2 * numActiveVariables);
+		activeVariables[numActiveVariables++] = var;
+		return var;
+	}
+
+	/**
+	 * Permanently falsifies the activation variables of the current query,
+	 * which satisfies all clauses guarded by them.
+	 */
+	private void retireActivationVariables() {
+		for(int i = 0; i < numActiveVariables; i++)
+			engine.addClause(-activeVariables[i]);
+		numActiveVariables = 0;
+	}
+
+	/**
+	 * Replaces the engine by a new one containing only the resident clauses if
+	 * the retired activation variables outnumber the other variables.
+	 */
+	private void rebuildIfNeeded() {
+		if(numActivationVariables >= MIN_ACTIVATION_VARIABLES_FOR_REBUILD
+				&& numActivationVariables > symbolTable.size() - numActivationVariables) {
+			symbolTable = new SymbolTable();
+			engine = createEngine(symbolTable, residentClauses);
+			numActivationVariables = 0;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.Collection;
+import java.util.List;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * An entailment checker which keeps its clauses (and everything derived from
+ * them) resident between queries. Clauses are added incrementally, queries are
+ * answered with respect to all clauses added so far.<br>
+ * <br>
+ * When used as {@link EntailmentChecker}, the checker remembers the knowledge
+ * base of the last call and only adds the clauses which have been told since
+ * then. Therefore, an instance should not be shared by several knowledge bases
+ * which are queried alternately.
+ */
+public interface IncrementalEntailmentChecker extends EntailmentChecker {
+
+	/**
+	 * Adds clauses to the resident clause set.
+	 *
+	 * @param clauses some clauses.
+	 */
+	void addClauses(Collection<Clause> clauses);
+
+	/**
+	 * Determine if the resident clauses entail &alpha;.
+	 *
+	 * @param alpha a propositional sentence.
+	 * @return true, if &alpha; is entailed by the clauses added so far, false otherwise.
+	 */
+	boolean isEntailed(Sentence alpha);
+
+	/**
+	 * Determine if KB |= &alpha;. Clauses told to the knowledge base since the
+	 * last call are added to the resident clause set before answering.
+	 *
+	 * @param kb a Knowledge Base in propositional logic.
+	 * @param alpha a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	boolean isEntailed(KnowledgeBase kb, Sentence alpha);
+
+	/**
+	 * Classifies several queries at once by computing which of the queries and
+	 * which of their negations are entailed by KB (i.e. the backbone of the
+	 * queries). Clauses told to the knowledge base since the last call are added
+	 * to the resident clause set before answering.
+	 *
+	 * @param kb a Knowledge Base in propositional logic.
+	 * @param queries some propositional sentences.
+	 * @return an array with one entry per query: {@link Boolean#TRUE} if KB |= query,
+	 * {@link Boolean#FALSE} if KB |= &not;query, and null if neither is entailed.
+	 * If KB is unsatisfiable, all entries are {@link Boolean#TRUE}.
+	 */
+	Boolean[] classify(KnowledgeBase kb, List<? extends Sentence> queries);
+
+	/**
+	 * Removes all resident clauses.
+	 */
+	void reset();
+}
@@ -0,0 +1,468 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * The DPLL algorithm of {@link OptimizedDPLL} (unit clause and pure symbol
+ * heuristics, branching on the first symbol, true before false) with data
+ * structures which do not allocate anything during the search:
+ * <ul>
+ * <li>Clauses are stored as literal codes (see {@link CompactClauseDatabase})
+ * in one array, and an occurrence index lists the clauses of each literal.</li>
+ * <li>For each clause, the number of true literals and the number of literals
+ * not yet assigned false are counted. An assignment only visits the clauses
+ * of its literal and of the complementary literal. A clause becomes a unit
+ * clause or a conflict when its counter of the second kind drops to one or
+ * zero.</li>
+ * <li>For each literal, the number of clauses which are not yet satisfied is
+ * counted. A symbol becomes pure when the counter of one of its literals
+ * drops to zero.</li>
+ * <li>Assignments are recorded on a trail, and backtracking undoes the
+ * counter updates in reverse order (chronological backtracking, no
+ * learning).</li>
+ * </ul>
+ * The clauses of a knowledge base are kept resident between the queries and
+ * extended by the clauses told in between (as by {@link IncrementalCDCLSolver}),
+ * so that each query only adds the clauses of &not;&alpha; and resets the
+ * counters. Answers are the same as those of {@link DPLL}. As in {@link DPLL},
+ * a cancelled search (see {@link Tasks}) is treated like
+ * an unsatisfiable one.
+ */
+public class IndexedDPLL implements SatisfiabilityChecker, EntailmentChecker, SolverStatistics {
+	private static final int CANCELLATION_CHECK_INTERVAL = 256; // decisions
+
+	private SymbolTable symbolTable;
+	private int numVars; // variables are numbered 1, ..., numVars
+	// clause c consists of literals[clauseStarts[c]], ..., literals[clauseStarts[c + 1] - 1]
+	private int[] literals;
+	private int[] clauseStarts;
+	private int numClauses;
+	private int numResidentClauses; // the clauses following them belong to the current query
+	private boolean residentEmptyClause;
+	// occurrence index, indexed by literal index (see index(int))
+	private int[][] occurrences;
+	private int[] numOccurrences;
+	// search state
+	private int[] numTrue; // per clause
+	private int[] numNotFalse; // per clause: literals not (yet) assigned false
+	private int[] numActive; // per literal index: clauses which are not satisfied
+	private byte[] values; // per variable: 1 true, -1 false, 0 unassigned
+	private int[] trail;
+	private int trailSize;
+	private int propagated; // the trail literals before this position have been propagated
+	private int[] levelStarts; // trail position of the decision of each level
+	private boolean[] flipped; // per level: whether the decision has already been negated
+	private int level;
+	private int[] pureCandidates;
+	private int numPureCandidates;
+	private int numSatisfied;
+	// synchronization with the knowledge base
+	private ClauseStore origin; // see ClauseStore#getOrigin()
+	private int syncedAdditions; // see ClauseStore#getAdditions()
+	private int syncedEpoch;
+	// statistics
+	private long solveCalls;
+	private long decisions;
+	private long propagations;
+
+	public IndexedDPLL() {
+		reset();
+	}
+
+	@Override
+	public boolean isSatisfiable(Sentence s) {
+		reset();
+		origin = null; // the next knowledge base has to be loaded again
+		addClauses(ConvertToConjunctionOfClauses.apply(s).getClauses());
+		numResidentClauses = numClauses;
+		return Boolean.TRUE.equals(solve());
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		synchronize(kb);
+		if(residentEmptyClause)
+			return true;
+		Set<Clause> notAlpha = ConvertToConjunctionOfClauses.apply
+				(new ComplexSentence(Connective.NOT, alpha)).getClauses();
+		for(Clause clause : notAlpha)
+			if(clause.isEmpty())
+				return true; // ~alpha is unsatisfiable
+		try {
+			addClauses(notAlpha);
+			return !Boolean.TRUE.equals(solve());
+		} finally {
+			removeQueryClauses();
+		}
+	}
+
+	@Override
+	public long getSolveCalls() {
+		return solveCalls;
+	}
+
+	@Override
+	public long getDecisions() {
+		return decisions;
+	}
+
+	@Override
+	public long getPropagations() {
+		return propagations;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void reset() {
+		symbolTable = new SymbolTable();
+		numVars = 0;
+		literals = new int[1024];
+		clauseStarts = new int[257];
+		numClauses = 0;
+		numResidentClauses = 0;
+		residentEmptyClause = false;
+		occurrences = new int[2][];
+		numOccurrences = new int[2];
+		numTrue = new int[256];
+		numNotFalse = new int[256];
+		numActive = new int[2];
+		values = new byte[1];
+		trail = new int[1];
+		levelStarts = new int[1];
+		flipped = new boolean[1];
+		pureCandidates = new int[2];
+	}
+
+	/**
+	 * Adds the clauses which have been told to the knowledge base since the
+	 * last query. Starts over if another knowledge base is passed or clauses
+	 * have been retracted. Forgotten clauses (see
+	 * {@link KnowledgeBase#retractForgotten(java.util.Collection)}) stay
+	 * resident until they make up half of the resident clauses.
+	 */
+	private void synchronize(KnowledgeBase kb) {
+		ClauseStore store = kb.getClauseStore();
+		if(origin != store.getOrigin() || store.getEpoch() != syncedEpoch || store.getAdditions() < syncedAdditions
+				|| numResidentClauses > 2 * store.size()) {
+			reset();
+			origin = store.getOrigin();
+			syncedEpoch = store.getEpoch();
+			syncedAdditions = 0;
+		}
+		int from = store.getPosition(syncedAdditions);
+		int size = store.size();
+		if(from < size) {
+			for(Clause clause : store.asList().subList(from, size)) {
+				if(clause.isEmpty())
+					residentEmptyClause = true;
+				else
+					addClause(clause);
+			}
+			numResidentClauses = numClauses;
+		}
+		syncedAdditions = store.getAdditions();
+	}
+
+	private void addClauses(Collection<Clause> clauses) {
+		for(Clause clause : clauses) {
+			if(clause.isEmpty())
+				residentEmptyClause = true;
+			else
+				addClause(clause);
+		}
+	}
+
+	/**
+	 * Appends the clause to the clause array and the occurrence index. Tautologies are skipped.
+	 */
+	private void addClause(Clause clause) {
+		if(clause.isTautology())
+			return;
+		int[] codes = CompactClauseDatabase.encode(clause, symbolTable);
+		ensureVariables(symbolTable.size());
+		if(numClauses + 2 > clauseStarts.length) {
+			clauseStarts = Arrays.copyOf(clauseStarts, 2 * clauseStarts.length);
+			numTrue = Arrays.copyOf(numTrue, clauseStarts.length);
+			numNotFalse = Arrays.copyOf(numNotFalse, clauseStarts.length);
+		}
+		int start = clauseStarts[numClauses];
+		if(start + codes.length > literals.length)
+			literals = Arrays.copyOf(literals, Math.max(2 * literals.length, start + codes.length));
+		System.arraycopy(codes, 0, literals, start, codes.length);
+		for(int literal : codes) {
+			int i = index(literal);
+			if(numOccurrences[i] == occurrences[i].length)
+				occurrences[i] = Arrays.copyOf(occurrences[i], 2 * occurrences[i].length);
+			occurrences[i][numOccurrences[i]++] = numClauses;
+		}
+		numClauses++;
+		clauseStarts[numClauses] = start + codes.length;
+	}
+
+	/**
+	 * Removes the clauses added after the resident clauses. They are the last
+	 * entries of their occurrence lists.
+	 */
+	private void removeQueryClauses() {
+		for(int c = numClauses - 1; c >= numResidentClauses; c--)
+			for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+				numOccurrences[index(literals[j])]--;
+		numClauses = numResidentClauses;
+	}
+
+	private void ensureVariables(int n) {
+		if(n <= numVars)
+			return;
+		int capacity = values.length;
+		if(n >= capacity) {
+			capacity = Math.max(2 * capacity, n + 1);
+			values = Arrays.copyOf(values, capacity);
+			trail = Arrays.copyOf(trail, capacity);
+			levelStarts = Arrays.copyOf(levelStarts, capacity);
+			flipped = Arrays.copyOf(flipped, capacity);
+			pureCandidates = Arrays.copyOf(pureCandidates, 2 * capacity);
+			numActive = Arrays.copyOf(numActive, 2 * capacity);
+			occurrences = Arrays.copyOf(occurrences, 2 * capacity);
+			numOccurrences = Arrays.copyOf(numOccurrences, 2 * capacity);
+		}
+		for(int i = 2 * (numVars + 1); i < 2 * (n + 1); i++)
+			occurrences[i] = new int[4];
+		numVars = n;
+	}
+
+	/**
+	 * Runs DPLL on the current clauses.
+	 *
+	 * @return true if they are satisfiable, false if not, null if the search was cancelled.
+	 */
+	private Boolean solve() {
+		solveCalls++;
+		if(residentEmptyClause)
+			return false;
+		if(!initSearch())
+			return false;
+		while(true) {
+			if(!propagate()) {
+				if(!backtrack())
+					return false;
+			} else if(!assignPureSymbol()) {
+				if(numSatisfied == numClauses)
+					return true;
+				int var = selectVariable();
+				if(var == 0)
+					return true; // cannot happen, open clauses would be units or conflicts
+				if(++decisions % CANCELLATION_CHECK_INTERVAL == 0 && Tasks.currIsCancelled())
+					return null;
+				level++;
+				levelStarts[level] = trailSize;
+				flipped[level] = false;
+				assign(var);
+			}
+		}
+	}
+
+	/**
+	 * Resets the counters and assigns the literals of the unit clauses.
+	 *
+	 * @return false if two unit clauses contradict each other.
+	 */
+	private boolean initSearch() {
+		Arrays.fill(numTrue, 0, numClauses, 0);
+		for(int c = 0; c < numClauses; c++)
+			numNotFalse[c] = clauseStarts[c + 1] - clauseStarts[c];
+		System.arraycopy(numOccurrences, 0, numActive, 0, 2 * (numVars + 1));
+		Arrays.fill(values, 0, numVars + 1, (byte) 0);
+		trailSize = 0;
+		propagated = 0;
+		level = 0;
+		numSatisfied = 0;
+		numPureCandidates = 0;
+		for(int c = 0; c < numClauses; c++) {
+			if(numNotFalse[c] == 1 && !assign(literals[clauseStarts[c]]))
+				return false;
+		}
+		for(int var = 1; var <= numVars; var++) {
+			if(isPure(var))
+				pureCandidates[numPureCandidates++] = var;
+			else if(isPure(-var))
+				pureCandidates[numPureCandidates++] = -var;
+		}
+		return true;
+	}
+
+	/**
+	 * Assigns the literal true.
+	 *
+	 * @return false if it is already false.
+	 */
+	private boolean assign(int literal) {
+		int var = literal > 0 ? literal : -literal;
+		byte value = literal > 0 ? (byte) 1 : (byte) -1;
+		if(values[var] != 0)
+			return values[var] == value;
+		values[var] = value;
+		trail[trailSize++] = literal;
+		return true;
+	}
+
+	/**
+	 * Updates the counters for the assignments on the trail which have not been
+	 * propagated yet, and assigns the literals of unit clauses.
+	 *
+	 * @return false if a clause has become false.
+	 */
+	private boolean propagate() {
+		boolean conflict = false;
+		while(propagated < trailSize && !conflict) {
+			int literal = trail[propagated++];
+			// clauses containing the literal are satisfied
+			int i = index(literal);
+			int[] clauses = occurrences[i];
+			for(int k = 0; k < numOccurrences[i]; k++) {
+				int c = clauses[k];
+				if(numTrue[c]++ == 0) {
+					numSatisfied++;
+					for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++) {
+						if(--numActive[index(literals[j])] == 0)
+							pureCandidates[numPureCandidates++] = -literals[j];
+					}
+				}
+			}
+			// clauses containing the complementary literal lose a literal
+			i = index(-literal);
+			clauses = occurrences[i];
+			for(int k = 0; k < numOccurrences[i]; k++) {
+				int c = clauses[k];
+				if(--numNotFalse[c] <= 1 && numTrue[c] == 0 && !conflict) {
+					if(numNotFalse[c] == 0)
+						conflict = true;
+					else
+						assignUnit(c);
+				}
+			}
+		}
+		return !conflict;
+	}
+
+	/**
+	 * Assigns the literal of the unit clause which is not assigned yet. If all
+	 * of its literals are assigned, the assignment of the last one has not been
+	 * propagated yet and decides about the clause.
+	 */
+	private void assignUnit(int c) {
+		for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++) {
+			int literal = literals[j];
+			if(values[literal > 0 ? literal : -literal] == 0) {
+				assign(literal);
+				propagations++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Assigns a pure symbol if there is one.
+	 *
+	 * @return true if a symbol has been assigned.
+	 */
+	private boolean assignPureSymbol() {
+		while(numPureCandidates > 0) {
+			int literal = pureCandidates[--numPureCandidates];
+			if(isPure(literal)) {
+				assign(literal);
+				propagations++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the literal's symbol is unassigned and only the literal
+	 * (not its complement) occurs in clauses which are not satisfied.
+	 */
+	private boolean isPure(int literal) {
+		int var = literal > 0 ? literal : -literal;
+		return values[var] == 0 && numActive[index(literal)] > 0 && numActive[index(-literal)] == 0;
+	}
+
+	/**
+	 * @return the first unassigned variable which occurs in a clause which is not satisfied, or 0.
+	 */
+	private int selectVariable() {
+		for(int var = 1; var <= numVars; var++)
+			if(values[var] == 0 && (numActive[2 * var] > 0 || numActive[2 * var + 1] > 0))
+				return var;
+		return 0;
+	}
+
+	/**
+	 * Undoes the assignments of the deepest level whose decision has not been
+	 * negated yet, and assigns the negated decision.
+	 *
+	 * @return false if there is no such level, i.e. the clauses are unsatisfiable.
+	 */
+	private boolean backtrack() {
+		while(level > 0) {
+			int start = levelStarts[level];
+			int decision = trail[start];
+			undo(start);
+			if(!flipped[level]) {
+				flipped[level] = true;
+				assign(-decision);
+				return true;
+			}
+			level--;
+		}
+		return false;
+	}
+
+	/**
+	 * Undoes the assignments on the trail from the given position on, in reverse order.
+	 */
+	private void undo(int start) {
+		for(int t = trailSize - 1; t >= start; t--) {
+			int literal = trail[t];
+			if(t < propagated) {
+				int i = index(-literal);
+				for(int k = 0; k < numOccurrences[i]; k++)
+					numNotFalse[occurrences[i][k]]++;
+				i = index(literal);
+				for(int k = 0; k < numOccurrences[i]; k++) {
+					int c = occurrences[i][k];
+					if(--numTrue[c] == 0) {
+						numSatisfied--;
+						for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+							numActive[index(literals[j])]++;
+					}
+				}
+			}
+			values[literal > 0 ? literal : -literal] = 0;
+		}
+		trailSize = start;
+		propagated = Math.min(propagated, start);
+		numPureCandidates = 0;
+	}
+
+	/**
+	 * @return 2v for the literal v and 2v + 1 for the literal -v.
+	 */
+	private static int index(int literal) {
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+}
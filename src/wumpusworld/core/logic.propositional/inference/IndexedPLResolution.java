@@ -0,0 +1,328 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * A resolution prover for propositional logic which avoids the quadratic
+ * number of resolution attempts of {@link PLResolution} and
+ * {@link OptimizedPLResolution} by the given-clause algorithm:
+ * <ul>
+ * <li>Set of support: The clauses of the KB are only resolved with clauses
+ * derived from &not;&alpha; (initially, the set of support consists of the
+ * clauses of &not;&alpha;). This is refutation complete if the KB itself is
+ * satisfiable, which holds for knowledge bases describing an actual world.</li>
+ * <li>Unit preference: The shortest clause of the set of support is selected
+ * next (the given clause). It is resolved with all processed clauses
+ * containing the complement of one of its literals, which are found by an
+ * occurrence index, and then becomes a processed clause itself.</li>
+ * <li>Subsumption: A new clause is discarded if it is a superset of an existing
+ * one (forward subsumption), otherwise the existing clauses which are
+ * supersets of it are deleted (backward subsumption). This also removes
+ * duplicate clauses. Tautologies are always discarded.</li>
+ * <li>Clauses are sorted arrays of literal indices (2v for a symbol with
+ * number v, 2v + 1 for its negation), so that resolvents and subset tests are
+ * computed by merging.</li>
+ * </ul>
+ * The search is limited by a number of clauses and a time limit. If a limit is
+ * exceeded or the search is cancelled (see {@link Tasks}), the query is answered
+ * with false (not proven), as by {@link OptimizedPLResolution}, and
+ * {@link #isLimitExceeded()} returns true.
+ */
+public class IndexedPLResolution implements EntailmentChecker {
+	private int maxClauses = 200000;
+	private long timeLimit = -1; // in milliseconds
+	//
+	private final List<int[]> clauses = new ArrayList<>();
+	private boolean[] deleted = new boolean[256];
+	private boolean[] processed = new boolean[256];
+	// the clauses containing literal index i (including deleted ones)
+	private int[][] occurrences = new int[0][];
+	private int[] numOccurrences = new int[0];
+	// the clauses whose smallest literal index is i (for forward subsumption)
+	private int[][] firstOccurrences = new int[0][];
+	private int[] numFirstOccurrences = new int[0];
+	private final PriorityQueue<Integer> setOfSupport = new PriorityQueue<>(
+			(c1, c2) -> clauses.get(c1).length != clauses.get(c2).length
+					? Integer.compare(clauses.get(c1).length, clauses.get(c2).length) : Integer.compare(c1, c2));
+	private boolean limitExceeded;
+	private long resolvents;
+
+	/**
+	 * Sets the maximal number of clauses (of the KB and derived ones) which are
+	 * kept (default 200000).
+	 */
+	public void setMaxClauses(int maxClauses) {
+		this.maxClauses = maxClauses;
+	}
+
+	/**
+	 * Sets the time limit of a query in milliseconds, or -1 for no limit (default).
+	 */
+	public void setTimeLimit(long millis) {
+		timeLimit = millis;
+	}
+
+	/**
+	 * @return true if the last query has been answered with false because a
+	 * limit was exceeded or the search was cancelled.
+	 */
+	public boolean isLimitExceeded() {
+		return limitExceeded;
+	}
+
+	/**
+	 * @return the number of resolvents computed by the last query (including discarded ones).
+	 */
+	public long getResolvents() {
+		return resolvents;
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		long deadline = timeLimit >= 0 ? System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+		reset();
+		SymbolTable symbolTable = new SymbolTable();
+		try {
+			for(Clause clause : kb.getClauseStore().asList()) {
+				if(addInputClause(clause, symbolTable, true))
+					return true;
+			}
+			Collection<Clause> notAlpha = ConvertToConjunctionOfClauses.apply
+					(new ComplexSentence(Connective.NOT, alpha)).getClauses();
+			for(Clause clause : notAlpha) {
+				if(addInputClause(clause, symbolTable, false))
+					return true;
+			}
+			int steps = 0;
+			while(!setOfSupport.isEmpty()) {
+				int given = setOfSupport.poll();
+				if(deleted[given])
+					continue;
+				processed[given] = true;
+				if(resolveWithProcessed(given))
+					return true;
+				if(limitExceeded || (++steps & 0xF) == 0
+						&& (System.nanoTime() > deadline || Tasks.currIsCancelled())) {
+					limitExceeded = true;
+					return false;
+				}
+			}
+			return false;
+		} finally {
+			setOfSupport.clear();
+		}
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void reset() {
+		clauses.clear();
+		Arrays.fill(numOccurrences, 0);
+		Arrays.fill(numFirstOccurrences, 0);
+		limitExceeded = false;
+		resolvents = 0;
+	}
+
+	/**
+	 * Adds a clause of the KB (as processed clause) or of &not;&alpha; (to the set of support).
+	 *
+	 * @return true if the clause is empty.
+	 */
+	private boolean addInputClause(Clause clause, SymbolTable symbolTable, boolean processedClause) {
+		if(clause.isEmpty())
+			return true;
+		int[] codes = CompactClauseDatabase.encode(clause, symbolTable);
+		for(int i = 0; i < codes.length; i++)
+			codes[i] = index(codes[i]);
+		Arrays.sort(codes);
+		for(int i = 1; i < codes.length; i++)
+			if(codes[i] == (codes[i - 1] ^ 1))
+				return false; // tautology
+		addClause(codes, processedClause);
+		return false;
+	}
+
+	/**
+	 * Resolves the given clause with each processed clause on each complementary literal.
+	 *
+	 * @return true if the empty clause has been derived.
+	 */
+	private boolean resolveWithProcessed(int given) {
+		int[] c1 = clauses.get(given);
+		for(int literal : c1) {
+			int complement = literal ^ 1;
+			int[] partners = occurrences[complement];
+			int numPartners = numOccurrences[complement];
+			for(int k = 0; k < numPartners; k++) {
+				int partner = partners[k];
+				if(deleted[partner] || !processed[partner])
+					continue;
+				if(deleted[given])
+					return false; // subsumed by a resolvent
+				int[] resolvent = resolve(c1, clauses.get(partner), literal);
+				resolvents++;
+				if(resolvent == null)
+					continue; // tautology
+				if(resolvent.length == 0)
+					return true;
+				if(!isSubsumed(resolvent)) {
+					deleteSubsumed(resolvent);
+					addClause(resolvent, false);
+					if(clauses.size() > maxClauses) {
+						limitExceeded = true;
+						return false;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the resolvent of c1 and c2 on the literal of c1 and its
+	 * complement in c2, or null if it is a tautology.
+	 */
+	private static int[] resolve(int[] c1, int[] c2, int literal) {
+		int[] result = new int[c1.length + c2.length - 2];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		int complement = literal ^ 1;
+		while(i < c1.length || j < c2.length) {
+			int next;
+			if(j == c2.length || i < c1.length && c1[i] <= c2[j]) {
+				next = c1[i++];
+				if(next == literal)
+					continue;
+			} else {
+				next = c2[j++];
+				if(next == complement)
+					continue;
+			}
+			if(n > 0 && result[n - 1] == next)
+				continue; // contained in both clauses
+			if(n > 0 && result[n - 1] == (next ^ 1))
+				return null;
+			result[n++] = next;
+		}
+		return n == result.length ? result : Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Forward subsumption: Each clause which is a subset of the given clause
+	 * starts with one of its literals.
+	 */
+	private boolean isSubsumed(int[] clause) {
+		for(int literal : clause) {
+			int[] candidates = firstOccurrences[literal];
+			for(int k = 0; k < numFirstOccurrences[literal]; k++) {
+				int c = candidates[k];
+				int[] candidate = clauses.get(c);
+				if(!deleted[c] && candidate.length <= clause.length && isSubset(candidate, clause))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Backward subsumption: Deletes the clauses which are supersets of the
+	 * given clause. They contain its literal with the fewest occurrences.
+	 */
+	private void deleteSubsumed(int[] clause) {
+		int rarest = clause[0];
+		for(int literal : clause)
+			if(numOccurrences[literal] < numOccurrences[rarest])
+				rarest = literal;
+		int[] candidates = occurrences[rarest];
+		for(int k = 0; k < numOccurrences[rarest]; k++) {
+			int c = candidates[k];
+			int[] candidate = clauses.get(c);
+			if(!deleted[c] && candidate.length >= clause.length && isSubset(clause, candidate))
+				deleted[c] = true;
+		}
+	}
+
+	/**
+	 * @return true if the sorted array c1 is a subset of the sorted array c2.
+	 */
+	private static boolean isSubset(int[] c1, int[] c2) {
+		int j = 0;
+		for(int literal : c1) {
+			while(j < c2.length && c2[j] < literal)
+				j++;
+			if(j == c2.length || c2[j] != literal)
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the clause, which must not be a tautology, to the occurrence index
+	 * and either to the processed clauses (unless subsumed) or to the set of
+	 * support (which is checked for subsumption by the caller).
+	 */
+	private void addClause(int[] clause, boolean processedClause) {
+		int maxLiteral = clause[clause.length - 1] | 1; // including its complement
+		if(maxLiteral >= occurrences.length) {
+			int length = Math.max(maxLiteral + 2, 2 * occurrences.length);
+			int oldLength = occurrences.length;
+			occurrences = Arrays.copyOf(occurrences, length);
+			numOccurrences = Arrays.copyOf(numOccurrences, length);
+			firstOccurrences = Arrays.copyOf(firstOccurrences, length);
+			numFirstOccurrences = Arrays.copyOf(numFirstOccurrences, length);
+			for(int i = oldLength; i < length; i++) {
+				occurrences[i] = new int[4];
+				firstOccurrences[i] = new int[4];
+			}
+		}
+		if(processedClause) {
+			if(isSubsumed(clause))
+				return;
+			deleteSubsumed(clause);
+		}
+		int c = clauses.size();
+		clauses.add(clause);
+		if(c == deleted.length) {
+			deleted = Arrays.copyOf(deleted, 2 * c);
+			processed = Arrays.copyOf(processed, 2 * c);
+		}
+		deleted[c] = false;
+		processed[c] = processedClause;
+		for(int literal : clause) {
+			if(numOccurrences[literal] == occurrences[literal].length)
+				occurrences[literal] = Arrays.copyOf(occurrences[literal], 2 * numOccurrences[literal]);
+			occurrences[literal][numOccurrences[literal]++] = c;
+		}
+		int first = clause[0];
+		if(numFirstOccurrences[first] == firstOccurrences[first].length)
+			firstOccurrences[first] = Arrays.copyOf(firstOccurrences[first], 2 * numFirstOccurrences[first]);
+		firstOccurrences[first][numFirstOccurrences[first]++] = c;
+		if(!processedClause)
+			setOfSupport.add(c);
+	}
+
+	/**
+	 * @return 2v for the literal code v and 2v + 1 for the literal code -v.
+	 */
+	private static int index(int literal) {
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+}
@@ -0,0 +1,299 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.ArrayModel;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.Model;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * The WALKSAT algorithm of {@link WalkSAT} with incremental bookkeeping, so
+ * that a flip takes time proportional to the number of occurrences of the
+ * flipped symbol instead of the number of clauses:
+ * <ul>
+ * <li>Clauses are stored as literal codes (see {@link CompactClauseDatabase})
+ * together with an occurrence index which lists the clauses of each literal.</li>
+ * <li>The model is an {@link ArrayModel} which is flipped in place.</li>
+ * <li>For each clause, the number of true literals and the exclusive or of
+ * their variables are maintained. If exactly one literal is true, the latter
+ * is its variable.</li>
+ * <li>For each variable, the break count (the number of clauses which would
+ * become false by flipping it) and the make count (the number of false
+ * clauses which would become true) are maintained. The greedy move flips the
+ * symbol of the selected clause with the largest difference, which is the
+ * symbol maximizing the number of satisfied clauses.</li>
+ * <li>The false clauses are kept in a list together with their positions,
+ * so that a random false clause is selected, added, or removed in constant
+ * time.</li>
+ * </ul>
+ * As WALKSAT is incomplete, the solver is suited as a fast satisfiability
+ * pre-check: A returned model proves satisfiability, while null only means
+ * that no model was found within the flip budget (or the search was cancelled,
+ * see {@link Tasks}). Random choices depend on the seed only, so that the
+ * results can be reproduced. Calls must not overlap.
+ */
+public class IndexedWalkSAT implements SATSolver {
+	private static final int CANCELLATION_CHECK_INTERVAL = 4096; // flips
+
+	private long randomSeed = 91648253;
+	private double walkProbability = 0.5;
+	private int maxFlips = 100000;
+	// clause c consists of literals[clauseStarts[c]], ..., literals[clauseStarts[c + 1] - 1]
+	private int[] literals;
+	private int[] clauseStarts;
+	private int numClauses;
+	private int numVars;
+	// the clauses of literal index i (see index(int)) are occurrences[occurrenceStarts[i]], ...
+	private int[] occurrences;
+	private int[] occurrenceStarts;
+	// search state
+	private ArrayModel model;
+	private int[] numTrue; // per clause
+	private int[] trueVars; // per clause: exclusive or of the variables of the true literals
+	private int[] breakCounts; // per variable
+	private int[] makeCounts; // per variable
+	private int[] falseClauses;
+	private int[] falsePositions; // per clause: position in falseClauses or -1
+	private int numFalseClauses;
+	private long flips;
+
+	public IndexedWalkSAT() {
+	}
+
+	/**
+	 * @param seed the seed of the random generator (see {@link #setRandomSeed(long)}).
+	 */
+	public IndexedWalkSAT(long seed) {
+		randomSeed = seed;
+	}
+
+	/**
+	 * Sets the seed of the random generator. Each call starts with a new
+	 * generator with this seed.
+	 */
+	public void setRandomSeed(long seed) {
+		randomSeed = seed;
+	}
+
+	/**
+	 * Sets the probability of choosing a "random walk" move (default 0.5).
+	 */
+	public void setWalkProbability(double p) {
+		if(p < 0 || p > 1) {
+			throw new IllegalArgumentException("p is not a legal propbability value [0-1]: " + p);
+		}
+		walkProbability = p;
+	}
+
+	/**
+	 * Sets the number of flips allowed before giving up (default 100000). A
+	 * value < 0 is interpreted as infinity.
+	 */
+	public void setMaxFlips(int maxFlips) {
+		this.maxFlips = maxFlips;
+	}
+
+	@Override
+	public Model solve(Set<Clause> cnf) {
+		return walkSAT(cnf);
+	}
+
+	/**
+	 * Searches a model of the clauses of the knowledge base. The clause store
+	 * is read directly, so that no set of clauses is built.
+	 *
+	 * @return a model or null if none was found.
+	 */
+	public Model solve(KnowledgeBase kb) {
+		return walkSAT(kb.getClauseStore().asList());
+	}
+
+	/**
+	 * @return the number of flips of the last call.
+	 */
+	public long getFlips() {
+		return flips;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private Model walkSAT(Collection<Clause> clauses) {
+		flips = 0;
+		SymbolTable symbolTable = new SymbolTable();
+		if(!load(clauses, symbolTable))
+			return null; // contains the empty clause
+		Random random = new Random(randomSeed);
+		// model <- a random assignment of true/false to the symbols in clauses
+		model = new ArrayModel(numVars);
+		for(int var = 1; var <= numVars; var++)
+			model.assign(random.nextBoolean() ? var : -var);
+		initCounts();
+		// until model satisfies clauses or max_flips are used up
+		while(numFalseClauses > 0) {
+			if(maxFlips >= 0 && flips >= maxFlips)
+				return null;
+			if(flips % CANCELLATION_CHECK_INTERVAL == 0 && Tasks.currIsCancelled())
+				return null;
+			// clause <- a randomly selected clause from clauses that is false in model
+			int c = falseClauses[random.nextInt(numFalseClauses)];
+			int start = clauseStarts[c];
+			int var;
+			if(random.nextDouble() < walkProbability) {
+				// flip the value of a randomly selected symbol from clause
+				var = Math.abs(literals[start + random.nextInt(clauseStarts[c + 1] - start)]);
+			} else {
+				// flip whichever symbol in clause maximizes the number of satisfied clauses
+				var = 0;
+				int bestScore = Integer.MIN_VALUE;
+				for(int j = start; j < clauseStarts[c + 1]; j++) {
+					int candidate = Math.abs(literals[j]);
+					int score = makeCounts[candidate] - breakCounts[candidate];
+					if(score > bestScore) {
+						var = candidate;
+						bestScore = score;
+					}
+				}
+			}
+			flip(var);
+			flips++;
+		}
+		return model.toModel(symbolTable);
+	}
+
+	/**
+	 * Encodes the clauses and builds the occurrence index. Tautologies are
+	 * skipped, but their symbols are assigned in the model.
+	 *
+	 * @return false if one of the clauses is empty.
+	 */
+	private boolean load(Collection<Clause> clauses, SymbolTable symbolTable) {
+		List<int[]> encoded = new ArrayList<>(clauses.size());
+		int numLiterals = 0;
+		for(Clause clause : clauses) {
+			if(clause.isEmpty())
+				return false;
+			int[] codes = CompactClauseDatabase.encode(clause, symbolTable);
+			if(!clause.isTautology()) {
+				encoded.add(codes);
+				numLiterals += codes.length;
+			}
+		}
+		numVars = symbolTable.size();
+		numClauses = encoded.size();
+		literals = new int[numLiterals];
+		clauseStarts = new int[numClauses + 1];
+		occurrenceStarts = new int[2 * (numVars + 1) + 1];
+		int pos = 0;
+		for(int c = 0; c < numClauses; c++) {
+			for(int literal : encoded.get(c)) {
+				literals[pos++] = literal;
+				occurrenceStarts[index(literal) + 1]++;
+			}
+			clauseStarts[c + 1] = pos;
+		}
+		for(int i = 1; i < occurrenceStarts.length; i++)
+			occurrenceStarts[i] += occurrenceStarts[i - 1];
+		occurrences = new int[numLiterals];
+		int[] next = occurrenceStarts.clone();
+		for(int c = 0; c < numClauses; c++)
+			for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+				occurrences[next[index(literals[j])]++] = c;
+		return true;
+	}
+
+	private void initCounts() {
+		numTrue = new int[numClauses];
+		trueVars = new int[numClauses];
+		breakCounts = new int[numVars + 1];
+		makeCounts = new int[numVars + 1];
+		falseClauses = new int[numClauses];
+		falsePositions = new int[numClauses];
+		numFalseClauses = 0;
+		for(int c = 0; c < numClauses; c++) {
+			falsePositions[c] = -1;
+			for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++) {
+				if(model.isTrue(literals[j])) {
+					numTrue[c]++;
+					trueVars[c] ^= Math.abs(literals[j]);
+				}
+			}
+			if(numTrue[c] == 0) {
+				addFalseClause(c);
+				for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+					makeCounts[Math.abs(literals[j])]++;
+			} else if(numTrue[c] == 1) {
+				breakCounts[trueVars[c]]++;
+			}
+		}
+	}
+
+	/**
+	 * Flips the variable and updates the counts of the clauses in which it occurs.
+	 */
+	private void flip(int var) {
+		model.flip(var);
+		int trueLiteral = model.isTrue(var) ? var : -var;
+		// clauses gaining a true literal
+		int i = index(trueLiteral);
+		for(int k = occurrenceStarts[i]; k < occurrenceStarts[i + 1]; k++) {
+			int c = occurrences[k];
+			if(numTrue[c] == 0) {
+				removeFalseClause(c);
+				for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+					makeCounts[Math.abs(literals[j])]--;
+				breakCounts[var]++;
+			} else if(numTrue[c] == 1) {
+				breakCounts[trueVars[c]]--; // no longer the only true literal
+			}
+			numTrue[c]++;
+			trueVars[c] ^= var;
+		}
+		// clauses losing a true literal
+		i = index(-trueLiteral);
+		for(int k = occurrenceStarts[i]; k < occurrenceStarts[i + 1]; k++) {
+			int c = occurrences[k];
+			numTrue[c]--;
+			trueVars[c] ^= var;
+			if(numTrue[c] == 0) {
+				addFalseClause(c);
+				for(int j = clauseStarts[c]; j < clauseStarts[c + 1]; j++)
+					makeCounts[Math.abs(literals[j])]++;
+				breakCounts[var]--;
+			} else if(numTrue[c] == 1) {
+				breakCounts[trueVars[c]]++; // now the only true literal
+			}
+		}
+	}
+
+	private void addFalseClause(int c) {
+		falsePositions[c] = numFalseClauses;
+		falseClauses[numFalseClauses++] = c;
+	}
+
+	/**
+	 * Replaces the clause by the last false clause.
+	 */
+	private void removeFalseClause(int c) {
+		int last = falseClauses[--numFalseClauses];
+		falseClauses[falsePositions[c]] = last;
+		falsePositions[last] = falsePositions[c];
+		falsePositions[c] = -1;
+	}
+
+	/**
+	 * @return 2v for the literal v and 2v + 1 for the literal -v.
+	 */
+	private static int index(int literal) {
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+}
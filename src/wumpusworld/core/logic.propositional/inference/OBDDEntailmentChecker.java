@@ -0,0 +1,371 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.CompiledClauses;
+import wumpusworld.core.logic.propositional.kb.data.OBDD;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+
+/**
+ * An entailment checker for knowledge bases which start with a fixed set of
+ * clauses compiled into an OBDD (see {@link CompiledClauses}), e.g. the
+ * atemporal physics of the wumpus world. Only the clauses told afterwards
+ * (the online facts) are processed:
+ * <ul>
+ * <li>Unit propagation assigns values to symbols. Facts about compiled
+ * symbols and clauses which only contain compiled symbols are conjoined with
+ * the diagram (conditioning).</li>
+ * <li>The remaining clauses contain other symbols. As long as there are
+ * unassigned other symbols, one of them is eliminated by resolution as in the
+ * original Davis-Putnam procedure. Definitions of fluents like OK are
+ * eliminated this way without producing any new clauses.</li>
+ * </ul>
+ * The result is a diagram over the compiled symbols which represents the
+ * knowledge base up to the other symbols. The knowledge base entails &alpha;
+ * iff the diagram obtained after adding the clauses of &not;&alpha; is
+ * FALSE. The state after processing the online facts is kept between the
+ * queries and extended by newly told clauses, so that only the clauses of
+ * &not;&alpha; have to be processed for each query.<br>
+ * <br>
+ * Elimination works well if the online facts determine the fluents (e.g. the
+ * position of the agent is told or follows from a unique start position).
+ * Otherwise, the number of resolvents can explode. In that case, the query is
+ * passed on to a fallback checker.
+ */
+public class OBDDEntailmentChecker implements EntailmentChecker {
+	private static final int MIN_CLAUSE_LIMIT = 1000;
+
+	private final CompiledClauses compiled;
+	private final EntailmentChecker fallback;
+	private final int numCompiled;
+	private OBDD obdd;
+	private SymbolTable symbolTable;
+	//
+	private ClauseStore origin; // see ClauseStore#getOrigin()
+	private int syncedAdditions; // see ClauseStore#getAdditions()
+	private int syncedEpoch;
+	private State base;
+
+	public OBDDEntailmentChecker(CompiledClauses compiled) {
+		this(compiled, new IndexedDPLL());
+	}
+
+	/**
+	 * @param compiled the compiled clauses the knowledge bases start with.
+	 * @param fallback a checker for queries whose elimination produces too many clauses.
+	 */
+	public OBDDEntailmentChecker(CompiledClauses compiled, EntailmentChecker fallback) {
+		this.compiled = compiled;
+		this.fallback = fallback;
+		numCompiled = compiled.getSymbolNames().size();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the knowledge base does not start with the compiled clauses.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		synchronize(kb);
+		if(base.root == OBDD.FALSE)
+			return true;
+		Set<Clause> notAlpha = ConvertToConjunctionOfClauses.apply
+				(new ComplexSentence(Connective.NOT, alpha)).getClauses();
+		State state = base.copy();
+		for(Clause clause : notAlpha) {
+			if(clause.isEmpty())
+				return true; // ~alpha is unsatisfiable
+			if(!clause.isTautology())
+				state.clauses.add(CompactClauseDatabase.encode(clause, symbolTable));
+		}
+		Boolean satisfiable;
+		int mark = obdd.getMark();
+		try {
+			satisfiable = isSatisfiable(state);
+		} finally {
+			obdd.release(mark);
+		}
+		return satisfiable != null ? !satisfiable : fallback.isEntailed(kb, alpha);
+	}
+
+	/**
+	 * Counts the assignments to the compiled symbols which can be extended to a model of the knowledge base.
+	 *
+	 * @throws IllegalStateException if the elimination of the other symbols produces too many clauses.
+	 */
+	public BigInteger countModels(KnowledgeBase kb) {
+		synchronize(kb);
+		State state = base.copy();
+		int mark = obdd.getMark();
+		try {
+			Boolean satisfiable = isSatisfiable(state);
+			if(satisfiable == null)
+				throw new IllegalStateException("Too many clauses to eliminate the symbols which are not compiled.");
+			if(!satisfiable)
+				return BigInteger.ZERO;
+			return obdd.countModels(state.root, numCompiled);
+		} finally {
+			obdd.release(mark);
+		}
+	}
+
+	/**
+	 * @return the number of nodes created for the current knowledge base.
+	 */
+	public int getNumberOfNodes() {
+		return obdd != null ? obdd.size() : 0;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void reset() {
+		obdd = new OBDD();
+		symbolTable = new SymbolTable();
+		for(String name : compiled.getSymbolNames())
+			symbolTable.intern(name);
+		base = new State(compiled.load(obdd), new byte[numCompiled + 1], new ArrayList<>());
+	}
+
+	/**
+	 * Processes the clauses which have been told to the knowledge base since
+	 * the last synchronization. If the checker has been used with another
+	 * knowledge base before or clauses have been retracted since then, it
+	 * starts over with the compiled clauses. Snapshots of a knowledge base
+	 * count as the same knowledge base. Forgotten clauses (see
+	 * {@link KnowledgeBase#retractForgotten(java.util.Collection)}) are kept
+	 * until they make up half of the online facts.
+	 */
+	private void synchronize(KnowledgeBase kb) {
+		ClauseStore store = kb.getClauseStore();
+		if(origin != store.getOrigin() || store.getEpoch() != syncedEpoch || store.getAdditions() < syncedAdditions
+				|| base.clauses.size() > 2 * (store.size() - compiled.getNumberOfClauses())) {
+			if(!compiled.isCompilationOf(store.asList()))
+				throw new IllegalArgumentException("The knowledge base does not start with the compiled clauses.");
+			reset();
+			origin = store.getOrigin();
+			syncedEpoch = store.getEpoch();
+			syncedAdditions = compiled.getNumberOfClauses();
+		}
+		int from = store.getPosition(syncedAdditions);
+		int size = store.size();
+		if(from < size) {
+			for(Clause clause : store.asList().subList(from, size)) {
+				if(clause.isEmpty())
+					base.root = OBDD.FALSE;
+				else if(!clause.isTautology())
+					base.clauses.add(CompactClauseDatabase.encode(clause, symbolTable));
+			}
+			if(!propagate(base))
+				base.root = OBDD.FALSE;
+		}
+		syncedAdditions = store.getAdditions();
+	}
+
+	/**
+	 * Eliminates all symbols which are not compiled.
+	 *
+	 * @return false if the state turned out to be unsatisfiable, null if the
+	 * number of clauses grew too much.
+	 */
+	private Boolean isSatisfiable(State state) {
+		int limit = 2 * state.clauses.size() + MIN_CLAUSE_LIMIT;
+		while(propagate(state) && !state.clauses.isEmpty()) {
+			eliminate(state, selectVariable(state.clauses));
+			if(state.clauses.size() > limit)
+				return null;
+		}
+		return state.root != OBDD.FALSE;
+	}
+
+	/**
+	 * Simplifies the clauses by the assigned values, assigns the values of
+	 * unit clauses, and conjoins clauses over compiled symbols with the
+	 * diagram, until a fixpoint is reached.
+	 *
+	 * @return false if the state turned out to be unsatisfiable.
+	 */
+	private boolean propagate(State state) {
+		state.ensureVariables(symbolTable.size());
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			List<int[]> remaining = new ArrayList<>(state.clauses.size());
+			for(int[] clause : state.clauses) {
+				int[] simplified = simplify(clause, state.values);
+				if(simplified == null)
+					continue; // satisfied
+				if(simplified.length == 0) {
+					state.root = OBDD.FALSE;
+					return false;
+				}
+				if(simplified.length == 1) {
+					int literal = simplified[0];
+					state.values[CompactClauseDatabase.getVariable(literal)] = (byte) (literal > 0 ? 1 : -1);
+					changed = true;
+				}
+				if(isCompiled(simplified)) {
+					state.root = obdd.and(state.root, obdd.clause(simplified));
+					if(state.root == OBDD.FALSE)
+						return false;
+				} else if(simplified.length > 1) {
+					remaining.add(simplified);
+				}
+			}
+			state.clauses = remaining;
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the clauses containing the variable by their non-tautological resolvents on the variable.
+	 */
+	private void eliminate(State state, int var) {
+		List<int[]> positive = new ArrayList<>();
+		List<int[]> negative = new ArrayList<>();
+		List<int[]> remaining = new ArrayList<>();
+		for(int[] clause : state.clauses) {
+			int polarity = polarity(clause, var);
+			if(polarity > 0)
+				positive.add(clause);
+			else if(polarity < 0)
+				negative.add(clause);
+			else
+				remaining.add(clause);
+		}
+		for(int[] p : positive) {
+			for(int[] n : negative) {
+				int[] resolvent = resolve(p, n, var);
+				if(resolvent != null)
+					remaining.add(resolvent);
+			}
+		}
+		state.clauses = remaining;
+	}
+
+	/**
+	 * @return the variable which is not compiled and whose elimination produces the fewest resolvents.
+	 */
+	private int selectVariable(List<int[]> clauses) {
+		int numVars = symbolTable.size() + 1;
+		int[] positive = new int[numVars];
+		int[] negative = new int[numVars];
+		for(int[] clause : clauses) {
+			for(int literal : clause) {
+				if(literal > 0)
+					positive[literal]++;
+				else
+					negative[-literal]++;
+			}
+		}
+		int result = 0;
+		long best = Long.MAX_VALUE;
+		for(int var = numCompiled + 1; var < numVars; var++) {
+			if(positive[var] + negative[var] > 0 && (long) positive[var] * negative[var] < best) {
+				best = (long) positive[var] * negative[var];
+				result = var;
+			}
+		}
+		return result;
+	}
+
+	private boolean isCompiled(int[] clause) {
+		for(int literal : clause)
+			if(CompactClauseDatabase.getVariable(literal) > numCompiled)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the clause without false literals, or null if it is satisfied.
+	 */
+	private static int[] simplify(int[] clause, byte[] values) {
+		int numFalse = 0;
+		for(int literal : clause) {
+			int value = values[CompactClauseDatabase.getVariable(literal)];
+			if(value != 0) {
+				if((value > 0) == (literal > 0))
+					return null;
+				numFalse++;
+			}
+		}
+		if(numFalse == 0)
+			return clause;
+		int[] result = new int[clause.length - numFalse];
+		int i = 0;
+		for(int literal : clause)
+			if(values[CompactClauseDatabase.getVariable(literal)] == 0)
+				result[i++] = literal;
+		return result;
+	}
+
+	private static int polarity(int[] clause, int var) {
+		for(int literal : clause)
+			if(literal == var || literal == -var)
+				return literal;
+		return 0;
+	}
+
+	/**
+	 * @return the resolvent of the clauses on var or null if it is a tautology.
+	 */
+	private static int[] resolve(int[] p, int[] n, int var) {
+		int[] result = new int[p.length + n.length - 2];
+		int size = 0;
+		for(int literal : p)
+			if(literal != var)
+				result[size++] = literal;
+		for(int literal : n) {
+			if(literal == -var)
+				continue;
+			boolean duplicate = false;
+			for(int i = 0; i < size; i++) {
+				if(result[i] == -literal)
+					return null;
+				if(result[i] == literal)
+					duplicate = true;
+			}
+			if(!duplicate)
+				result[size++] = literal;
+		}
+		return size < result.length ? Arrays.copyOf(result, size) : result;
+	}
+
+	/**
+	 * The diagram over the compiled symbols, the values assigned by unit
+	 * propagation, and the clauses which still contain unassigned symbols which
+	 * are not compiled.
+	 */
+	private static class State {
+		int root;
+		byte[] values; // indexed by variable: 1 true, -1 false, 0 unassigned
+		List<int[]> clauses;
+
+		State(int root, byte[] values, List<int[]> clauses) {
+			this.root = root;
+			this.values = values;
+			this.clauses = clauses;
+		}
+
+		State copy() {
+			return new State(root, values.clone(), new ArrayList<>(clauses));
+		}
+
+		void ensureVariables(int numVars) {
+			if(values.length <= numVars)
+				values = Arrays.copyOf(values, Math.max(numVars + 1, 2 * values.length));
+		}
+	}
+}
@@ -5,15 +5,47 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
 import wumpusworld.core.logic.propositional.kb.data.Clause;
 import wumpusworld.core.logic.propositional.kb.data.Literal;
 import wumpusworld.core.logic.propositional.kb.data.Model;
 import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
 import wumpusworld.core.util.Tasks;
 import wumpusworld.core.util.Util;
 import wumpusworld.core.util.datastructure.Pair;
 
-public class OptimizedDPLL extends DPLL {
+public class OptimizedDPLL extends DPLL implements SolverStatistics {
+	private long solveCalls;
+	private long decisions;
+	private long propagations; // pure symbol and unit clause assignments
+
+	@Override
+	public boolean isSatisfiable(Sentence s) {
+		solveCalls++;
+		return super.isSatisfiable(s);
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		solveCalls++;
+		return super.isEntailed(kb, alpha);
+	}
+
+	@Override
+	public long getSolveCalls() {
+		return solveCalls;
+	}
+
+	@Override
+	public long getDecisions() {
+		return decisions;
+	}
+
+	@Override
+	public long getPropagations() {
+		return propagations;
+	}
 
 	/**
 	 * DPLL(clauses, symbols, model)<br>
@@ -58,6 +90,7 @@ public class OptimizedDPLL extends DPLL {
 		Pair<PropositionSymbol, Boolean> pAndValue = findPureSymbol(symbols, clauses, model);
 		// if P is non-null then
 		if(pAndValue != null) {
+			propagations++;
 			// return DPLL(clauses, symbols - P, model U {P = value})
 			return callDPLL(clauses, minus(symbols, pAndValue.getFirst()), model,
 					pAndValue.getFirst(), pAndValue.getSecond());
@@ -67,6 +100,7 @@ public class OptimizedDPLL extends DPLL {
 		pAndValue = findUnitClause(clauses, model);
 		// if P is non-null then
 		if(pAndValue != null) {
+			propagations++;
 			// return DPLL(clauses, symbols - P, model U {P = value})
 			return callDPLL(clauses, minus(symbols, pAndValue.getFirst()), model,
 					pAndValue.getFirst(), pAndValue.getSecond());
@@ -75,6 +109,7 @@ public class OptimizedDPLL extends DPLL {
 		// P <- FIRST(symbols); rest <- REST(symbols)
 		PropositionSymbol p = Util.first(symbols);
 		List<PropositionSymbol> rest = Util.rest(symbols);
+		decisions++;
 		// return DPLL(clauses, rest, model U {P = true}) or
 		// ...... DPLL(clauses, rest, model U {P = false})
 		return callDPLL(clauses, rest, model, p, true)
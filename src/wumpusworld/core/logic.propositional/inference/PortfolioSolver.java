@@ -0,0 +1,339 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.Model;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+import wumpusworld.core.search.framework.Metrics;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * A portfolio of solvers which race each other: Each query is given to all
+ * engines which can answer it, each on a thread of its own (see
+ * {@link Tasks#executeInBackground(Runnable)}). The first definitive answer is
+ * returned, and the other engines are cancelled by {@link Tasks#cancel(Thread)}.
+ * Since the engines check {@link Tasks#currIsCancelled()} regularly, they stop
+ * soon. The solver waits until they have stopped, so that the caller may
+ * change the knowledge base after the call returns. If the calling thread is
+ * cancelled, all engines are cancelled and the query has no definitive answer
+ * (see below).<br>
+ * <br>
+ * An engine is configured by a name and a factory, and can be any object
+ * implementing {@link EntailmentChecker}, {@link SatisfiabilityChecker}, or
+ * {@link SATSolver}. It takes part in the queries it can answer:
+ * <ul>
+ * <li>{@link #isEntailed(KnowledgeBase, Sentence)}: all engines. Engines which
+ * are not entailment checkers test the satisfiability of KB &and; &not;&alpha;.</li>
+ * <li>{@link #isSatisfiable(Sentence)}: satisfiability checkers and SAT solvers.</li>
+ * <li>{@link #solve(Set)}: SAT solvers only, since a model is needed.</li>
+ * </ul>
+ * Incomplete engines (e.g. {@link IndexedWalkSAT}) only answer when they find a
+ * model. If no engine gives a definitive answer, an unknown satisfiability
+ * is treated like unsatisfiability, as for a cancelled {@link DPLL}.<br>
+ * <br>
+ * Engine objects are reused by later queries, but never by two queries at the
+ * same time. An object which has thrown an exception or error is discarded,
+ * and the factory creates a new one. The number of queries in which each
+ * engine took part and the number of queries it won are counted (see
+ * {@link #getMetrics()}), which helps to select the engines for a given
+ * distribution of problems. Starting a thread per engine and query takes some
+ * microseconds, so the portfolio pays off for hard queries rather than for
+ * many easy ones.
+ */
+public class PortfolioSolver implements SATSolver, SatisfiabilityChecker, EntailmentChecker {
+	public static final String METRIC_QUERIES = "queries";
+	public static final String METRIC_UNDECIDED = "undecided";
+
+	private final List<Engine> engines = new ArrayList<>();
+	private long queries;
+	private long undecided;
+
+	/**
+	 * Creates a portfolio with {@link IndexedDPLL} (branching on the first
+	 * open symbol), {@link CDCLSolver} with VSIDS branching, CDCLSolver with 2%
+	 * random decisions and another seed, and {@link IndexedWalkSAT}.
+	 */
+	public static PortfolioSolver createDefault() {
+		PortfolioSolver result = new PortfolioSolver();
+		result.addEngine("dpll", IndexedDPLL::new, true);
+		result.addEngine("cdcl", CDCLSolver::new, true);
+		result.addEngine("cdcl-random", () -> {
+			CDCLSolver solver = new CDCLSolver();
+			solver.setRandomSeed(2718281828L);
+			solver.setRandomDecisionFrequency(0.02);
+			return solver;
+		}, true);
+		result.addEngine("walksat", () -> new IndexedWalkSAT(31415926L), false);
+		return result;
+	}
+
+	/**
+	 * Adds an engine to the portfolio.
+	 *
+	 * @param name a unique name, used in the metrics.
+	 * @param factory creates engine objects. Each object must implement at least
+	 * one of {@link EntailmentChecker}, {@link SatisfiabilityChecker}, and
+	 * {@link SATSolver}.
+	 * @param complete false if the engine can only find models, but not prove
+	 * unsatisfiability (then, a result <code>null</code> of a SAT solver or a
+	 * negative result of a satisfiability checker is ignored).
+	 * @return this portfolio.
+	 */
+	public synchronized PortfolioSolver addEngine(String name, Supplier<?> factory, boolean complete) {
+		for(Engine engine : engines)
+			if(engine.name.equals(name))
+				throw new IllegalArgumentException("Duplicate engine name: " + name);
+		Object instance = factory.get();
+		if(!(instance instanceof EntailmentChecker || instance instanceof SatisfiabilityChecker
+				|| instance instanceof SATSolver))
+			throw new IllegalArgumentException("Engine " + name + " is no solver: " + instance);
+		Engine engine = new Engine(name, factory, complete, instance);
+		engines.add(engine);
+		return this;
+	}
+
+	/**
+	 * @return the names of the engines in the order in which they have been added.
+	 */
+	public synchronized List<String> getEngineNames() {
+		List<String> result = new ArrayList<>();
+		for(Engine engine : engines)
+			result.add(engine.name);
+		return result;
+	}
+
+	@Override
+	public Model solve(Set<Clause> cnf) {
+		Optional<Model> result = race(e -> e.isSATSolver, (engine, instance) -> {
+			Model model = ((SATSolver) instance).solve(cnf);
+			return model != null ? Optional.of(model) : engine.complete ? Optional.empty() : null;
+		});
+		return result != null ? result.orElse(null) : null;
+	}
+
+	@Override
+	public boolean isSatisfiable(Sentence s) {
+		Boolean result = race(e -> e.isSatisfiabilityChecker || e.isSATSolver, (engine, instance) -> {
+			boolean satisfiable = engine.isSatisfiabilityChecker
+					? ((SatisfiabilityChecker) instance).isSatisfiable(s)
+					: ((SATSolver) instance).solve(ConvertToConjunctionOfClauses.apply(s).getClauses()) != null;
+			return satisfiable || engine.complete ? satisfiable : null;
+		});
+		return Boolean.TRUE.equals(result);
+	}
+
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		Sentence notAlpha = new ComplexSentence(Connective.NOT, alpha);
+		Boolean result = race(e -> true, (engine, instance) -> {
+			boolean entailed;
+			if(engine.isEntailmentChecker) {
+				entailed = ((EntailmentChecker) instance).isEntailed(kb, alpha);
+			} else if(engine.isSATSolver) {
+				Set<Clause> clauses = new LinkedHashSet<>(kb.asCNF());
+				clauses.addAll(ConvertToConjunctionOfClauses.apply(notAlpha).getClauses());
+				entailed = ((SATSolver) instance).solve(clauses) == null;
+			} else {
+				entailed = !((SatisfiabilityChecker) instance).isSatisfiable
+						(new ComplexSentence(Connective.AND, kb.asSentence(), notAlpha));
+			}
+			return !entailed || engine.complete ? entailed : null;
+		});
+		return !Boolean.FALSE.equals(result);
+	}
+
+	/**
+	 * @return the number of queries the engine has won.
+	 */
+	public synchronized long getWins(String name) {
+		return engine(name).wins;
+	}
+
+	/**
+	 * Returns the number of queries (<code>queries</code>), of queries without a
+	 * definitive answer (<code>undecided</code>), and for each engine the number of
+	 * queries it took part in (<code>&lt;name&gt;.calls</code>), won
+	 * (<code>&lt;name&gt;.wins</code>), and failed with an exception
+	 * (<code>&lt;name&gt;.failures</code>).
+	 */
+	public synchronized Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set(METRIC_QUERIES, queries);
+		result.set(METRIC_UNDECIDED, undecided);
+		for(Engine engine : engines) {
+			result.set(engine.name + ".calls", engine.calls);
+			result.set(engine.name + ".wins", engine.wins);
+			result.set(engine.name + ".failures", engine.failures);
+		}
+		return result;
+	}
+
+	/**
+	 * Resets the query counts and win statistics.
+	 */
+	public synchronized void resetStatistics() {
+		queries = 0;
+		undecided = 0;
+		for(Engine engine : engines) {
+			engine.calls = 0;
+			engine.wins = 0;
+			engine.failures = 0;
+		}
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * Runs the task for each participating engine and returns the first
+	 * definitive result (a result other than null), or null if there is none.
+	 */
+	private <T> T race(Predicate<Engine> participates, BiFunction<Engine, Object, T> task) {
+		Race<T> race = new Race<>();
+		List<Thread> threads = new ArrayList<>();
+		synchronized(this) {
+			queries++;
+			for(Engine engine : engines) {
+				if(participates.test(engine)) {
+					engine.calls++;
+					Object instance = engine.acquire();
+					race.running++;
+					threads.add(Tasks.executeInBackground(() -> {
+						T result = null;
+						boolean failed = false;
+						try {
+							result = task.apply(engine, instance);
+						} catch(Throwable e) {
+							// also errors, e.g. a stack overflow of a recursive engine, so that the race ends
+							failed = true;
+						}
+						if(failed) {
+							// the state of the object is unknown, the next query gets a new one
+							synchronized(this) {
+								engine.failures++;
+							}
+						} else {
+							engine.release(instance);
+						}
+						// results of cancelled engines are not reliable
+						race.finished(engine, Tasks.currIsCancelled() ? null : result);
+					}));
+				}
+			}
+			if(threads.isEmpty())
+				throw new IllegalStateException("No engine of the portfolio can answer the query.");
+		}
+		race.await();
+		for(Thread thread : threads)
+			Tasks.cancel(thread);
+		for(Thread thread : threads) {
+			try {
+				thread.join();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		synchronized(this) {
+			if(race.winner != null)
+				race.winner.wins++;
+			else
+				undecided++;
+		}
+		return race.result;
+	}
+
+	private synchronized Engine engine(String name) {
+		for(Engine engine : engines)
+			if(engine.name.equals(name))
+				return engine;
+		throw new IllegalArgumentException("Unknown engine: " + name);
+	}
+
+	/**
+	 * An engine together with its idle objects and statistics.
+	 */
+	private class Engine {
+		final String name;
+		final Supplier<?> factory;
+		final boolean complete;
+		// the interfaces implemented by the objects of the engine (as by the first one)
+		final boolean isEntailmentChecker;
+		final boolean isSatisfiabilityChecker;
+		final boolean isSATSolver;
+		final Deque<Object> idle = new ArrayDeque<>();
+		long calls;
+		long wins;
+		long failures;
+
+		Engine(String name, Supplier<?> factory, boolean complete, Object first) {
+			this.name = name;
+			this.factory = factory;
+			this.complete = complete;
+			isEntailmentChecker = first instanceof EntailmentChecker;
+			isSatisfiabilityChecker = first instanceof SatisfiabilityChecker;
+			isSATSolver = first instanceof SATSolver;
+			idle.add(first);
+		}
+
+		Object acquire() {
+			synchronized(PortfolioSolver.this) {
+				return idle.isEmpty() ? factory.get() : idle.pollFirst();
+			}
+		}
+
+		void release(Object instance) {
+			synchronized(PortfolioSolver.this) {
+				idle.addFirst(instance);
+			}
+		}
+	}
+
+	/**
+	 * The state of one query.
+	 */
+	private static class Race<T> {
+		T result;
+		Engine winner;
+		int running;
+
+		synchronized void finished(Engine engine, T engineResult) {
+			running--;
+			if(result == null && engineResult != null) {
+				result = engineResult;
+				winner = engine;
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Waits until a definitive result is known, all engines have finished,
+		 * or the current thread is cancelled.
+		 */
+		synchronized void await() {
+			while(result == null && running > 0 && !Tasks.currIsCancelled()) {
+				try {
+					wait(10); // cancellation is not notified
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+}
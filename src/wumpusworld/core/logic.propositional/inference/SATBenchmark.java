@@ -0,0 +1,269 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.DimacsReader;
+import wumpusworld.core.logic.propositional.kb.data.Model;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+import wumpusworld.core.util.Tasks;
+
+/**
+ * Runs solvers over a corpus of DIMACS CNF files (see {@link DimacsReader}),
+ * e.g. standard benchmark instances or knowledge bases captured from slow
+ * wumpus queries (see
+ * {@link wumpusworld.core.environment.wumpusworld.WumpusKnowledgeBase#enableSlowQueryCapture(long, Path)}).
+ * For each file and solver, the outcome, the time, the decisions and
+ * propagations (if the solver provides {@link SolverStatistics}), and the peak
+ * heap usage are reported.<br>
+ * <br>
+ * A solver can be a {@link SATSolver} (whose models are checked), a
+ * {@link SatisfiabilityChecker}, or an {@link EntailmentChecker} (which tests
+ * whether the clauses entail a contradiction). Each run uses a new solver
+ * object and is executed on a thread of its own, which is cancelled (see
+ * {@link Tasks#cancel(Thread)}) when the timeout expires.<br>
+ * <br>
+ * Usage: <code>java wumpusworld.core.logic.propositional.inference.SATBenchmark
+ * &lt;directory&gt; [&lt;timeout in seconds&gt;]</code>
+ */
+public class SATBenchmark {
+
+	public enum Outcome {
+		SAT, UNSAT,
+		/** an incomplete solver found no model */
+		UNKNOWN, TIMEOUT,
+		/** the model returned by a SAT solver does not satisfy all clauses */
+		WRONG_MODEL, ERROR
+	}
+
+	private final Map<String, Supplier<?>> solvers = new LinkedHashMap<>();
+	private final Set<String> incompleteSolvers = new HashSet<>();
+	private long timeoutMillis = 60000;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: SATBenchmark <directory> [<timeout in seconds>]");
+			return;
+		}
+		SATBenchmark benchmark = new SATBenchmark();
+		if(args.length > 1)
+			benchmark.setTimeout(Long.parseLong(args[1]) * 1000);
+		benchmark.addSolver("dpll", IndexedDPLL::new, true);
+		benchmark.addSolver("cdcl", CDCLSolver::new, true);
+		benchmark.addSolver("walksat", IndexedWalkSAT::new, false);
+		benchmark.addSolver("portfolio", PortfolioSolver::createDefault, true);
+		System.out.println(Result.HEADER);
+		benchmark.run(Paths.get(args[0]), result -> System.out.println(result));
+	}
+
+	/**
+	 * @param factory creates the solver objects, see above.
+	 * @param complete false if the solver can only find models (then, no model means {@link Outcome#UNKNOWN}).
+	 * @return this benchmark.
+	 */
+	public SATBenchmark addSolver(String name, Supplier<?> factory, boolean complete) {
+		solvers.put(name, factory);
+		if(!complete)
+			incompleteSolvers.add(name);
+		return this;
+	}
+
+	/**
+	 * Sets the time limit of each run (default 60 seconds).
+	 */
+	public void setTimeout(long millis) {
+		timeoutMillis = millis;
+	}
+
+	/**
+	 * Runs all solvers on all <code>.cnf</code> files of the directory, in the order of the file names.
+	 */
+	public List<Result> run(Path directory) throws IOException {
+		List<Result> result = new ArrayList<>();
+		run(directory, result::add);
+		return result;
+	}
+
+	/**
+	 * Runs all solvers on all <code>.cnf</code> files of the directory and
+	 * passes each result to the consumer as soon as it is available.
+	 */
+	public void run(Path directory, Consumer<Result> consumer) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.cnf")) {
+			for(Path file : stream)
+				files.add(file);
+		}
+		Collections.sort(files);
+		for(Path file : files) {
+			Set<Clause> clauses = DimacsReader.readClauses(file);
+			for(Map.Entry<String, Supplier<?>> solver : solvers.entrySet())
+				consumer.accept(run(file.getFileName().toString(), solver.getKey(), solver.getValue().get(), clauses));
+		}
+	}
+
+	/**
+	 * Runs a solver on the clauses.
+	 *
+	 * @param instance the name of the clauses in the result.
+	 */
+	public Result run(String instance, String solverName, Object solver, Set<Clause> clauses) {
+		Result result = new Result(instance, solverName);
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+		Outcome[] outcome = new Outcome[1];
+		long start = System.nanoTime();
+		Thread thread = Tasks.executeInBackground(() -> {
+			Outcome o;
+			try {
+				o = solve(solver, clauses, !incompleteSolvers.contains(solverName));
+			} catch(Throwable e) {
+				// also errors, e.g. a stack overflow, which would otherwise end the thread without an outcome
+				o = Outcome.ERROR;
+			}
+			// answers of a cancelled search are not reliable
+			outcome[0] = Tasks.currIsCancelled() ? Outcome.TIMEOUT : o;
+		});
+		try {
+			thread.join(timeoutMillis);
+			if(thread.isAlive()) {
+				Tasks.cancel(thread);
+				thread.join();
+			}
+		} catch(InterruptedException e) {
+			Tasks.cancel(thread);
+			Thread.currentThread().interrupt();
+		}
+		result.nanos = System.nanoTime() - start;
+		result.outcome = outcome[0] != null ? outcome[0] : Outcome.TIMEOUT;
+		for(MemoryPoolMXBean pool : heapPools)
+			result.peakHeapBytes += pool.getPeakUsage().getUsed();
+		if(solver instanceof SolverStatistics) {
+			result.decisions = ((SolverStatistics) solver).getDecisions();
+			result.propagations = ((SolverStatistics) solver).getPropagations();
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private static Outcome solve(Object solver, Set<Clause> clauses, boolean complete) {
+		if(solver instanceof SATSolver) {
+			Model model = ((SATSolver) solver).solve(clauses);
+			if(model == null)
+				return complete ? Outcome.UNSAT : Outcome.UNKNOWN;
+			return model.satisfies(clauses) ? Outcome.SAT : Outcome.WRONG_MODEL;
+		} else if(solver instanceof EntailmentChecker) {
+			KnowledgeBase kb = new KnowledgeBase();
+			kb.tellClauses(clauses);
+			// the clauses are unsatisfiable iff they entail P & ~P for a new symbol P
+			String name = "Contradiction";
+			while(kb.getSymbols().contains(new PropositionSymbol(name)))
+				name += "_";
+			PropositionSymbol p = new PropositionSymbol(name);
+			Sentence contradiction = new ComplexSentence(Connective.AND, p, new ComplexSentence(Connective.NOT, p));
+			return ((EntailmentChecker) solver).isEntailed(kb, contradiction) ? Outcome.UNSAT : Outcome.SAT;
+		} else if(solver instanceof SatisfiabilityChecker) {
+			KnowledgeBase kb = new KnowledgeBase();
+			kb.tellClauses(clauses);
+			if(((SatisfiabilityChecker) solver).isSatisfiable(kb.asSentence()))
+				return Outcome.SAT;
+			return complete ? Outcome.UNSAT : Outcome.UNKNOWN;
+		}
+		throw new IllegalArgumentException("Not a solver: " + solver);
+	}
+
+	/**
+	 * The measurements of one run.
+	 */
+	public static class Result {
+		public static final String HEADER = "instance\tsolver\toutcome\ttime[ms]\tdecisions\tpropagations\theap[MB]";
+
+		private final String instance;
+		private final String solver;
+		private Outcome outcome;
+		private long nanos;
+		private long decisions = -1;
+		private long propagations = -1;
+		private long peakHeapBytes;
+
+		private Result(String instance, String solver) {
+			this.instance = instance;
+			this.solver = solver;
+		}
+
+		public String getInstance() {
+			return instance;
+		}
+
+		public String getSolver() {
+			return solver;
+		}
+
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return the decisions of the solver, or -1 if it does not provide {@link SolverStatistics}.
+		 */
+		public long getDecisions() {
+			return decisions;
+		}
+
+		/**
+		 * @return the propagations of the solver, or -1 if it does not provide {@link SolverStatistics}.
+		 */
+		public long getPropagations() {
+			return propagations;
+		}
+
+		/**
+		 * @return the peak heap usage during the run (including the clauses and
+		 * objects which were not yet garbage collected).
+		 */
+		public long getPeakHeapBytes() {
+			return peakHeapBytes;
+		}
+
+		/**
+		 * @return the values of {@link #HEADER}, separated by tabs.
+		 */
+		@Override
+		public String toString() {
+			return instance + "\t" + solver + "\t" + outcome + "\t" + String.format("%.3f", nanos / 1e6) + "\t"
+					+ decisions + "\t" + propagations + "\t" + String.format("%.1f", peakHeapBytes / 1048576.0);
+		}
+	}
+}
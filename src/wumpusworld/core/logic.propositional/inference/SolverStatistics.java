@@ -0,0 +1,25 @@
+package wumpusworld.core.logic.propositional.inference;
+
+/**
+ * Search statistics of a SAT based checker, accumulated over all calls since
+ * the checker was created. Callers determine the effort of a sequence of
+ * queries by taking differences.
+ */
+public interface SolverStatistics {
+
+	/**
+	 * @return the number of searches started so far.
+	 */
+	long getSolveCalls();
+
+	/**
+	 * @return the number of branching decisions made by all searches so far.
+	 */
+	long getDecisions();
+
+	/**
+	 * @return the number of assignments forced by unit propagation (or other
+	 * inference rules of the search) so far.
+	 */
+	long getPropagations();
+}
@@ -0,0 +1,149 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.ArrayModel;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Removes symbols from the clauses of a knowledge base without changing what
+ * the knowledge base entails about the remaining symbols (i.e. computes
+ * &exist;x KB, also known as forgetting or projection). Two steps are
+ * performed:
+ * <ol>
+ * <li>Symbols whose values are implied by unit propagation are replaced by
+ * their values: Satisfied clauses are dropped, false literals are removed from
+ * the others.</li>
+ * <li>The remaining symbols are eliminated by resolution as in the original
+ * Davis-Putnam procedure: All clauses containing x are replaced by their
+ * non-tautological resolvents on x. To keep the knowledge base small, a symbol
+ * is only eliminated if this does not increase the number of clauses (bounded
+ * variable elimination as in SatELite). Otherwise, it is kept.</li>
+ * </ol>
+ * Only clauses which have been told directly (see
+ * {@link KnowledgeBase#tell(Clause)}) can be retracted. They are retracted by
+ * {@link KnowledgeBase#retractForgotten(java.util.Collection)}, so that
+ * incremental entailment checkers may keep them. Therefore, forgotten symbols
+ * must not be used again.
+ */
+public class SymbolForgetting {
+
+	/**
+	 * Forgets the symbols which satisfy the given predicate.
+	 *
+	 * @param kb a knowledge base whose clauses have been told directly.
+	 * @param forgettable selects the symbols to be forgotten.
+	 * @return the selected symbols which could not be eliminated and still occur in the knowledge base.
+	 */
+	public static Set<PropositionSymbol> forget(KnowledgeBase kb, Predicate<PropositionSymbol> forgettable) {
+		List<Clause> affected = new ArrayList<>();
+		for(Clause clause : kb.getClauseStore().asList()) {
+			for(Literal literal : clause.getLiterals()) {
+				if(forgettable.test(literal.getAtomicSentence())) {
+					affected.add(clause);
+					break;
+				}
+			}
+		}
+		if(affected.isEmpty())
+			return Collections.emptySet();
+
+		// values implied by unit propagation at the root level
+		SymbolTable symbolTable = new SymbolTable();
+		CDCLEngine engine = new CDCLEngine();
+		for(Clause clause : kb.getClauseStore().asList()) {
+			if(!clause.isTautology() && !engine.addClause(CompactClauseDatabase.encode(clause, symbolTable)))
+				return occurringSymbols(affected, forgettable); // unsatisfiable, nothing to gain
+		}
+
+		Set<Clause> result = new LinkedHashSet<>();
+		for(Clause clause : affected) {
+			List<Literal> residual = new ArrayList<>(clause.getNumberLiterals());
+			boolean satisfied = false;
+			for(Literal literal : clause.getLiterals()) {
+				byte value = forgettable.test(literal.getAtomicSentence())
+						? engine.rootValue(CompactClauseDatabase.encode(literal, symbolTable))
+						: ArrayModel.UNASSIGNED;
+				if(value == ArrayModel.TRUE) {
+					satisfied = true;
+					break;
+				}
+				if(value == ArrayModel.UNASSIGNED)
+					residual.add(literal);
+			}
+			if(!satisfied)
+				result.add(residual.size() == clause.getNumberLiterals() ? clause : new Clause(residual));
+		}
+
+		for(PropositionSymbol symbol : occurringSymbols(result, forgettable))
+			eliminate(symbol, result);
+
+		List<Clause> retracted = new ArrayList<>();
+		for(Clause clause : affected)
+			if(!result.contains(clause))
+				retracted.add(clause);
+		kb.retractForgotten(retracted);
+		kb.tellClauses(result);
+		return occurringSymbols(result, forgettable);
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * Replaces the clauses containing the symbol by their resolvents on the
+	 * symbol if this does not increase the number of clauses.
+	 */
+	private static void eliminate(PropositionSymbol symbol, Set<Clause> clauses) {
+		List<Clause> positive = new ArrayList<>();
+		List<Clause> negative = new ArrayList<>();
+		for(Clause clause : clauses) {
+			if(clause.getPositiveSymbols().contains(symbol))
+				positive.add(clause);
+			else if(clause.getNegativeSymbols().contains(symbol))
+				negative.add(clause);
+		}
+		Set<Clause> resolvents = new LinkedHashSet<>();
+		for(Clause p : positive) {
+			for(Clause n : negative) {
+				Set<Literal> literals = new LinkedHashSet<>();
+				for(Literal literal : p.getLiterals())
+					if(!literal.getAtomicSentence().equals(symbol))
+						literals.add(literal);
+				for(Literal literal : n.getLiterals())
+					if(!literal.getAtomicSentence().equals(symbol))
+						literals.add(literal);
+				Clause resolvent = new Clause(literals);
+				if(!resolvent.isTautology()) {
+					resolvents.add(resolvent);
+					if(resolvents.size() > positive.size() + negative.size())
+						return; // too expensive, keep the symbol
+				}
+			}
+		}
+		clauses.removeAll(positive);
+		clauses.removeAll(negative);
+		clauses.addAll(resolvents);
+	}
+
+	private static Set<PropositionSymbol> occurringSymbols(Iterable<Clause> clauses,
+	                                                       Predicate<PropositionSymbol> forgettable) {
+		Set<PropositionSymbol> result = new LinkedHashSet<>();
+		for(Clause clause : clauses)
+			for(Literal literal : clause.getLiterals())
+				if(forgettable.test(literal.getAtomicSentence()))
+					result.add(literal.getAtomicSentence());
+		return result;
+	}
+}
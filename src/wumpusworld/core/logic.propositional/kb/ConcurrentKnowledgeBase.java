@@ -0,0 +1,279 @@
+package wumpusworld.core.logic.propositional.kb;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.inference.EntailmentChecker;
+import wumpusworld.core.logic.propositional.inference.TTEntails;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+import wumpusworld.core.logic.propositional.parsing.PLParser;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * A knowledge base which can be read by several threads while one thread
+ * tells new sentences (multi-version concurrency control). Each change
+ * publishes a new immutable {@link Snapshot} with an increasing version
+ * number. Readers do not lock: {@link #snapshot()} returns the latest
+ * snapshot, and an entailment checker which is given a snapshot sees the same
+ * clauses for the whole query, no matter what is told meanwhile (see
+ * {@link #ask(EntailmentChecker, Sentence)}).<br>
+ * <br>
+ * Snapshots take constant time and space: They share the clause array of the
+ * store (see {@link ClauseStore#snapshot()}) and allocate no collections, and
+ * everything else is derived from the clauses on demand. Incremental checkers recognize snapshots of the
+ * same knowledge base and only process the clauses added in between.<br>
+ * <br>
+ * Changes are serialized by the monitor of the knowledge base. The read
+ * methods inherited from {@link KnowledgeBase} are answered by the latest
+ * snapshot, so that the knowledge base itself can also be passed to checkers
+ * which read the clause store only once per query. The symbol table belongs
+ * to the writer.
+ */
+public class ConcurrentKnowledgeBase extends KnowledgeBase {
+	private volatile Snapshot current;
+	private long version;
+	private boolean batch; // true while several clauses are told at once
+
+	public ConcurrentKnowledgeBase() {
+		this(null);
+	}
+
+	/**
+	 * @param parent a frozen knowledge base or null (see {@link KnowledgeBase#KnowledgeBase(KnowledgeBase)}).
+	 */
+	public ConcurrentKnowledgeBase(KnowledgeBase parent) {
+		super(parent);
+		publish();
+	}
+
+	/**
+	 * @return the latest snapshot. Never blocks.
+	 */
+	public Snapshot snapshot() {
+		return current;
+	}
+
+	/**
+	 * @return the version of the latest snapshot. It is incremented by each change.
+	 */
+	public long getVersion() {
+		return current.getVersion();
+	}
+
+	/**
+	 * Determines whether the latest snapshot entails the query. The snapshot
+	 * is pinned for the duration of the query. Can be called by any thread;
+	 * the checker must not be used by other threads at the same time.
+	 */
+	public boolean ask(EntailmentChecker checker, Sentence query) {
+		return checker.isEntailed(snapshot(), query);
+	}
+
+	@Override
+	public synchronized void tell(String aSentence) {
+		super.tell(aSentence);
+	}
+
+	@Override
+	public synchronized void tell(Sentence aSentence) {
+		super.tell(aSentence);
+		publish();
+	}
+
+	@Override
+	public synchronized void tell(Clause clause) {
+		super.tell(clause);
+		if(!batch)
+			publish();
+	}
+
+	@Override
+	public synchronized void tellClauses(Collection<Clause> clauses) {
+		batch = true;
+		try {
+			super.tellClauses(clauses);
+		} finally {
+			batch = false;
+			publish();
+		}
+	}
+
+	@Override
+	public synchronized int retract(Collection<Clause> obsoleteClauses) {
+		int result = super.retract(obsoleteClauses);
+		publish();
+		return result;
+	}
+
+	@Override
+	public synchronized int retractForgotten(Collection<Clause> obsoleteClauses) {
+		int result = super.retractForgotten(obsoleteClauses);
+		publish();
+		return result;
+	}
+
+	@Override
+	public synchronized void tellAll(String[] percepts) {
+		super.tellAll(percepts);
+	}
+
+	@Override
+	public synchronized void freeze() {
+		super.freeze();
+	}
+
+	@Override
+	public synchronized void saveSnapshot(WritableByteChannel channel) throws IOException {
+		super.saveSnapshot(channel);
+	}
+
+	@Override
+	public int size() {
+		return snapshot().size();
+	}
+
+	@Override
+	public Sentence asSentence() {
+		return snapshot().asSentence();
+	}
+
+	@Override
+	public Set<Clause> asCNF() {
+		return snapshot().asCNF();
+	}
+
+	@Override
+	public ClauseStore getClauseStore() {
+		return snapshot().getClauseStore();
+	}
+
+	@Override
+	public Set<PropositionSymbol> getSymbols() {
+		return snapshot().getSymbols();
+	}
+
+	@Override
+	public List<Sentence> getSentences() {
+		return snapshot().getSentences();
+	}
+
+	@Override
+	public boolean askWithTTEntails(String queryString) {
+		return snapshot().askWithTTEntails(queryString);
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void publish() {
+		current = new Snapshot(++version, super.getClauseStore().snapshot());
+	}
+
+	/**
+	 * An immutable version of a concurrent knowledge base. It is a view of a
+	 * clause store snapshot (see {@link KnowledgeBase#KnowledgeBase(ClauseStore, SymbolTable)})
+	 * and consists of clauses only: Sentences are represented by their
+	 * clauses, and clauses by disjunctions (see {@link #getSentences()}). Its
+	 * symbol table is empty, since the symbol table of the knowledge base
+	 * belongs to the writer.
+	 */
+	public static class Snapshot extends KnowledgeBase {
+		private static final SymbolTable EMPTY_SYMBOL_TABLE = new SymbolTable();
+
+		static {
+			EMPTY_SYMBOL_TABLE.freeze();
+		}
+
+		private final long version;
+		private final ClauseStore store;
+		private volatile Set<PropositionSymbol> symbols; // computed on demand
+		private final List<Sentence> sentencesView = new SentencesView();
+
+		private Snapshot(long version, ClauseStore store) {
+			super(store, EMPTY_SYMBOL_TABLE);
+			this.version = version;
+			this.store = store;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public int size() {
+			return store.size();
+		}
+
+		@Override
+		public Sentence asSentence() {
+			return Sentence.newConjunction(sentencesView);
+		}
+
+		@Override
+		public Set<Clause> asCNF() {
+			return store.asSet();
+		}
+
+		@Override
+		public ClauseStore getClauseStore() {
+			return store;
+		}
+
+		@Override
+		public Set<PropositionSymbol> getSymbols() {
+			Set<PropositionSymbol> result = symbols;
+			if(result == null) {
+				Set<PropositionSymbol> collected = new LinkedHashSet<>();
+				for(Clause clause : store.asList())
+					for(Literal literal : clause.getLiterals())
+						collected.add(literal.getAtomicSentence());
+				result = Collections.unmodifiableSet(collected);
+				symbols = result;
+			}
+			return result;
+		}
+
+		@Override
+		public List<Sentence> getSentences() {
+			return sentencesView;
+		}
+
+		@Override
+		public boolean askWithTTEntails(String queryString) {
+			return new TTEntails().isEntailed(this, new PLParser().parse(queryString));
+		}
+
+		@Override
+		public String toString() {
+			return size() == 0 ? "" : asSentence().toString();
+		}
+
+		private class SentencesView extends AbstractList<Sentence> {
+			@Override
+			public Sentence get(int i) {
+				return toSentence(store.get(i));
+			}
+
+			@Override
+			public int size() {
+				return store.size();
+			}
+		}
+	}
+}
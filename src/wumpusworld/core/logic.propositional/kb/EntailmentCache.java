@@ -0,0 +1,83 @@
+package wumpusworld.core.logic.propositional.kb;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * Caches the answers of entailment queries for a knowledge base which only
+ * grows. As long as no clause is retracted, KB |= &alpha; stays true when new
+ * sentences are told (monotonicity of entailment). Therefore, positive answers
+ * are kept forever. Negative answers only hold for the version of the knowledge
+ * base they have been computed for: A newly told sentence may entail &alpha;
+ * via symbols which do not occur in &alpha; at all.<br>
+ * <br>
+ * The version is provided by the client, e.g. the number of clauses told so
+ * far. If clauses are retracted in a way which can invalidate positive
+ * answers, the client has to call {@link #clear()}.
+ */
+public class EntailmentCache {
+	private final Set<Sentence> entailed = new HashSet<>();
+	// negative answers for notEntailedVersion only
+	private final Set<Sentence> notEntailed = new HashSet<>();
+	private long notEntailedVersion;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Looks up a cached answer.
+	 *
+	 * @param query a propositional sentence.
+	 * @param version the current version of the knowledge base.
+	 * @return true or false if the answer is known for this version, null otherwise.
+	 */
+	public Boolean lookup(Sentence query, long version) {
+		Boolean result = null;
+		if(entailed.contains(query))
+			result = Boolean.TRUE;
+		else if(version == notEntailedVersion && notEntailed.contains(query))
+			result = Boolean.FALSE;
+		if(result != null)
+			hits++;
+		else
+			misses++;
+		return result;
+	}
+
+	/**
+	 * Stores an answer.
+	 *
+	 * @param query a propositional sentence.
+	 * @param isEntailed true if the knowledge base entails the query.
+	 * @param version the version of the knowledge base the answer has been computed for.
+	 */
+	public void put(Sentence query, boolean isEntailed, long version) {
+		if(isEntailed) {
+			entailed.add(query);
+			notEntailed.remove(query);
+		} else {
+			if(version != notEntailedVersion) {
+				notEntailed.clear(); // outdated
+				notEntailedVersion = version;
+			}
+			notEntailed.add(query);
+		}
+	}
+
+	/**
+	 * Removes all answers. Hit and miss counts are kept.
+	 */
+	public void clear() {
+		entailed.clear();
+		notEntailed.clear();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+}
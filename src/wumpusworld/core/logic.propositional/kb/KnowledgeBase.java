@@ -1,30 +1,145 @@
 package wumpusworld.core.logic.propositional.kb;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import wumpusworld.core.logic.propositional.inference.TTEntails;
 import wumpusworld.core.logic.propositional.kb.data.Clause;
-import wumpusworld.core.logic.propositional.kb.data.ConjunctionOfClauses;
+import wumpusworld.core.logic.propositional.kb.data.ClauseStore;
+import wumpusworld.core.logic.propositional.kb.data.CompactClauseDatabase;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
 import wumpusworld.core.logic.propositional.parsing.PLParser;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
 import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
 import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
 import wumpusworld.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
 import wumpusworld.core.logic.propositional.transformations.SymbolCollector;
+import wumpusworld.core.util.Snapshots;
 
 /**
+ * A knowledge base can be layered on top of a frozen parent knowledge base
+ * (see {@link #freeze()}). It starts with the sentences of the parent without
+ * copying them: Clause store and symbol table share the parent's data, so
+ * that entailment checkers read both layers through the usual views. This
+ * allows many knowledge bases, possibly used by different threads, to share a
+ * large common prefix (e.g. the atemporal physics of the wumpus world).<br>
+ * <br>
+ * The clauses can be saved as a binary snapshot (see
+ * {@link #saveSnapshot(WritableByteChannel)}), which consists of the symbol
+ * names in ID order and the clauses as arrays of literal codes (see
+ * {@link CompactClauseDatabase}). Loading a snapshot neither parses nor
+ * converts sentences.
+ *
  * @author Ravi Mohan
  * @author Mike Stampone
  */
 public class KnowledgeBase {
-	private List<Sentence> sentences = new ArrayList<>();
-	private ConjunctionOfClauses asCNF = new ConjunctionOfClauses(Collections.emptySet());
-	private Set<PropositionSymbol> symbols = new LinkedHashSet<>();
-	private PLParser parser = new PLParser();
+	private static final int SNAPSHOT_MAGIC = 0x4B425331; // "KBS1"
+	private static final int SNAPSHOT_VERSION = 1;
 
+	private final KnowledgeBase parent;
+	private boolean frozen;
+	private List<Sentence> sentences;
+	// Clauses which have been told directly, i.e. without sentence and CNF conversion.
+	private List<Clause> toldClauses;
+	// Clauses of sentences which were already in the store, possibly told directly (they must not be retracted).
+	private Set<Clause> sharedClauses;
+	private List<Sentence> sentencesView = new SentencesView();
+	// Optimization: hash index for duplicate checks, the list is only needed to preserve order.
+	private Set<Sentence> sentenceIndex;
+	// Optimization: clauses are appended to the store instead of copying all clauses on each tell.
+	private ClauseStore clauses;
+	private Set<PropositionSymbol> symbols;
+	private Set<PropositionSymbol> symbolsView;
+	private SymbolTable symbolTable;
+	private PLParser parser; // null for views
+
+	public KnowledgeBase() {
+		this(null);
+	}
+
+	/**
+	 * Creates a knowledge base which starts with the sentences of the given
+	 * knowledge base. Later changes only affect the new knowledge base.
+	 *
+	 * @param parent a frozen knowledge base or null.
+	 */
+	public KnowledgeBase(KnowledgeBase parent) {
+		if(parent != null && !parent.frozen)
+			throw new IllegalArgumentException("The parent knowledge base must be frozen.");
+		this.parent = parent;
+		sentences = new ArrayList<>();
+		toldClauses = new ArrayList<>();
+		sharedClauses = new HashSet<>();
+		sentenceIndex = new HashSet<>();
+		clauses = new ClauseStore(parent != null ? parent.clauses : null);
+		symbols = new LinkedHashSet<>();
+		symbolsView = Collections.unmodifiableSet(symbols);
+		symbolTable = new SymbolTable(parent != null ? parent.symbolTable : null);
+		parser = new PLParser();
+		if(parent != null)
+			symbols.addAll(parent.symbols);
+	}
+
+	/**
+	 * Creates a frozen view of a frozen clause store, e.g. a snapshot of
+	 * another knowledge base. It consists of the clauses only and allocates
+	 * no collections of its own: Subclasses override the methods which return
+	 * sentences and symbols.
+	 *
+	 * @param store a frozen clause store.
+	 * @param symbolTable a frozen symbol table.
+	 */
+	protected KnowledgeBase(ClauseStore store, SymbolTable symbolTable) {
+		if(!store.isFrozen() || !symbolTable.isFrozen())
+			throw new IllegalArgumentException("Views require a frozen store and symbol table.");
+		parent = null;
+		frozen = true;
+		sentences = Collections.emptyList();
+		toldClauses = Collections.emptyList();
+		sharedClauses = Collections.emptySet();
+		sentenceIndex = Collections.emptySet();
+		clauses = store;
+		symbols = Collections.emptySet();
+		symbolsView = symbols;
+		this.symbolTable = symbolTable;
+	}
+
+	/**
+	 * Prevents further changes, including the creation of new symbols.
+	 * Afterwards, the knowledge base can be read concurrently and used as
+	 * parent of other knowledge bases.
+	 */
+	public void freeze() {
+		frozen = true;
+		clauses.freeze();
+		symbolTable.freeze();
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return the frozen knowledge base this one starts with, or null.
+	 */
+	public KnowledgeBase getParent() {
+		return parent;
+	}
 
 	/**
 	 * Adds the specified sentence to the knowledge base.
@@ -32,6 +147,7 @@ public class KnowledgeBase {
 	 * @param aSentence a fact to be added to the knowledge base.
 	 */
 	public void tell(String aSentence) {
+		checkNotFrozen();
 		tell((Sentence) parser.parse(aSentence));
 
 	}
@@ -42,13 +158,72 @@ public class KnowledgeBase {
 	 * @param aSentence a fact to be added to the knowledge base.
 	 */
 	public void tell(Sentence aSentence) {
-		if(!(sentences.contains(aSentence))) {
+		checkNotFrozen();
+		if((parent == null || !parent.containsSentence(aSentence)) && sentenceIndex.add(aSentence)) {
 			sentences.add(aSentence);
-			asCNF = asCNF.extend(ConvertToConjunctionOfClauses.apply(aSentence).getClauses());
-			symbols.addAll(SymbolCollector.getSymbolsFrom(aSentence));
+			for(Clause clause : ConvertToConjunctionOfClauses.apply(aSentence).getClauses())
+				if(!clauses.add(clause))
+					sharedClauses.add(clause);
+			for(PropositionSymbol symbol : SymbolCollector.getSymbolsFrom(aSentence))
+				symbols.add(symbolTable.intern(symbol));
 		}
 	}
 
+	/**
+	 * Adds the specified clause to the knowledge base. In contrast to
+	 * {@link #tell(Sentence)}, no CNF conversion is needed. Tautologies are
+	 * ignored.
+	 *
+	 * @param clause a fact in conjunctive normal form to be added to the knowledge base.
+	 */
+	public void tell(Clause clause) {
+		checkNotFrozen();
+		if(!clause.isTautology() && clauses.add(clause)) {
+			toldClauses.add(clause);
+			for(Literal literal : clause.getLiterals())
+				symbols.add(symbolTable.intern(literal.getAtomicSentence()));
+		}
+	}
+
+	/**
+	 * Adds the specified clauses to the knowledge base (see {@link #tell(Clause)}).
+	 *
+	 * @param clauses facts in conjunctive normal form to be added to the knowledge base.
+	 */
+	public void tellClauses(Collection<Clause> clauses) {
+		for(Clause clause : clauses)
+			tell(clause);
+	}
+
+	/**
+	 * Removes clauses which have been told directly (see {@link #tell(Clause)})
+	 * from the knowledge base. Clauses which stem from sentences or from the
+	 * parent knowledge base are not affected, even if they have also been told
+	 * directly.
+	 *
+	 * @param obsoleteClauses the clauses to be removed.
+	 * @return the number of clauses which have been removed.
+	 */
+	public int retract(Collection<Clause> obsoleteClauses) {
+		return retract(obsoleteClauses, false);
+	}
+
+	/**
+	 * Removes clauses which have been told directly when symbols are forgotten
+	 * (see {@link wumpusworld.core.logic.propositional.inference.SymbolForgetting}):
+	 * The remaining clauses together with the clauses told afterwards must
+	 * entail everything the removed clauses entail about the symbols which are
+	 * still used. In contrast to {@link #retract(Collection)}, incremental
+	 * entailment checkers may keep the removed clauses (see
+	 * {@link ClauseStore#removeForgotten(Collection)}) instead of starting over.
+	 *
+	 * @param obsoleteClauses the clauses to be removed.
+	 * @return the number of clauses which have been removed.
+	 */
+	public int retractForgotten(Collection<Clause> obsoleteClauses) {
+		return retract(obsoleteClauses, true);
+	}
+
 	/**
 	 * Each time the agent program is called, it TELLS the knowledge base what
 	 * it perceives.
@@ -63,12 +238,13 @@ public class KnowledgeBase {
 	}
 
 	/**
-	 * Returns the number of sentences in the knowledge base.
+	 * Returns the number of sentences in the knowledge base. Clauses told
+	 * directly count as one sentence each.
 	 *
 	 * @return the number of sentences in the knowledge base.
 	 */
 	public int size() {
-		return sentences.size();
+		return (parent != null ? parent.size() : 0) + sentences.size() + toldClauses.size();
 	}
 
 	/**
@@ -79,21 +255,38 @@ public class KnowledgeBase {
 	 * single sentence.
 	 */
 	public Sentence asSentence() {
-		return Sentence.newConjunction(sentences);
+		return Sentence.newConjunction(sentencesView);
 	}
 
 	/**
-	 * @return a Conjunctive Normal Form (CNF) representation of the Knowledge Base.
+	 * @return a Conjunctive Normal Form (CNF) representation of the Knowledge Base
+	 * (read-only view, reflects later tells).
 	 */
 	public Set<Clause> asCNF() {
-		return asCNF.getClauses();
+		return clauses.asSet();
+	}
+
+	/**
+	 * @return the store holding the clauses of the Knowledge Base in order of insertion.
+	 */
+	public ClauseStore getClauseStore() {
+		return clauses;
 	}
 
 	/**
-	 * @return a unique set of the symbols currently contained in the Knowledge Base.
+	 * @return a unique set of the symbols currently contained in the Knowledge Base
+	 * (read-only view, reflects later tells).
 	 */
 	public Set<PropositionSymbol> getSymbols() {
-		return symbols;
+		return symbolsView;
+	}
+
+	/**
+	 * @return the table which interns the symbols of the Knowledge Base and
+	 * assigns integer IDs to them.
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
 	}
 
 	/**
@@ -114,15 +307,182 @@ public class KnowledgeBase {
 
 	@Override
 	public String toString() {
-		return sentences.isEmpty() ? "" : asSentence().toString();
+		return size() == 0 ? "" : asSentence().toString();
+	}
+
+	/**
+	 * Writes a snapshot of the knowledge base to the channel, e.g. a
+	 * {@link java.nio.channels.FileChannel}.
+	 */
+	public void saveSnapshot(WritableByteChannel channel) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeSnapshot(out);
+		out.flush();
+		Snapshots.write(channel, bytes);
 	}
 
 	/**
-	 * Returns the list of sentences in the knowledge base.
+	 * Reads a knowledge base from a snapshot which has been written by
+	 * {@link #saveSnapshot(WritableByteChannel)}, e.g. from a memory-mapped file
+	 * (see {@link Snapshots#map(java.nio.file.Path)}). All clauses are told
+	 * directly, so they appear as disjunctions in {@link #getSentences()}. The
+	 * position of the buffer is advanced behind the snapshot.
 	 *
-	 * @return the list of sentences in the knowledge base.
+	 * @throws IOException if the buffer does not contain a valid snapshot.
+	 */
+	public static KnowledgeBase loadSnapshot(ByteBuffer in) throws IOException {
+		try {
+			Snapshots.readHeader(in, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+			KnowledgeBase result = new KnowledgeBase();
+			result.readClauses(in);
+			return result;
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Truncated snapshot.", e);
+		}
+	}
+
+	/**
+	 * Returns the list of sentences in the knowledge base. Clauses told
+	 * directly are represented as disjunctions and follow the other sentences.
+	 *
+	 * @return the list of sentences in the knowledge base (read-only view).
 	 */
 	public List<Sentence> getSentences() {
-		return sentences;
+		return sentencesView;
+	}
+
+	/**
+	 * Writes header and clauses of a snapshot. Subclasses which add state
+	 * write a header of their own.
+	 */
+	protected void writeSnapshot(DataOutputStream out) throws IOException {
+		Snapshots.writeHeader(out, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+		writeClauses(out, false);
+	}
+
+	/**
+	 * Writes the symbols and clauses of the knowledge base.
+	 *
+	 * @param ownLayer if true, the symbols and clauses of the parent knowledge base are omitted.
+	 */
+	protected void writeClauses(DataOutputStream out, boolean ownLayer) throws IOException {
+		int firstSymbol = ownLayer && parent != null ? parent.symbolTable.size() : 0;
+		out.writeInt(firstSymbol);
+		out.writeInt(symbolTable.size() - firstSymbol);
+		for(int id = firstSymbol; id < symbolTable.size(); id++)
+			Snapshots.writeString(out, symbolTable.getSymbol(id).getSymbol());
+		int firstClause = ownLayer ? clauses.getParentSize() : 0;
+		out.writeInt(firstClause);
+		out.writeInt(clauses.size() - firstClause);
+		for(int i = firstClause; i < clauses.size(); i++) {
+			int[] literals = CompactClauseDatabase.encode(clauses.get(i), symbolTable);
+			out.writeInt(literals.length);
+			for(int literal : literals)
+				out.writeInt(literal);
+		}
+	}
+
+	/**
+	 * Reads symbols and clauses written by {@link #writeClauses(DataOutputStream, boolean)}
+	 * and tells the clauses. The knowledge base must contain exactly the symbols
+	 * and clauses which were omitted when writing.
+	 */
+	protected void readClauses(ByteBuffer in) throws IOException {
+		int firstSymbol = in.getInt();
+		int numSymbols = in.getInt();
+		if(firstSymbol != symbolTable.size() || numSymbols < 0)
+			throw new IOException("Snapshot does not match the symbols of the knowledge base.");
+		for(int i = 0; i < numSymbols; i++) {
+			if(symbolTable.intern(Snapshots.readString(in)).getId() != firstSymbol + i)
+				throw new IOException("Corrupt symbol table.");
+		}
+		int firstClause = in.getInt();
+		int numClauses = in.getInt();
+		if(firstClause != clauses.size() || numClauses < 0)
+			throw new IOException("Snapshot does not match the clauses of the knowledge base.");
+		for(int i = 0; i < numClauses; i++) {
+			Literal[] literals = new Literal[Snapshots.checkIndex(in.getInt(), in.remaining() / 4 + 1)];
+			for(int j = 0; j < literals.length; j++) {
+				int literal = in.getInt();
+				Snapshots.checkIndex(CompactClauseDatabase.getSymbolId(literal), symbolTable.size());
+				literals[j] = CompactClauseDatabase.decode(literal, symbolTable);
+			}
+			tell(new Clause(literals));
+		}
+		if(clauses.size() != firstClause + numClauses)
+			throw new IOException("Corrupt clauses.");
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private int retract(Collection<Clause> obsoleteClauses, boolean forgotten) {
+		checkNotFrozen();
+
+		Set<Clause> obsolete = new HashSet<>(obsoleteClauses);
+		List<Clause> remaining = new ArrayList<>(toldClauses.size());
+		List<Clause> removed = new ArrayList<>();
+		for(Clause clause : toldClauses)
+			(obsolete.contains(clause) ? removed : remaining).add(clause);
+		if(removed.isEmpty())
+			return 0;
+		toldClauses = remaining;
+		// clauses which also belong to the CNF of a sentence are kept
+		List<Clause> unused = new ArrayList<>(removed.size());
+		for(Clause clause : removed)
+			if(!sharedClauses.contains(clause))
+				unused.add(clause);
+		if(forgotten)
+			clauses.removeForgotten(unused);
+		else
+			clauses.removeAll(unused);
+		// symbols which only occurred in removed clauses are dropped
+		symbols.clear();
+		if(parent != null)
+			symbols.addAll(parent.symbols);
+		for(Sentence s : sentences)
+			for(PropositionSymbol symbol : SymbolCollector.getSymbolsFrom(s))
+				symbols.add(symbolTable.intern(symbol));
+		for(Clause clause : toldClauses)
+			for(Literal literal : clause.getLiterals())
+				symbols.add(symbolTable.intern(literal.getAtomicSentence()));
+		return removed.size();
+	}
+
+	private boolean containsSentence(Sentence sentence) {
+		return sentenceIndex.contains(sentence) || parent != null && parent.containsSentence(sentence);
+	}
+
+	private void checkNotFrozen() {
+		if(frozen)
+			throw new IllegalStateException("Knowledge base is frozen.");
+	}
+
+	static Sentence toSentence(Clause clause) {
+		List<Sentence> disjuncts = new ArrayList<>(clause.getNumberLiterals());
+		for(Literal literal : clause.getLiterals()) {
+			disjuncts.add(literal.isPositiveLiteral() ? literal.getAtomicSentence()
+					: new ComplexSentence(Connective.NOT, literal.getAtomicSentence()));
+		}
+		return Sentence.newDisjunction(disjuncts);
+	}
+
+	private class SentencesView extends AbstractList<Sentence> {
+		@Override
+		public Sentence get(int i) {
+			if(parent != null) {
+				if(i < parent.size())
+					return parent.sentencesView.get(i);
+				i -= parent.size();
+			}
+			return i < sentences.size() ? sentences.get(i) : toSentence(toldClauses.get(i - sentences.size()));
+		}
+
+		@Override
+		public int size() {
+			return KnowledgeBase.this.size();
+		}
 	}
 }
\ No newline at end of file
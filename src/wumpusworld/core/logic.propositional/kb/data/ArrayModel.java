@@ -0,0 +1,163 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.util.Arrays;
+
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * A compact, mutable (partial) model for SAT engines working on literal codes
+ * as defined by {@link CompactClauseDatabase}. Assignments are stored in a
+ * <code>byte[]</code> indexed by variable number. Additionally, all
+ * assignments are recorded on a trail, so that backtracking just undoes the
+ * assignments made after a given trail position. None of the operations
+ * allocate memory unless the number of variables grows.<br>
+ * <br>
+ * Conversions from and to {@link Model} are provided.
+ */
+public class ArrayModel {
+	public static final byte TRUE = 1;
+	public static final byte FALSE = -1;
+	public static final byte UNASSIGNED = 0;
+
+	private byte[] values;
+	private int[] trail;
+	private int trailSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numberOfVariables the number of variables (i.e. symbols) expected.
+	 */
+	public ArrayModel(int numberOfVariables) {
+		values = new byte[numberOfVariables + 1];
+		trail = new int[numberOfVariables + 1];
+	}
+
+	/**
+	 * Creates an array model with the same assignments as the given model.
+	 * Symbols unknown to the table are interned.
+	 */
+	public static ArrayModel fromModel(Model model, SymbolTable symbolTable) {
+		ArrayModel result = new ArrayModel(symbolTable.size());
+		for(PropositionSymbol symbol : model.getAssignedSymbols()) {
+			int var = symbolTable.intern(symbol).getId() + 1;
+			result.assign(model.isTrue(symbol) ? var : -var);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts the assignments into a {@link Model}.
+	 */
+	public Model toModel(SymbolTable symbolTable) {
+		Model result = new Model();
+		for(int i = 0; i < trailSize; i++) {
+			int literal = trail[i];
+			result.unionInPlace(symbolTable.getSymbol(CompactClauseDatabase.getSymbolId(literal)), isTrue(Math.abs(literal)));
+		}
+		return result;
+	}
+
+	/**
+	 * Increases the capacity of the model if necessary.
+	 */
+	public void ensureVariables(int numberOfVariables) {
+		if(numberOfVariables + 1 > values.length) {
+			int length = Math.max(numberOfVariables + 1, 2 * values.length);
+			values = Arrays.copyOf(values, length);
+			trail = Arrays.copyOf(trail, length);
+		}
+	}
+
+	/**
+	 * @return the number of variables the model can store.
+	 */
+	public int getNumberOfVariables() {
+		return values.length - 1;
+	}
+
+	/**
+	 * Makes the given literal true and records the assignment on the trail.
+	 * The variable must be unassigned.
+	 */
+	public void assign(int literal) {
+		int var = literal > 0 ? literal : -literal;
+		ensureVariables(var);
+		values[var] = literal > 0 ? TRUE : FALSE;
+		trail[trailSize++] = literal;
+	}
+
+	/**
+	 * @return {@link #TRUE} if the literal is true, {@link #FALSE} if the literal
+	 * is false, and {@link #UNASSIGNED} if its variable is not assigned.
+	 */
+	public byte valueOf(int literal) {
+		int var = literal > 0 ? literal : -literal;
+		if(var >= values.length)
+			return UNASSIGNED;
+		return literal > 0 ? values[var] : (byte) -values[var];
+	}
+
+	/**
+	 * Negates the value of an assigned variable in place, as done by local
+	 * search. The trail is not changed: It records the assigned variables but
+	 * no longer their values.
+	 */
+	public void flip(int var) {
+		values[var] = (byte) -values[var];
+	}
+
+	public boolean isTrue(int literal) {
+		return valueOf(literal) == TRUE;
+	}
+
+	public boolean isFalse(int literal) {
+		return valueOf(literal) == FALSE;
+	}
+
+	public boolean isAssigned(int var) {
+		return var < values.length && values[var] != UNASSIGNED;
+	}
+
+	/**
+	 * @return the current trail position.
+	 */
+	public int getTrailSize() {
+		return trailSize;
+	}
+
+	/**
+	 * @return the literal assigned at the given trail position.
+	 */
+	public int getTrailLiteral(int i) {
+		return trail[i];
+	}
+
+	/**
+	 * Undoes all assignments made after the given trail position.
+	 */
+	public void undoTo(int trailPosition) {
+		while(trailSize > trailPosition) {
+			int literal = trail[--trailSize];
+			values[literal > 0 ? literal : -literal] = UNASSIGNED;
+		}
+	}
+
+	/**
+	 * Determines the value of a clause under the current assignments.
+	 *
+	 * @return {@link #TRUE} if some literal is true, {@link #FALSE} if all
+	 * literals are false, and {@link #UNASSIGNED} otherwise.
+	 */
+	public byte valueOf(int[] clause) {
+		byte result = FALSE;
+		for(int literal : clause) {
+			byte value = valueOf(literal);
+			if(value == TRUE)
+				return TRUE;
+			if(value == UNASSIGNED)
+				result = UNASSIGNED;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,156 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Encodings of the cardinality constraints "at most one" and "exactly one" of
+ * a list of symbols x<sub>1</sub>, ..., x<sub>n</sub> into clauses. Except for
+ * the pairwise encoding, auxiliary symbols are introduced, which keeps the
+ * number of clauses linear in n:
+ * <ul>
+ * <li>PAIRWISE: &not;x<sub>i</sub> &or; &not;x<sub>j</sub> for all i &lt; j,
+ * n(n-1)/2 clauses, no auxiliary symbols.</li>
+ * <li>SEQUENTIAL_COUNTER (Sinz 2005): s<sub>i</sub> states that one of
+ * x<sub>1</sub>, ..., x<sub>i</sub> is true, 3n-4 clauses, n-1 auxiliary
+ * symbols.</li>
+ * <li>COMMANDER (Klieber and Kwon 2007): groups of three symbols are
+ * constrained pairwise and represented by a commander symbol each, the
+ * commanders are constrained recursively. About 3.5n clauses and n/2
+ * auxiliary symbols.</li>
+ * <li>LADDER (Gent and Nightingale 2004): y<sub>i</sub> states that the true
+ * symbol (if any) is one of x<sub>i+1</sub>, ..., x<sub>n</sub>; the
+ * y<sub>i</sub> form a ladder y<sub>i+1</sub> &rArr; y<sub>i</sub>, 3n-4
+ * clauses, n-1 auxiliary symbols.</li>
+ * </ul>
+ * All encodings are equivalent with respect to the original symbols.
+ */
+public enum CardinalityEncoding {
+	PAIRWISE, SEQUENTIAL_COUNTER, COMMANDER, LADDER;
+
+	private static final int COMMANDER_GROUP_SIZE = 3;
+
+	/**
+	 * Returns clauses which state that at least one and at most one of the symbols is true.
+	 *
+	 * @param symbols the symbols to be constrained.
+	 * @param auxiliarySymbols provides the i-th auxiliary symbol (i = 0, 1, ...).
+	 * @return the clauses of the constraint.
+	 */
+	public List<Clause> exactlyOne(List<PropositionSymbol> symbols, IntFunction<PropositionSymbol> auxiliarySymbols) {
+		List<Clause> result = new ArrayList<>();
+		List<Literal> atLeastOne = new ArrayList<>(symbols.size());
+		for(PropositionSymbol symbol : symbols)
+			atLeastOne.add(new Literal(symbol));
+		result.add(new Clause(atLeastOne));
+		result.addAll(atMostOne(symbols, auxiliarySymbols));
+		return result;
+	}
+
+	/**
+	 * Returns clauses which state that at most one of the symbols is true.
+	 *
+	 * @param symbols the symbols to be constrained.
+	 * @param auxiliarySymbols provides the i-th auxiliary symbol (i = 0, 1, ...).
+	 * @return the clauses of the constraint.
+	 */
+	public List<Clause> atMostOne(List<PropositionSymbol> symbols, IntFunction<PropositionSymbol> auxiliarySymbols) {
+		List<Clause> result = new ArrayList<>();
+		switch(this) {
+			case PAIRWISE:
+				pairwise(symbols, result);
+				break;
+			case SEQUENTIAL_COUNTER:
+				sequentialCounter(symbols, auxiliarySymbols, result);
+				break;
+			case COMMANDER:
+				commander(symbols, new int[1], auxiliarySymbols, result);
+				break;
+			case LADDER:
+				ladder(symbols, auxiliarySymbols, result);
+				break;
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private static void pairwise(List<PropositionSymbol> x, List<Clause> result) {
+		for(int i = 0; i < x.size(); i++)
+			for(int j = i + 1; j < x.size(); j++)
+				result.add(new Clause(neg(x.get(i)), neg(x.get(j))));
+	}
+
+	private static void sequentialCounter(List<PropositionSymbol> x, IntFunction<PropositionSymbol> aux,
+	                                      List<Clause> result) {
+		int n = x.size();
+		if(n < 2)
+			return;
+		PropositionSymbol[] s = new PropositionSymbol[n - 1];
+		for(int i = 0; i < n - 1; i++)
+			s[i] = aux.apply(i);
+		result.add(new Clause(neg(x.get(0)), pos(s[0])));
+		for(int i = 1; i < n - 1; i++) {
+			result.add(new Clause(neg(x.get(i)), pos(s[i])));
+			result.add(new Clause(neg(s[i - 1]), pos(s[i])));
+			result.add(new Clause(neg(x.get(i)), neg(s[i - 1])));
+		}
+		result.add(new Clause(neg(x.get(n - 1)), neg(s[n - 2])));
+	}
+
+	private static void commander(List<PropositionSymbol> x, int[] nextAux, IntFunction<PropositionSymbol> aux,
+	                              List<Clause> result) {
+		if(x.size() <= COMMANDER_GROUP_SIZE + 1) {
+			pairwise(x, result);
+			return;
+		}
+		List<PropositionSymbol> commanders = new ArrayList<>();
+		for(int from = 0; from < x.size(); from += COMMANDER_GROUP_SIZE) {
+			List<PropositionSymbol> group = x.subList(from, Math.min(from + COMMANDER_GROUP_SIZE, x.size()));
+			PropositionSymbol c = aux.apply(nextAux[0]++);
+			commanders.add(c);
+			pairwise(group, result);
+			// c <=> x1 v ... v xk
+			List<Literal> implied = new ArrayList<>();
+			implied.add(neg(c));
+			for(PropositionSymbol symbol : group) {
+				result.add(new Clause(neg(symbol), pos(c)));
+				implied.add(pos(symbol));
+			}
+			result.add(new Clause(implied));
+		}
+		commander(commanders, nextAux, aux, result);
+	}
+
+	private static void ladder(List<PropositionSymbol> x, IntFunction<PropositionSymbol> aux, List<Clause> result) {
+		int n = x.size();
+		if(n < 2)
+			return;
+		PropositionSymbol[] y = new PropositionSymbol[n - 1];
+		for(int i = 0; i < n - 1; i++)
+			y[i] = aux.apply(i);
+		// ladder validity
+		for(int i = 0; i < n - 2; i++)
+			result.add(new Clause(neg(y[i + 1]), pos(y[i])));
+		// x_i => y_{i-1} & ~y_i
+		for(int i = 0; i < n; i++) {
+			if(i > 0)
+				result.add(new Clause(neg(x.get(i)), pos(y[i - 1])));
+			if(i < n - 1)
+				result.add(new Clause(neg(x.get(i)), neg(y[i])));
+		}
+	}
+
+	private static Literal pos(PropositionSymbol symbol) {
+		return new Literal(symbol, true);
+	}
+
+	private static Literal neg(PropositionSymbol symbol) {
+		return new Literal(symbol, false);
+	}
+}
@@ -0,0 +1,373 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A store of clauses as used behind a knowledge base. Clauses are kept in
+ * insertion order in a growing array and indexed by a hash set, so that
+ * duplicate checks take constant time and appends take amortized constant time.
+ * In contrast to {@link ConjunctionOfClauses#extend(Collection)}, adding
+ * clauses never copies the already stored clauses. Clauses can be removed,
+ * which is expected to be rare. Each removal starts a new epoch (see
+ * {@link #getEpoch()}), so that clients which process the clauses
+ * incrementally know when to start over. Removals of clauses whose
+ * consequences are kept by the store (see {@link #removeForgotten(Collection)})
+ * do not start a new epoch. Clients find the clauses added since their last
+ * visit by the number of additions (see {@link #getAdditions()} and
+ * {@link #getPosition(int)}).<br>
+ * <br>
+ * The store hands out read-only views ({@link #asSet()}, {@link #asList()})
+ * which always reflect the current content of the store.<br>
+ * <br>
+ * A store can be layered on top of a frozen parent store (see
+ * {@link #freeze()}), which is shared, not copied (copy-on-write). The clauses
+ * of the parent come first and cannot be removed; positions, views and
+ * duplicate checks cover both layers. Frozen stores can be read concurrently.<br>
+ * <br>
+ * Snapshots (see {@link #snapshot()}) are immutable views of the current
+ * content which share the clause array with the store. They are not affected
+ * by later changes: Appends only write behind the size of the snapshot, and
+ * removals as well as growth allocate a new array.
+ */
+public class ClauseStore {
+	private final ClauseStore parent;
+	private final int offset; // number of clauses of the parent
+	private final ClauseStore origin; // the store a snapshot was taken from, this otherwise
+	private Clause[] clauses;
+	private int[] additionNumbers; // per clause: the number of additions before it
+	private int size; // number of own clauses
+	private int additions; // number of own additions
+	private int epoch;
+	private boolean frozen;
+	private final Set<Clause> index; // null for snapshots
+	private volatile Set<Clause> snapshotIndex; // built on demand
+	//
+	private final Set<Clause> setView = new SetView();
+	private final List<Clause> listView = new ListView();
+
+	public ClauseStore() {
+		this(null);
+	}
+
+	/**
+	 * Creates a store which starts with the clauses of the given store.
+	 *
+	 * @param parent a frozen store or null.
+	 */
+	public ClauseStore(ClauseStore parent) {
+		if(parent != null && !parent.frozen)
+			throw new IllegalArgumentException("The parent store must be frozen.");
+		this.parent = parent;
+		offset = parent != null ? parent.size() : 0;
+		origin = this;
+		clauses = new Clause[16];
+		additionNumbers = new int[16];
+		index = new HashSet<>();
+	}
+
+	private ClauseStore(ClauseStore origin, Clause[] clauses, int[] additionNumbers, int size, int additions,
+	                    int epoch) {
+		parent = origin.parent;
+		offset = origin.offset;
+		this.origin = origin;
+		this.clauses = clauses;
+		this.additionNumbers = additionNumbers;
+		this.size = size;
+		this.additions = additions;
+		this.epoch = epoch;
+		frozen = true;
+		index = null;
+	}
+
+	/**
+	 * Returns an immutable view of the current content. The snapshot can be
+	 * handed over to other threads (e.g. through a volatile field) and read
+	 * there while this store is modified. Takes constant time.
+	 */
+	public ClauseStore snapshot() {
+		return new ClauseStore(origin, clauses, additionNumbers, size, additions, epoch);
+	}
+
+	/**
+	 * @return the store this snapshot was taken from, or this store if it is not
+	 * a snapshot. Snapshots of the same origin with equal epochs agree on the
+	 * clauses at common positions.
+	 */
+	public ClauseStore getOrigin() {
+		return origin;
+	}
+
+	/**
+	 * Prevents further modifications. Afterwards, the store can be used as
+	 * parent of other stores.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return the number of clauses which belong to the parent store.
+	 */
+	public int getParentSize() {
+		return offset;
+	}
+
+	/**
+	 * Adds the specified clause if it is not already contained in the store.
+	 *
+	 * @param clause a clause.
+	 * @return true if the clause was added, false if it was already contained.
+	 */
+	public boolean add(Clause clause) {
+		checkNotFrozen();
+		if(parent != null && parent.contains(clause) || !index.add(clause))
+			return false;
+		if(size == clauses.length) {
+			clauses = Arrays.copyOf(clauses, size + (size >> 1) + 1);
+			additionNumbers = Arrays.copyOf(additionNumbers, clauses.length);
+		}
+		additionNumbers[size] = offset + additions++;
+		clauses[size++] = clause;
+		return true;
+	}
+
+	/**
+	 * Adds all clauses which are not already contained in the store.
+	 *
+	 * @param additionalClauses some clauses.
+	 * @return the number of clauses which have been added.
+	 */
+	public int addAll(Collection<Clause> additionalClauses) {
+		int added = 0;
+		for(Clause clause : additionalClauses) {
+			if(add(clause))
+				added++;
+		}
+		return added;
+	}
+
+	/**
+	 * Removes the specified clauses. The remaining clauses keep their order.
+	 * Clauses of the parent store are not affected.
+	 *
+	 * @param obsoleteClauses some clauses.
+	 * @return the number of clauses which have been removed.
+	 */
+	public int removeAll(Collection<Clause> obsoleteClauses) {
+		int removed = remove(obsoleteClauses);
+		if(removed > 0)
+			epoch++;
+		return removed;
+	}
+
+	/**
+	 * Removes the specified clauses without starting a new epoch. This is meant
+	 * for forgetting symbols (see
+	 * wumpusworld.core.logic.propositional.inference.SymbolForgetting): The
+	 * caller guarantees that the remaining clauses together with the clauses
+	 * added afterwards entail everything the removed clauses entail about the
+	 * symbols which are still used. Clients which keep the removed clauses
+	 * therefore only need to add the new clauses.
+	 *
+	 * @param obsoleteClauses some clauses.
+	 * @return the number of clauses which have been removed.
+	 */
+	public int removeForgotten(Collection<Clause> obsoleteClauses) {
+		return remove(obsoleteClauses);
+	}
+
+	/**
+	 * @return the number of removals so far (except those of
+	 * {@link #removeForgotten(Collection)}). The clauses of the store
+	 * have not changed except for additions and forgotten clauses as long as
+	 * the epoch stays the same.
+	 */
+	public int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return the number of clauses which have been added so far (including
+	 * those of the parent and the removed ones). Together with the epoch, it
+	 * identifies the content of the store.
+	 */
+	public int getAdditions() {
+		return offset + additions;
+	}
+
+	/**
+	 * @param additions a number of additions (see {@link #getAdditions()}).
+	 * @return the position of the first clause which has been added after the
+	 * given number of additions, or the size of the store if there is none.
+	 */
+	public int getPosition(int additions) {
+		if(additions <= offset)
+			return Math.max(additions, 0);
+		// the addition numbers increase with the positions
+		int low = 0;
+		int high = size;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(additionNumbers[middle] < additions)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return offset + low;
+	}
+
+	public boolean contains(Object clause) {
+		return getIndex().contains(clause) || parent != null && parent.contains(clause);
+	}
+
+	/**
+	 * @return the number of clauses contained in the store (including those of the parent).
+	 */
+	public int size() {
+		return offset + size;
+	}
+
+	/**
+	 * @return the clause at position <code>i</code> (in order of insertion).
+	 */
+	public Clause get(int i) {
+		if(i < 0 || i >= offset + size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + (offset + size));
+		return i < offset ? parent.get(i) : clauses[i - offset];
+	}
+
+	/**
+	 * @return a read-only set view of the stored clauses.
+	 */
+	public Set<Clause> asSet() {
+		return setView;
+	}
+
+	/**
+	 * @return a read-only list view of the stored clauses (in order of insertion).
+	 */
+	public List<Clause> asList() {
+		return listView;
+	}
+
+	@Override
+	public String toString() {
+		return setView.toString();
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private int remove(Collection<Clause> obsoleteClauses) {
+		checkNotFrozen();
+		int removed = 0;
+		for(Clause clause : obsoleteClauses) {
+			if(index.remove(clause))
+				removed++;
+		}
+		if(removed > 0) {
+			// new arrays, so that iterators of earlier views and snapshots are not affected
+			Clause[] remaining = new Clause[Math.max(16, size - removed)];
+			int[] remainingNumbers = new int[remaining.length];
+			int j = 0;
+			for(int i = 0; i < size; i++) {
+				if(index.contains(clauses[i])) {
+					remainingNumbers[j] = additionNumbers[i];
+					remaining[j++] = clauses[i];
+				}
+			}
+			clauses = remaining;
+			additionNumbers = remainingNumbers;
+			size = j;
+		}
+		return removed;
+	}
+
+	private Set<Clause> getIndex() {
+		if(index != null)
+			return index;
+		Set<Clause> result = snapshotIndex;
+		if(result == null) {
+			result = new HashSet<>(Arrays.asList(clauses).subList(0, size));
+			snapshotIndex = result;
+		}
+		return result;
+	}
+
+	private void checkNotFrozen() {
+		if(frozen)
+			throw new IllegalStateException("Clause store is frozen.");
+	}
+
+	private class SetView extends AbstractSet<Clause> {
+		@Override
+		public Iterator<Clause> iterator() {
+			return listView.iterator();
+		}
+
+		@Override
+		public int size() {
+			return ClauseStore.this.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return ClauseStore.this.contains(o);
+		}
+	}
+
+	private class ListView extends AbstractList<Clause> {
+		@Override
+		public Clause get(int i) {
+			return ClauseStore.this.get(i);
+		}
+
+		@Override
+		public int size() {
+			return ClauseStore.this.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return ClauseStore.this.contains(o);
+		}
+
+		@Override
+		public Iterator<Clause> iterator() {
+			// avoids the index checks of the default implementation
+			Iterator<Clause> parentIterator = parent != null ? parent.listView.iterator() : null;
+			return new Iterator<Clause>() {
+				private final Clause[] elements = clauses;
+				private final int limit = size;
+				private int cursor;
+
+				@Override
+				public boolean hasNext() {
+					return parentIterator != null && parentIterator.hasNext() || cursor < limit;
+				}
+
+				@Override
+				public Clause next() {
+					if(parentIterator != null && parentIterator.hasNext())
+						return parentIterator.next();
+					if(cursor >= limit)
+						throw new NoSuchElementException();
+					return elements[cursor++];
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * A compact representation of a set of clauses intended for SAT engines. Each
+ * clause is stored as an <code>int[]</code> array of literals. Literals are
+ * sign-encoded variable numbers: the variable number of a symbol is its ID in
+ * the corresponding {@link SymbolTable} plus one, positive literals are
+ * represented by the variable number and negative literals by its negation
+ * (as in the DIMACS format).<br>
+ * <br>
+ * Tautological clauses are not stored. Conversions from and to {@link Clause}
+ * are provided.
+ */
+public class CompactClauseDatabase {
+	private final SymbolTable symbolTable;
+	private int[][] clauses = new int[16][];
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param symbolTable the table which defines the variable numbering.
+	 */
+	public CompactClauseDatabase(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+	}
+
+	/**
+	 * Creates a database containing the given clauses.
+	 */
+	public CompactClauseDatabase(SymbolTable symbolTable, Collection<Clause> clauses) {
+		this(symbolTable);
+		addAll(clauses);
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	/**
+	 * Adds the given clause (unless it is a tautology).
+	 *
+	 * @return true if the clause was added.
+	 */
+	public boolean add(Clause clause) {
+		if(clause.isTautology())
+			return false;
+		add(encode(clause, symbolTable));
+		return true;
+	}
+
+	public void addAll(Collection<Clause> clauses) {
+		for(Clause clause : clauses)
+			add(clause);
+	}
+
+	/**
+	 * Adds a clause given as array of literals. The array is not copied.
+	 */
+	public void add(int[] literals) {
+		if(size == clauses.length)
+			clauses = Arrays.copyOf(clauses, 2 * size);
+		clauses[size++] = literals;
+	}
+
+	/**
+	 * @return the literals of the clause at position i. The returned array must
+	 * not be modified.
+	 */
+	public int[] get(int i) {
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		return clauses[i];
+	}
+
+	/**
+	 * @return the number of stored clauses.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the highest variable number used by the symbol table, i.e. the
+	 * number of variables.
+	 */
+	public int getNumberOfVariables() {
+		return symbolTable.size();
+	}
+
+	/**
+	 * @return a read-only list view of the stored literal arrays.
+	 */
+	public List<int[]> asList() {
+		return new AbstractList<int[]>() {
+			@Override
+			public int[] get(int index) {
+				return CompactClauseDatabase.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Converts the clause at position i back into a {@link Clause}.
+	 */
+	public Clause toClause(int i) {
+		return decode(get(i), symbolTable);
+	}
+
+	/**
+	 * Converts all stored clauses back into {@link Clause} objects.
+	 */
+	public Set<Clause> toClauses() {
+		Set<Clause> result = new LinkedHashSet<>();
+		for(int i = 0; i < size; i++)
+			result.add(toClause(i));
+		return result;
+	}
+
+	//
+	// Literal encoding
+	//
+
+	/**
+	 * @return the literal code of the given literal. The symbol is interned
+	 * in the given table if necessary.
+	 */
+	public static int encode(Literal literal, SymbolTable symbolTable) {
+		int var = symbolTable.getId(literal.getAtomicSentence());
+		if(var == -1)
+			var = symbolTable.intern(literal.getAtomicSentence()).getId();
+		return literal.isPositiveLiteral() ? var + 1 : -(var + 1);
+	}
+
+	/**
+	 * @return the literal codes of the given clause.
+	 */
+	public static int[] encode(Clause clause, SymbolTable symbolTable) {
+		int[] result = new int[clause.getNumberLiterals()];
+		int i = 0;
+		for(Literal literal : clause.getLiterals())
+			result[i++] = encode(literal, symbolTable);
+		return result;
+	}
+
+	/**
+	 * @return the literal represented by the given code.
+	 */
+	public static Literal decode(int literal, SymbolTable symbolTable) {
+		PropositionSymbol symbol = symbolTable.getSymbol(getSymbolId(literal));
+		return new Literal(symbol, literal > 0);
+	}
+
+	/**
+	 * @return the clause represented by the given literal codes.
+	 */
+	public static Clause decode(int[] literals, SymbolTable symbolTable) {
+		List<Literal> result = new ArrayList<>(literals.length);
+		for(int literal : literals)
+			result.add(decode(literal, symbolTable));
+		return new Clause(result);
+	}
+
+	/**
+	 * @return the ID of the symbol referenced by the given literal code.
+	 */
+	public static int getSymbolId(int literal) {
+		return (literal > 0 ? literal : -literal) - 1;
+	}
+
+	/**
+	 * @return the variable number (symbol ID + 1) of the given literal code.
+	 */
+	public static int getVariable(int literal) {
+		return literal > 0 ? literal : -literal;
+	}
+}
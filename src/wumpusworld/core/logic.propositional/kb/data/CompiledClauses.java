@@ -0,0 +1,279 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * The first clauses of a knowledge base, compiled into an {@link OBDD}
+ * (knowledge compilation, see Darwiche and Marquis 2002). Compilation is
+ * expensive, but afterwards conditioning on facts, entailment checks and
+ * model counting take time polynomial in the size of the diagram. Auxiliary
+ * symbols can be hidden, i.e. existentially quantified, during compilation.<br>
+ * <br>
+ * A compilation is independent of a particular OBDD manager: The nodes are
+ * stored in arrays and copied into a manager by {@link #load(OBDD)}. They can
+ * be written to a stream and read back, so that the compilation only needs to
+ * be done once. A fingerprint of the compiled clauses allows to check whether
+ * a knowledge base starts with them (see {@link #isCompilationOf(List)}).
+ */
+public class CompiledClauses {
+	private static final int MAGIC = 0x4F424444; // "OBDD"
+	private static final int FORMAT_VERSION = 1;
+	private static final int MIN_COMPACTION_SIZE = 1 << 16;
+
+	private final List<String> symbolNames; // variable v is symbolNames.get(v - 1)
+	private final int numClauses;
+	private final int fingerprint;
+	// node i has handle i + 2, children are stored before their parents, the last node is the root
+	private final int[] nodeVars;
+	private final int[] nodeLows;
+	private final int[] nodeHighs;
+	private final int root;
+
+	private CompiledClauses(List<String> symbolNames, int numClauses, int fingerprint, int[] nodeVars,
+	                        int[] nodeLows, int[] nodeHighs, int root) {
+		this.symbolNames = Collections.unmodifiableList(symbolNames);
+		this.numClauses = numClauses;
+		this.fingerprint = fingerprint;
+		this.nodeVars = nodeVars;
+		this.nodeLows = nodeLows;
+		this.nodeHighs = nodeHighs;
+		this.root = root;
+	}
+
+	/**
+	 * Compiles the conjunction of the clauses.
+	 *
+	 * @param clauses the clauses to be compiled.
+	 * @param order symbols in the order in which they are tested from the root
+	 * downwards. Symbols not listed follow in the order of occurrence. A good
+	 * order keeps related symbols close to each other.
+	 * @param hidden selects the symbols to be quantified existentially. They
+	 * should be ordered close to the symbols they are related to.
+	 * @return the compiled clauses.
+	 */
+	public static CompiledClauses compile(List<Clause> clauses, List<PropositionSymbol> order,
+	                                      Predicate<PropositionSymbol> hidden) {
+		Set<PropositionSymbol> occurring = new LinkedHashSet<>();
+		for(Clause clause : clauses)
+			for(Literal literal : clause.getLiterals())
+				occurring.add(literal.getAtomicSentence());
+		SymbolTable symbolTable = new SymbolTable();
+		for(PropositionSymbol symbol : order)
+			if(occurring.contains(symbol))
+				symbolTable.intern(symbol);
+		for(PropositionSymbol symbol : occurring)
+			symbolTable.intern(symbol);
+
+		OBDD obdd = new OBDD();
+		List<int[]> encoded = new ArrayList<>(clauses.size());
+		for(Clause clause : clauses)
+			if(!clause.isTautology())
+				encoded.add(CompactClauseDatabase.encode(clause, symbolTable));
+		// conjoin bottom-up, clauses over the lowest variables first
+		encoded.sort((c1, c2) -> Integer.compare(minVariable(c2), minVariable(c1)));
+		int result = OBDD.TRUE;
+		int compactionSize = MIN_COMPACTION_SIZE;
+		for(int[] clause : encoded) {
+			result = obdd.and(result, obdd.clause(clause));
+			if(obdd.size() > compactionSize) {
+				result = obdd.compact(result);
+				compactionSize = Math.max(compactionSize, 4 * obdd.size());
+			}
+		}
+
+		// quantify the hidden variables and number the others densely (order is preserved)
+		int[] variables = new int[symbolTable.size() + 1];
+		List<String> symbolNames = new ArrayList<>();
+		for(int var = symbolTable.size(); var >= 1; var--) {
+			if(hidden.test(symbolTable.getSymbol(var - 1))) {
+				result = obdd.exists(result, var);
+				if(obdd.size() > compactionSize) {
+					result = obdd.compact(result);
+					compactionSize = Math.max(compactionSize, 4 * obdd.size());
+				}
+			}
+		}
+		for(int var = 1; var <= symbolTable.size(); var++) {
+			PropositionSymbol symbol = symbolTable.getSymbol(var - 1);
+			if(!hidden.test(symbol)) {
+				symbolNames.add(symbol.getSymbol());
+				variables[var] = symbolNames.size();
+			}
+		}
+		return extract(obdd, result, variables, symbolNames, clauses.size(), fingerprint(clauses));
+	}
+
+	/**
+	 * @return an order-sensitive hash code of the clauses.
+	 */
+	public static int fingerprint(List<Clause> clauses) {
+		int result = 1;
+		for(Clause clause : clauses)
+			result = 31 * result + clause.hashCode();
+		return result;
+	}
+
+	/**
+	 * @return the names of the symbols, variable v (starting with 1) is represented by the symbol at index v - 1.
+	 */
+	public List<String> getSymbolNames() {
+		return symbolNames;
+	}
+
+	public int getNumberOfClauses() {
+		return numClauses;
+	}
+
+	public int getNumberOfNodes() {
+		return nodeVars.length;
+	}
+
+	/**
+	 * @return true if the given clauses start with the compiled clauses.
+	 */
+	public boolean isCompilationOf(List<Clause> clauses) {
+		return clauses.size() >= numClauses && fingerprint(clauses.subList(0, numClauses)) == fingerprint;
+	}
+
+	/**
+	 * Copies the diagram into the given manager.
+	 *
+	 * @return the handle of the root in the given manager.
+	 */
+	public int load(OBDD obdd) {
+		int[] handles = new int[nodeVars.length + 2];
+		handles[OBDD.FALSE] = OBDD.FALSE;
+		handles[OBDD.TRUE] = OBDD.TRUE;
+		for(int i = 0; i < nodeVars.length; i++)
+			handles[i + 2] = obdd.node(nodeVars[i], handles[nodeLows[i]], handles[nodeHighs[i]]);
+		return handles[root];
+	}
+
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(FORMAT_VERSION);
+		data.writeInt(numClauses);
+		data.writeInt(fingerprint);
+		data.writeInt(symbolNames.size());
+		for(String name : symbolNames)
+			data.writeUTF(name);
+		data.writeInt(nodeVars.length);
+		for(int i = 0; i < nodeVars.length; i++) {
+			data.writeInt(nodeVars[i]);
+			data.writeInt(nodeLows[i]);
+			data.writeInt(nodeHighs[i]);
+		}
+		data.writeInt(root);
+		data.flush();
+	}
+
+	/**
+	 * Reads compiled clauses which have been written by {@link #write(OutputStream)}.
+	 *
+	 * @throws IOException if the stream cannot be read or does not contain compiled clauses.
+	 */
+	public static CompiledClauses read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION)
+			throw new IOException("Not a compiled knowledge base.");
+		int numClauses = data.readInt();
+		int fingerprint = data.readInt();
+		int numSymbols = data.readInt();
+		List<String> symbolNames = new ArrayList<>(numSymbols);
+		for(int i = 0; i < numSymbols; i++)
+			symbolNames.add(data.readUTF());
+		int numNodes = data.readInt();
+		int[] vars = new int[numNodes];
+		int[] lows = new int[numNodes];
+		int[] highs = new int[numNodes];
+		for(int i = 0; i < numNodes; i++) {
+			vars[i] = data.readInt();
+			lows[i] = data.readInt();
+			highs[i] = data.readInt();
+			if(vars[i] < 1 || vars[i] > numSymbols || lows[i] >= i + 2 || highs[i] >= i + 2)
+				throw new IOException("Corrupt node " + i + ".");
+		}
+		int root = data.readInt();
+		if(root < 0 || root >= numNodes + 2)
+			throw new IOException("Corrupt root.");
+		return new CompiledClauses(symbolNames, numClauses, fingerprint, vars, lows, highs, root);
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledClauses[clauses=" + numClauses + ", symbols=" + symbolNames.size()
+				+ ", nodes=" + nodeVars.length + "]";
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * Copies the nodes reachable from root, children first, and renumbers their variables.
+	 */
+	private static CompiledClauses extract(OBDD obdd, int root, int[] variables, List<String> symbolNames,
+	                                       int numClauses, int fingerprint) {
+		Map<Integer, Integer> handles = new HashMap<>();
+		handles.put(OBDD.FALSE, OBDD.FALSE);
+		handles.put(OBDD.TRUE, OBDD.TRUE);
+		int[] vars = new int[16];
+		int[] lows = new int[16];
+		int[] highs = new int[16];
+		// iterative post-order traversal
+		List<Integer> stack = new ArrayList<>();
+		stack.add(root);
+		while(!stack.isEmpty()) {
+			int node = stack.get(stack.size() - 1);
+			if(handles.containsKey(node)) {
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+			Integer low = handles.get(obdd.getLow(node));
+			Integer high = handles.get(obdd.getHigh(node));
+			if(low == null)
+				stack.add(obdd.getLow(node));
+			if(high == null)
+				stack.add(obdd.getHigh(node));
+			if(low != null && high != null) {
+				int i = handles.size() - 2;
+				if(i == vars.length) {
+					vars = Arrays.copyOf(vars, 2 * i);
+					lows = Arrays.copyOf(lows, 2 * i);
+					highs = Arrays.copyOf(highs, 2 * i);
+				}
+				vars[i] = variables[obdd.getVariable(node)];
+				lows[i] = low;
+				highs[i] = high;
+				handles.put(node, i + 2);
+				stack.remove(stack.size() - 1);
+			}
+		}
+		int numNodes = handles.size() - 2;
+		return new CompiledClauses(symbolNames, numClauses, fingerprint, Arrays.copyOf(vars, numNodes),
+				Arrays.copyOf(lows, numNodes), Arrays.copyOf(highs, numNodes), handles.get(root));
+	}
+
+	private static int minVariable(int[] clause) {
+		int result = Integer.MAX_VALUE;
+		for(int literal : clause)
+			result = Math.min(result, CompactClauseDatabase.getVariable(literal));
+		return result;
+	}
+}
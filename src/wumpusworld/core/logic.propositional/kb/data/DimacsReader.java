@@ -0,0 +1,195 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Reads clauses in the DIMACS CNF format one after the other, so that large
+ * files need not be held in memory twice. The format consists of comment lines
+ * starting with <code>c</code>, a header <code>p cnf &lt;variables&gt;
+ * &lt;clauses&gt;</code>, and clauses given as lists of non-zero integers
+ * terminated by <code>0</code> (the variable number, negated for negative
+ * literals). Clauses may span several lines. A line starting with
+ * <code>%</code> ends the input (as in the SATLIB benchmarks).<br>
+ * <br>
+ * Variable n is mapped to the symbol <code>x&lt;n&gt;</code>, unless a
+ * comment <code>c var &lt;n&gt; &lt;symbol&gt;</code> (as written by
+ * {@link DimacsWriter}) names it before its first occurrence. Files are read
+ * in UTF-8, which includes plain ASCII files.
+ */
+public class DimacsReader implements Closeable {
+	public static final String DEFAULT_SYMBOL_PREFIX = "x";
+
+	private final BufferedReader reader;
+	private final List<PropositionSymbol> symbols = new ArrayList<>(); // index: variable number
+	private int numVariables = -1;
+	private int numClauses = -1;
+	private String[] tokens = new String[0];
+	private int nextToken;
+	private int lineNumber;
+	private boolean end;
+
+	public DimacsReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		symbols.add(null);
+	}
+
+	/**
+	 * Reads all clauses of the file.
+	 */
+	public static Set<Clause> readClauses(Path file) throws IOException {
+		try(DimacsReader reader = new DimacsReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+			Set<Clause> result = new LinkedHashSet<>();
+			Clause clause;
+			while((clause = reader.readClause()) != null)
+				result.add(clause);
+			return result;
+		}
+	}
+
+	/**
+	 * Creates a knowledge base with all clauses of the file.
+	 */
+	public static KnowledgeBase readKnowledgeBase(Path file) throws IOException {
+		KnowledgeBase result = new KnowledgeBase();
+		result.tellClauses(readClauses(file));
+		return result;
+	}
+
+	/**
+	 * @return the next clause or null at the end of the input.
+	 * @throws IOException if the input cannot be read or is not in DIMACS CNF format.
+	 */
+	public Clause readClause() throws IOException {
+		List<Literal> literals = new ArrayList<>();
+		String token;
+		while((token = nextToken()) != null) {
+			int literal;
+			try {
+				literal = Integer.parseInt(token);
+			} catch(NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + ": Not a literal: " + token);
+			}
+			if(literal == 0)
+				return new Clause(literals);
+			int var = Math.abs(literal);
+			literals.add(new Literal(getSymbol(var), literal > 0));
+		}
+		if(!literals.isEmpty())
+			throw new IOException("Line " + lineNumber + ": Clause not terminated by 0.");
+		return null;
+	}
+
+	/**
+	 * @return the number of variables declared by the header, or -1 if no header has been read yet.
+	 */
+	public int getNumVariables() {
+		return numVariables;
+	}
+
+	/**
+	 * @return the number of clauses declared by the header, or -1 if no header has been read yet.
+	 */
+	public int getNumClauses() {
+		return numClauses;
+	}
+
+	/**
+	 * @return the symbol of the given variable number.
+	 */
+	public PropositionSymbol getSymbol(int var) {
+		while(symbols.size() <= var)
+			symbols.add(null);
+		PropositionSymbol result = symbols.get(var);
+		if(result == null) {
+			result = new PropositionSymbol(DEFAULT_SYMBOL_PREFIX + var);
+			symbols.set(var, result);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * @return the next token of a clause line, or null at the end of the input.
+	 */
+	private String nextToken() throws IOException {
+		while(nextToken == tokens.length) {
+			String line = end ? null : reader.readLine();
+			if(line == null) {
+				end = true;
+				return null;
+			}
+			lineNumber++;
+			line = line.trim();
+			nextToken = 0;
+			tokens = new String[0];
+			if(line.isEmpty()) {
+				continue;
+			} else if(line.startsWith("c")) {
+				readComment(line);
+			} else if(line.startsWith("p")) {
+				readHeader(line);
+			} else if(line.startsWith("%")) {
+				end = true;
+				return null;
+			} else {
+				tokens = line.split("\\s+");
+			}
+		}
+		return tokens[nextToken++];
+	}
+
+	private void readHeader(String line) throws IOException {
+		String[] parts = line.split("\\s+");
+		if(parts.length != 4 || !parts[1].equals("cnf"))
+			throw new IOException("Line " + lineNumber + ": Not a CNF header: " + line);
+		try {
+			numVariables = Integer.parseInt(parts[2]);
+			numClauses = Integer.parseInt(parts[3]);
+		} catch(NumberFormatException e) {
+			throw new IOException("Line " + lineNumber + ": Not a CNF header: " + line);
+		}
+	}
+
+	/**
+	 * Reads a symbol name of the form <code>c var &lt;n&gt; &lt;symbol&gt;</code>;
+	 * other comments are ignored.
+	 */
+	private void readComment(String line) {
+		String[] parts = line.split("\\s+");
+		if(parts.length == 4 && parts[0].equals("c") && parts[1].equals("var")
+				&& PropositionSymbol.isPropositionSymbol(parts[3])) {
+			try {
+				int var = Integer.parseInt(parts[2]);
+				if(var > 0) {
+					while(symbols.size() <= var)
+						symbols.add(null);
+					if(symbols.get(var) == null)
+						symbols.set(var, new PropositionSymbol(parts[3]));
+				}
+			} catch(NumberFormatException e) {
+				// an ordinary comment
+			}
+		}
+	}
+}
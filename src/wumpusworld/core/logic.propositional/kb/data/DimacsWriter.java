@@ -0,0 +1,118 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Writes clauses in the DIMACS CNF format (see {@link DimacsReader}). Symbols
+ * are numbered by a {@link SymbolTable} (symbol id + 1, as the literal codes of
+ * {@link CompactClauseDatabase}), and the name of each symbol is written as a
+ * comment <code>c var &lt;n&gt; &lt;symbol&gt;</code>, so that
+ * {@link DimacsReader} restores the original symbols. Other tools ignore these
+ * comments. Files are written in UTF-8, since symbol names may contain any
+ * Java identifier characters; the other lines are plain ASCII.<br>
+ * <br>
+ * Since the header precedes the clauses, the numbers of variables and clauses
+ * must be known in advance: Either use {@link #write(Collection, Path)}, or call
+ * {@link #writeHeader(SymbolTable, int)} with a table which already contains all
+ * symbols and then write the clauses one after the other.
+ */
+public class DimacsWriter implements Closeable, Flushable {
+	private final Writer writer;
+	private SymbolTable symbolTable;
+
+	public DimacsWriter(Writer writer) {
+		this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+	}
+
+	/**
+	 * Writes the clauses to the file.
+	 *
+	 * @param comments lines written as comments before the header, e.g. the origin of the clauses.
+	 */
+	public static void write(Collection<Clause> clauses, Path file, String... comments) throws IOException {
+		SymbolTable symbolTable = new SymbolTable();
+		for(Clause clause : clauses)
+			for(Literal literal : clause.getLiterals())
+				symbolTable.intern(literal.getAtomicSentence());
+		try(DimacsWriter writer = new DimacsWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			for(String comment : comments)
+				writer.writeComment(comment);
+			writer.writeHeader(symbolTable, clauses.size());
+			for(Clause clause : clauses)
+				writer.writeClause(clause);
+		}
+	}
+
+	/**
+	 * Writes the clauses of the knowledge base to the file.
+	 */
+	public static void write(KnowledgeBase kb, Path file, String... comments) throws IOException {
+		write(kb.getClauseStore().asList(), file, comments);
+	}
+
+	/**
+	 * Writes a comment line. Line breaks are replaced by spaces.
+	 */
+	public void writeComment(String comment) throws IOException {
+		writer.write("c ");
+		writer.write(comment.replace('\n', ' ').replace('\r', ' '));
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the header and the names of the symbols.
+	 *
+	 * @param symbolTable numbers the symbols of the clauses to be written. It
+	 * must contain all of them.
+	 * @param numClauses the number of clauses to be written.
+	 */
+	public void writeHeader(SymbolTable symbolTable, int numClauses) throws IOException {
+		this.symbolTable = symbolTable;
+		for(int id = 0; id < symbolTable.size(); id++) {
+			PropositionSymbol symbol = symbolTable.getSymbol(id);
+			writer.write("c var " + (id + 1) + " " + symbol.getSymbol() + "\n");
+		}
+		writer.write("p cnf " + symbolTable.size() + " " + numClauses + "\n");
+	}
+
+	/**
+	 * Writes a clause on a line of its own.
+	 *
+	 * @throws IllegalStateException if no header has been written or the clause
+	 * contains a symbol which is unknown to the symbol table.
+	 */
+	public void writeClause(Clause clause) throws IOException {
+		if(symbolTable == null)
+			throw new IllegalStateException("No header has been written.");
+		StringBuilder line = new StringBuilder();
+		for(Literal literal : clause.getLiterals()) {
+			int id = symbolTable.getId(literal.getAtomicSentence());
+			if(id == -1)
+				throw new IllegalStateException("Symbol not in the header: " + literal.getAtomicSentence());
+			line.append(literal.isPositiveLiteral() ? id + 1 : -(id + 1)).append(' ');
+		}
+		line.append("0\n");
+		writer.write(line.toString());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,366 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A manager of reduced ordered binary decision diagrams (OBDDs, Bryant 1986).
+ * Nodes are identified by int handles and stored in parallel arrays; the
+ * handles {@link #FALSE} and {@link #TRUE} denote the terminals. Variables are
+ * numbered 1, 2, ... as in {@link CompactClauseDatabase}, and smaller numbers
+ * are closer to the root. All diagrams of one manager share their nodes, so
+ * that equivalent functions have the same handle and equivalence checks take
+ * constant time.<br>
+ * <br>
+ * Nodes are not garbage collected automatically. Temporary diagrams (e.g.
+ * built for a single query) can be released in stack order by
+ * {@link #getMark()} and {@link #release(int)}, and long computations can drop
+ * their intermediate results by {@link #compact(int)}. The operation cache is
+ * lossy, so that its size stays bounded. Its entries are stamped with a
+ * generation, so that releasing nodes invalidates the whole cache in constant
+ * time.<br>
+ * <br>
+ * Note: OBDD managers are not thread-safe.
+ */
+public class OBDD {
+	public static final int FALSE = 0;
+	public static final int TRUE = 1;
+	private static final int TERMINAL_VAR = Integer.MAX_VALUE;
+	private static final int MAX_CACHE_SIZE = 1 << 20;
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int NOT = 2;
+
+	private int[] vars = new int[1024];
+	private int[] lows = new int[1024];
+	private int[] highs = new int[1024];
+	private int[] next = new int[1024]; // chains of the unique table
+	private int[] buckets = new int[1024];
+	private int size;
+	// operation cache, direct-mapped and lossy, so that its size stays bounded
+	private int[] cacheKeys = new int[1024]; // f
+	private int[] cacheArgs = new int[1024]; // operation and g
+	private int[] cacheResults = new int[1024];
+	private int[] cacheGenerations = new int[1024]; // the entry is valid if it equals generation
+	private int generation = 1;
+
+	public OBDD() {
+		Arrays.fill(buckets, -1);
+		vars[FALSE] = TERMINAL_VAR;
+		vars[TRUE] = TERMINAL_VAR;
+		size = 2;
+	}
+
+	/**
+	 * @return the number of nodes including the terminals.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the variable tested by the node (Integer.MAX_VALUE for terminals).
+	 */
+	public int getVariable(int node) {
+		return vars[node];
+	}
+
+	public int getLow(int node) {
+		return lows[node];
+	}
+
+	public int getHigh(int node) {
+		return highs[node];
+	}
+
+	/**
+	 * Returns the node which tests the variable and continues with low if the
+	 * variable is false and with high otherwise. The variable must be smaller
+	 * than the variables of low and high.
+	 */
+	public int node(int var, int low, int high) {
+		if(low == high)
+			return low;
+		int bucket = hash(var, low, high) & (buckets.length - 1);
+		for(int n = buckets[bucket]; n != -1; n = next[n])
+			if(vars[n] == var && lows[n] == low && highs[n] == high)
+				return n;
+		if(size == vars.length) {
+			grow();
+			bucket = hash(var, low, high) & (buckets.length - 1);
+		}
+		int n = size++;
+		vars[n] = var;
+		lows[n] = low;
+		highs[n] = high;
+		next[n] = buckets[bucket];
+		buckets[bucket] = n;
+		return n;
+	}
+
+	/**
+	 * @return the diagram of the literal (a variable, negative if negated).
+	 */
+	public int literal(int literal) {
+		return literal > 0 ? node(literal, FALSE, TRUE) : node(-literal, TRUE, FALSE);
+	}
+
+	/**
+	 * @return the diagram of the disjunction of the literals.
+	 */
+	public int clause(int[] literals) {
+		int[] byVariable = literals.clone();
+		sortByVariable(byVariable);
+		// build bottom-up, the literal with the largest variable first
+		int result = FALSE;
+		for(int i = byVariable.length - 1; i >= 0; i--) {
+			int literal = byVariable[i];
+			int var = CompactClauseDatabase.getVariable(literal);
+			if(result != FALSE && vars[result] == var) {
+				if((literal > 0) != (highs[result] == TRUE))
+					return TRUE; // tautology
+				continue; // duplicate literal
+			}
+			result = literal > 0 ? node(var, result, TRUE) : node(var, TRUE, result);
+		}
+		return result;
+	}
+
+	public int not(int f) {
+		if(f <= TRUE)
+			return 1 - f;
+		int cached = lookup(NOT, f, 0);
+		if(cached >= 0)
+			return cached;
+		int result = node(vars[f], not(lows[f]), not(highs[f]));
+		store(NOT, f, 0, result);
+		return result;
+	}
+
+	public int and(int f, int g) {
+		if(f == FALSE || g == FALSE)
+			return FALSE;
+		if(f == TRUE || f == g)
+			return g;
+		if(g == TRUE)
+			return f;
+		if(f > g) {
+			int h = f;
+			f = g;
+			g = h;
+		}
+		int cached = lookup(AND, f, g);
+		if(cached >= 0)
+			return cached;
+		int var = Math.min(vars[f], vars[g]);
+		int result = node(var,
+				and(vars[f] == var ? lows[f] : f, vars[g] == var ? lows[g] : g),
+				and(vars[f] == var ? highs[f] : f, vars[g] == var ? highs[g] : g));
+		store(AND, f, g, result);
+		return result;
+	}
+
+	public int or(int f, int g) {
+		if(f == TRUE || g == TRUE)
+			return TRUE;
+		if(f == FALSE || f == g)
+			return g;
+		if(g == FALSE)
+			return f;
+		if(f > g) {
+			int h = f;
+			f = g;
+			g = h;
+		}
+		int cached = lookup(OR, f, g);
+		if(cached >= 0)
+			return cached;
+		int var = Math.min(vars[f], vars[g]);
+		int result = node(var,
+				or(vars[f] == var ? lows[f] : f, vars[g] == var ? lows[g] : g),
+				or(vars[f] == var ? highs[f] : f, vars[g] == var ? highs[g] : g));
+		store(OR, f, g, result);
+		return result;
+	}
+
+	/**
+	 * @return the diagram of f with the literal's variable set to make the literal true.
+	 */
+	public int restrict(int f, int literal) {
+		return restrict(f, CompactClauseDatabase.getVariable(literal), literal > 0, new HashMap<>());
+	}
+
+	/**
+	 * @return the diagram of &exist;var f.
+	 */
+	public int exists(int f, int var) {
+		return or(restrict(f, var), restrict(f, -var));
+	}
+
+	/**
+	 * Counts the assignments to the variables 1, ..., numVars which satisfy f.
+	 * f must not depend on other variables.
+	 */
+	public BigInteger countModels(int f, int numVars) {
+		return countModels(f, numVars, new HashMap<>()).shiftLeft(Math.min(vars[f], numVars + 1) - 1);
+	}
+
+	/**
+	 * @return a mark which can be used to release all nodes created afterwards.
+	 */
+	public int getMark() {
+		return size;
+	}
+
+	/**
+	 * Releases all nodes which have been created after the mark was obtained.
+	 * Diagrams containing these nodes must no longer be used.
+	 */
+	public void release(int mark) {
+		if(mark >= size)
+			return;
+		// nodes are released in reverse order of creation, so each one is the head of its chain
+		for(int n = size - 1; n >= mark; n--) {
+			int bucket = hash(vars[n], lows[n], highs[n]) & (buckets.length - 1);
+			buckets[bucket] = next[n];
+		}
+		size = mark;
+		clearCache();
+	}
+
+	/**
+	 * Removes all nodes which are not reachable from root. The handles of the
+	 * remaining nodes change, all other diagrams become invalid.
+	 *
+	 * @return the new handle of root.
+	 */
+	public int compact(int root) {
+		// children are always created before their parents
+		boolean[] reachable = new boolean[size];
+		reachable[root] = true;
+		int[] handles = new int[size];
+		for(int n = size - 1; n >= 2; n--) {
+			if(reachable[n]) {
+				reachable[lows[n]] = true;
+				reachable[highs[n]] = true;
+			}
+		}
+		handles[TRUE] = TRUE;
+		int newSize = 2;
+		Arrays.fill(buckets, -1);
+		for(int n = 2; n < size; n++) {
+			if(reachable[n]) {
+				int m = newSize++;
+				vars[m] = vars[n];
+				lows[m] = handles[lows[n]];
+				highs[m] = handles[highs[n]];
+				handles[n] = m;
+				int bucket = hash(vars[m], lows[m], highs[m]) & (buckets.length - 1);
+				next[m] = buckets[bucket];
+				buckets[bucket] = m;
+			}
+		}
+		size = newSize;
+		clearCache();
+		return handles[root];
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private int restrict(int f, int var, boolean value, Map<Integer, Integer> cache) {
+		if(vars[f] > var)
+			return f;
+		if(vars[f] == var)
+			return value ? highs[f] : lows[f];
+		Integer cached = cache.get(f);
+		if(cached != null)
+			return cached;
+		int result = node(vars[f], restrict(lows[f], var, value, cache), restrict(highs[f], var, value, cache));
+		cache.put(f, result);
+		return result;
+	}
+
+	/**
+	 * Counts the assignments to the variables var(f), ..., numVars.
+	 */
+	private BigInteger countModels(int f, int numVars, Map<Integer, BigInteger> cache) {
+		if(f <= TRUE)
+			return BigInteger.valueOf(f);
+		BigInteger result = cache.get(f);
+		if(result == null) {
+			int var = vars[f];
+			result = countModels(lows[f], numVars, cache).shiftLeft(Math.min(vars[lows[f]], numVars + 1) - var - 1)
+					.add(countModels(highs[f], numVars, cache)
+							.shiftLeft(Math.min(vars[highs[f]], numVars + 1) - var - 1));
+			cache.put(f, result);
+		}
+		return result;
+	}
+
+	private int lookup(int op, int f, int g) {
+		int i = hash(op, f, g) & (cacheKeys.length - 1);
+		return cacheGenerations[i] == generation && cacheKeys[i] == f && cacheArgs[i] == (g << 2 | op)
+				? cacheResults[i] : -1;
+	}
+
+	private void store(int op, int f, int g, int result) {
+		int i = hash(op, f, g) & (cacheKeys.length - 1);
+		cacheKeys[i] = f;
+		cacheArgs[i] = g << 2 | op;
+		cacheResults[i] = result;
+		cacheGenerations[i] = generation;
+	}
+
+	/**
+	 * Invalidates all entries of the operation cache. The arrays are only
+	 * cleared when the generation counter wraps around.
+	 */
+	private void clearCache() {
+		if(++generation == 0) {
+			Arrays.fill(cacheGenerations, 0);
+			generation = 1;
+		}
+	}
+
+	private void grow() {
+		int capacity = 2 * vars.length;
+		vars = Arrays.copyOf(vars, capacity);
+		lows = Arrays.copyOf(lows, capacity);
+		highs = Arrays.copyOf(highs, capacity);
+		next = Arrays.copyOf(next, capacity);
+		buckets = new int[capacity];
+		Arrays.fill(buckets, -1);
+		for(int n = 2; n < size; n++) {
+			int bucket = hash(vars[n], lows[n], highs[n]) & (capacity - 1);
+			next[n] = buckets[bucket];
+			buckets[bucket] = n;
+		}
+		if(capacity <= MAX_CACHE_SIZE) {
+			cacheKeys = new int[capacity];
+			cacheArgs = new int[capacity];
+			cacheResults = new int[capacity];
+			cacheGenerations = new int[capacity];
+		}
+	}
+
+	private static int hash(int var, int low, int high) {
+		int h = var * 31 + low;
+		return (h * 0x9E3779B1 + high) * 0x85EBCA6B >>> 7;
+	}
+
+	private static void sortByVariable(int[] literals) {
+		for(int i = 1; i < literals.length; i++) {
+			int literal = literals[i];
+			int j = i - 1;
+			while(j >= 0 && CompactClauseDatabase.getVariable(literals[j]) > CompactClauseDatabase.getVariable(literal)) {
+				literals[j + 1] = literals[j];
+				j--;
+			}
+			literals[j + 1] = literal;
+		}
+	}
+}
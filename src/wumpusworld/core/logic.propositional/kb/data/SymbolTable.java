@@ -0,0 +1,326 @@
+package wumpusworld.core.logic.propositional.kb.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Interns proposition symbols and assigns a dense integer ID (0, 1, 2, ...) to
+ * each of them. Interned symbols know their ID (see
+ * {@link PropositionSymbol#getId()}), so that data structures can be indexed by
+ * ID instead of hashing symbol names.<br>
+ * <br>
+ * Symbols following the naming scheme <code>prefix_t</code>,
+ * <code>prefix_x_y</code> or <code>prefix_t_x_y</code> (e.g. used by the
+ * wumpus world knowledge base) can be looked up directly by their indices.
+ * After the first lookup, those methods neither concatenate strings nor
+ * allocate objects. Frozen tables answer them for all of their symbols
+ * without modifying the caches.<br>
+ * <br>
+ * A table can extend a frozen parent table (see {@link #freeze()}). It knows
+ * all symbols of the parent with the same IDs and assigns the following IDs to
+ * its own symbols. The parent is only read, so that several tables can share
+ * it.<br>
+ * <br>
+ * Note: Symbol tables are not thread-safe, but frozen tables can be read
+ * concurrently.
+ */
+public class SymbolTable {
+	private final SymbolTable parent;
+	private final int offset; // number of symbols of the parent
+	private PropositionSymbol[] symbols = new PropositionSymbol[64];
+	private int size; // number of own symbols
+	private final Map<String, PropositionSymbol> symbolsByName = new HashMap<>();
+	private final Map<String, Family> families = new HashMap<>();
+	private boolean frozen;
+	private final Interning interning = new Interning(this);
+
+	public SymbolTable() {
+		this(null);
+	}
+
+	/**
+	 * Creates a table which extends the given table.
+	 *
+	 * @param parent a frozen table or null.
+	 */
+	public SymbolTable(SymbolTable parent) {
+		if(parent != null && !parent.frozen)
+			throw new IllegalArgumentException("The parent table must be frozen.");
+		this.parent = parent;
+		offset = parent != null ? parent.size() : 0;
+	}
+
+	/**
+	 * Prevents the creation of new symbols. Afterwards, the table can be used
+	 * as parent of other tables. The lookup caches are completed for all
+	 * symbols, since they are not modified any more.
+	 */
+	public void freeze() {
+		if(!frozen) {
+			for(int i = 0; i < size; i++)
+				cacheByName(symbols[i]);
+			frozen = true;
+		}
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Returns the interned symbol with the given name. If the name is not yet
+	 * known, a new symbol is created and a new ID is assigned to it.
+	 */
+	public PropositionSymbol intern(String name) {
+		PropositionSymbol result = find(name);
+		if(result == null) {
+			if(frozen)
+				throw new IllegalStateException("Symbol table is frozen, unknown symbol: " + name);
+			result = new PropositionSymbol(name, offset + size, interning);
+			// True and False are represented in a canonical form.
+			PropositionSymbol existing = find(result.getSymbol());
+			if(existing != null) {
+				symbolsByName.put(name, existing);
+				return existing;
+			}
+			if(size == symbols.length)
+				symbols = Arrays.copyOf(symbols, 2 * size);
+			symbols[size++] = result;
+			symbolsByName.put(name, result);
+			if(!name.equals(result.getSymbol()))
+				symbolsByName.put(result.getSymbol(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the interned symbol which is equal to the given symbol.
+	 */
+	public PropositionSymbol intern(PropositionSymbol symbol) {
+		return isInterned(symbol) ? symbol : intern(symbol.getSymbol());
+	}
+
+	/**
+	 * Returns the ID of the given symbol or -1 if the symbol is unknown. For
+	 * symbols created by this table, no hashing is needed.
+	 */
+	public int getId(PropositionSymbol symbol) {
+		if(isInterned(symbol))
+			return symbol.getId();
+		PropositionSymbol interned = find(symbol.getSymbol());
+		return interned != null ? interned.getId() : -1;
+	}
+
+	/**
+	 * Returns the symbol with the given ID.
+	 */
+	public PropositionSymbol getSymbol(int id) {
+		if(id < 0 || id >= offset + size)
+			throw new IndexOutOfBoundsException("Unknown symbol ID: " + id);
+		return id < offset ? parent.getSymbol(id) : symbols[id - offset];
+	}
+
+	/**
+	 * @return the number of interned symbols (including those of the parent). IDs range from 0 to size - 1.
+	 */
+	public int size() {
+		return offset + size;
+	}
+
+	/**
+	 * Returns the interned symbol <code>prefix_t</code>.
+	 */
+	public PropositionSymbol symbol(String prefix, int t) {
+		PropositionSymbol result = cached(prefix, t);
+		if(result == null) {
+			result = intern(prefix + "_" + t);
+			if(!frozen)
+				cache(prefix, t, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the interned symbol <code>prefix_x_y</code>.
+	 */
+	public PropositionSymbol symbol(String prefix, int x, int y) {
+		PropositionSymbol result = cached(prefix, x, y);
+		if(result == null) {
+			result = intern(prefix + "_" + x + "_" + y);
+			if(!frozen)
+				cache(prefix, x, y, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the interned symbol <code>prefix_t_x_y</code>.
+	 */
+	public PropositionSymbol symbol(String prefix, int t, int x, int y) {
+		PropositionSymbol result = cached(prefix, t, x, y);
+		if(result == null) {
+			result = intern(prefix + "_" + t + "_" + x + "_" + y);
+			if(!frozen)
+				cache(prefix, t, x, y, result);
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private boolean isInterned(PropositionSymbol symbol) {
+		int id = symbol.getId();
+		if(id < offset)
+			return id >= 0 && parent.isInterned(symbol);
+		return id < offset + size && symbols[id - offset] == symbol;
+	}
+
+	/**
+	 * @return the symbol with the given name of this table or its ancestors, or null.
+	 */
+	private PropositionSymbol find(String name) {
+		PropositionSymbol result = symbolsByName.get(name);
+		if(result == null && parent != null)
+			result = parent.find(name);
+		return result;
+	}
+
+	private PropositionSymbol cached(String prefix, int t) {
+		Family family = families.get(prefix);
+		PropositionSymbol result = family != null ? get(family.byT, t) : null;
+		return result == null && parent != null ? parent.cached(prefix, t) : result;
+	}
+
+	private PropositionSymbol cached(String prefix, int x, int y) {
+		Family family = families.get(prefix);
+		PropositionSymbol result = family != null ? get(get(family.byXY, x), y) : null;
+		return result == null && parent != null ? parent.cached(prefix, x, y) : result;
+	}
+
+	private PropositionSymbol cached(String prefix, int t, int x, int y) {
+		Family family = families.get(prefix);
+		PropositionSymbol result = family != null ? get(get(get(family.byTXY, t), x), y) : null;
+		return result == null && parent != null ? parent.cached(prefix, t, x, y) : result;
+	}
+
+	/**
+	 * Adds the symbol to the lookup caches of all families its name fits, e.g.
+	 * <code>P_1_2</code> as <code>P</code> with x = 1 and y = 2 and as
+	 * <code>P_1</code> with t = 2. Names with indices which are not in canonical
+	 * form (such as <code>P_01</code>) are never produced by the lookup methods
+	 * and are skipped.
+	 */
+	private void cacheByName(PropositionSymbol symbol) {
+		String name = symbol.getSymbol();
+		int[] indices = new int[3]; // from right to left
+		int end = name.length();
+		for(int n = 0; n < indices.length; n++) {
+			int separator = name.lastIndexOf('_', end - 1);
+			if(separator <= 0 || separator == end - 1 || end - separator > 10)
+				return;
+			String digits = name.substring(separator + 1, end);
+			for(int i = 0; i < digits.length(); i++)
+				if(digits.charAt(i) < '0' || digits.charAt(i) > '9')
+					return;
+			indices[n] = Integer.parseInt(digits);
+			if(!digits.equals(Integer.toString(indices[n])))
+				return;
+			String prefix = name.substring(0, separator);
+			if(n == 0)
+				cache(prefix, indices[0], symbol);
+			else if(n == 1)
+				cache(prefix, indices[1], indices[0], symbol);
+			else
+				cache(prefix, indices[2], indices[1], indices[0], symbol);
+			end = separator;
+		}
+	}
+
+	private Family getFamily(String prefix) {
+		Family result = families.get(prefix);
+		if(result == null) {
+			result = new Family();
+			families.put(prefix, result);
+		}
+		return result;
+	}
+
+	private void cache(String prefix, int t, PropositionSymbol symbol) {
+		if(t >= 0) {
+			Family family = getFamily(prefix);
+			family.byT = ensureCapacity(family.byT, t);
+			family.byT[t] = symbol;
+		}
+	}
+
+	private void cache(String prefix, int x, int y, PropositionSymbol symbol) {
+		if(x >= 0 && y >= 0) {
+			Family family = getFamily(prefix);
+			family.byXY = ensureCapacity(family.byXY, x);
+			family.byXY[x] = ensureCapacity(family.byXY[x], y);
+			family.byXY[x][y] = symbol;
+		}
+	}
+
+	private void cache(String prefix, int t, int x, int y, PropositionSymbol symbol) {
+		if(t >= 0 && x >= 0 && y >= 0) {
+			Family family = getFamily(prefix);
+			family.byTXY = ensureCapacity(family.byTXY, t);
+			family.byTXY[t] = ensureCapacity(family.byTXY[t], x);
+			family.byTXY[t][x] = ensureCapacity(family.byTXY[t][x], y);
+			family.byTXY[t][x][y] = symbol;
+		}
+	}
+
+	private static <T> T get(T[] array, int i) {
+		return array != null && i >= 0 && i < array.length ? array[i] : null;
+	}
+
+	private static PropositionSymbol[] ensureCapacity(PropositionSymbol[] array, int i) {
+		if(array == null)
+			return new PropositionSymbol[Math.max(8, i + 1)];
+		return i < array.length ? array : Arrays.copyOf(array, Math.max(2 * array.length, i + 1));
+	}
+
+	private static PropositionSymbol[][] ensureCapacity(PropositionSymbol[][] array, int i) {
+		if(array == null)
+			return new PropositionSymbol[Math.max(8, i + 1)][];
+		return i < array.length ? array : Arrays.copyOf(array, Math.max(2 * array.length, i + 1));
+	}
+
+	private static PropositionSymbol[][][] ensureCapacity(PropositionSymbol[][][] array, int i) {
+		return i < array.length ? array : Arrays.copyOf(array, Math.max(2 * array.length, i + 1));
+	}
+
+	/**
+	 * Symbols sharing the same prefix, indexed by time step and/or room coordinates.
+	 */
+	private static class Family {
+		PropositionSymbol[] byT = new PropositionSymbol[8];
+		PropositionSymbol[][] byXY = new PropositionSymbol[8][];
+		PropositionSymbol[][][] byTXY = new PropositionSymbol[8][][];
+	}
+
+	/**
+	 * Identifies the table which creates an interned symbol (see
+	 * {@link PropositionSymbol#PropositionSymbol(String, int, Interning)}).
+	 * Only symbol tables can create instances, so that no other symbol with
+	 * the name and ID of an interned symbol can be created.
+	 */
+	public static final class Interning {
+		private final SymbolTable table;
+
+		private Interning(SymbolTable table) {
+			this.table = table;
+		}
+
+		public SymbolTable getTable() {
+			return table;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package wumpusworld.core.logic.propositional.parsing.ast;
 
 import javax.lang.model.SourceVersion;
 
+import wumpusworld.core.logic.propositional.kb.data.SymbolTable;
+
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 244.<br>
  * <br>
@@ -27,6 +29,8 @@ public class PropositionSymbol extends AtomicSentence {
 	public static final PropositionSymbol FALSE = new PropositionSymbol(FALSE_SYMBOL);
 	//
 	private String symbol;
+	private int id = -1;
+	private SymbolTable table; // the symbol table which interned this symbol, or null
 
 	/**
 	 * Constructor.
@@ -47,6 +51,20 @@ public class PropositionSymbol extends AtomicSentence {
 		}
 	}
 
+	/**
+	 * Constructor for interned symbols. It can only be called by a
+	 * {@link SymbolTable}, which creates at most one symbol per name.
+	 *
+	 * @param symbol the symbol uniquely identifying the proposition.
+	 * @param id the integer ID assigned by the symbol table.
+	 * @param interning the proof that the symbol table creates the symbol.
+	 */
+	public PropositionSymbol(String symbol, int id, SymbolTable.Interning interning) {
+		this(symbol);
+		this.id = id;
+		table = interning.getTable();
+	}
+
 	/**
 	 * @return true if the symbol passed in is the always 'True' proposition
 	 * symbol, false otherwise.
@@ -120,6 +138,16 @@ public class PropositionSymbol extends AtomicSentence {
 		return symbol;
 	}
 
+	/**
+	 * @return the integer ID assigned by the symbol table which created this
+	 * symbol, or -1 if the symbol has not been interned. Note that
+	 * equality of symbols is still defined by name only, but distinct symbols
+	 * of the same table are known to differ without comparing their names.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 
@@ -130,6 +158,9 @@ public class PropositionSymbol extends AtomicSentence {
 			return false;
 		}
 		PropositionSymbol sym = (PropositionSymbol) o;
+		if(table != null && table == sym.table) {
+			return false; // a table interns each name only once
+		}
 		return symbol.equals(sym.symbol);
 
 	}
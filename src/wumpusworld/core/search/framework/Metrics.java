@@ -33,6 +33,13 @@ public class Metrics {
 		hash.put(name, Long.toString(l));
 	}
 
+	/**
+	 * Copies all key-value pairs of the other metrics.
+	 */
+	public void setAll(Metrics other) {
+		hash.putAll(other.hash);
+	}
+
 	public int getInt(String name) {
 		String value = hash.get(name);
 		return value != null ? Integer.parseInt(value) : 0;
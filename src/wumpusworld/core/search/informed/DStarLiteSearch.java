@@ -0,0 +1,302 @@
+package wumpusworld.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleBiFunction;
+
+import wumpusworld.core.search.framework.Metrics;
+import wumpusworld.core.search.framework.problem.StepCostFunction;
+
+/**
+ * D* Lite (Koenig and Likhachev 2002), an incremental version of A* for
+ * repeated route planning in a changing state space. The search runs backwards
+ * from the goals: g(s) is the cost of the cheapest path from s to a goal, as
+ * far as it has been computed, and rhs(s) is the one-step lookahead
+ * min<sub>s'</sub>(c(s, a, s') + g(s')), which is 0 for goals. States with
+ * g &ne; rhs are inconsistent and kept in a priority queue. Both values are
+ * kept between the calls of {@link #findActions(Object)}:
+ * <ul>
+ * <li>If the start state changes, e.g. because the agent moved, the keys of
+ * the queued states are corrected lazily by the offset km (the heuristic must
+ * be consistent).</li>
+ * <li>If the outgoing edges of some states change, e.g. because rooms
+ * became allowed, the caller reports them by {@link #updateStates(Collection)}.</li>
+ * <li>If the goals change, only the added and removed goals are updated
+ * (see {@link #setGoals(Set)}).</li>
+ * </ul>
+ * Only the states whose g value is affected by a change are expanded again,
+ * so replanning takes time proportional to the change rather than to the size
+ * of the state space. The first search is as expensive as an A* search.<br>
+ * <br>
+ * The predecessors function may return a superset of the true predecessors
+ * (e.g. ignore that some transitions are blocked), which just causes some
+ * unnecessary updates.
+ *
+ * @param <S> The type used to represent states
+ * @param <A> The type of the actions to be used to navigate through the state space
+ */
+public class DStarLiteSearch<S, A> {
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_PATH_COST = "pathCost";
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	private final Function<S, List<A>> actionsFn;
+	private final BiFunction<S, A, S> resultFn;
+	private final StepCostFunction<S, A> stepCostFn;
+	private final Function<S, ? extends Collection<S>> predecessorsFn;
+	private final ToDoubleBiFunction<S, S> h;
+	//
+	private final Map<S, Vertex<S>> vertices = new HashMap<>();
+	private final PriorityQueue<Entry<S>> queue = new PriorityQueue<>(DStarLiteSearch::compareKeys);
+	private Set<S> goals = Collections.emptySet();
+	private S lastStart;
+	private double km;
+	private Metrics metrics = new Metrics();
+
+	/**
+	 * Constructs a search with unit step costs.
+	 */
+	public DStarLiteSearch(Function<S, List<A>> actionsFn, BiFunction<S, A, S> resultFn,
+	                       Function<S, ? extends Collection<S>> predecessorsFn, ToDoubleBiFunction<S, S> h) {
+		this(actionsFn, resultFn, (s, a, sPrimed) -> 1.0, predecessorsFn, h);
+	}
+
+	/**
+	 * @param actionsFn the actions which can be executed in a state.
+	 * @param resultFn the state which results from executing an action.
+	 * @param stepCostFn the costs of a transition (must be positive).
+	 * @param predecessorsFn the states from which a state can be reached by one action.
+	 * @param h a consistent heuristic: h(s, s') estimates the cost of the
+	 * cheapest path from s to s'.
+	 */
+	public DStarLiteSearch(Function<S, List<A>> actionsFn, BiFunction<S, A, S> resultFn,
+	                       StepCostFunction<S, A> stepCostFn, Function<S, ? extends Collection<S>> predecessorsFn,
+	                       ToDoubleBiFunction<S, S> h) {
+		this.actionsFn = actionsFn;
+		this.resultFn = resultFn;
+		this.stepCostFn = stepCostFn;
+		this.predecessorsFn = predecessorsFn;
+		this.h = h;
+	}
+
+	public Set<S> getGoals() {
+		return goals;
+	}
+
+	/**
+	 * Replaces the goal states. The values of the states which are no longer
+	 * or newly goals are repaired on the next search.
+	 */
+	public void setGoals(Set<S> newGoals) {
+		Set<S> changed = new LinkedHashSet<>();
+		for(S goal : goals)
+			if(!newGoals.contains(goal))
+				changed.add(goal);
+		for(S goal : newGoals)
+			if(!goals.contains(goal))
+				changed.add(goal);
+		goals = new LinkedHashSet<>(newGoals);
+		updateStates(changed);
+	}
+
+	/**
+	 * Reports states whose outgoing transitions or step costs have changed.
+	 */
+	public void updateStates(Collection<S> states) {
+		for(S s : states)
+			updateVertex(s);
+	}
+
+	/**
+	 * Computes a cheapest action sequence from the start state to one of the goals.
+	 *
+	 * @return the actions or empty if no goal can be reached.
+	 */
+	public Optional<List<A>> findActions(S start) {
+		metrics.set(METRIC_NODES_EXPANDED, 0);
+		if(lastStart != null && !lastStart.equals(start))
+			km += h.applyAsDouble(lastStart, start);
+		lastStart = start;
+		computeShortestPath(start);
+
+		Vertex<S> v = vertex(start);
+		if(v.g == INFINITY)
+			return Optional.empty();
+		metrics.set(METRIC_PATH_COST, v.g);
+		// follow the cheapest successors (g strictly decreases, so no state is visited twice)
+		List<A> result = new ArrayList<>();
+		S s = start;
+		while(!goals.contains(s)) {
+			A bestAction = null;
+			S bestState = null;
+			double best = INFINITY;
+			for(A a : actionsFn.apply(s)) {
+				S sPrimed = resultFn.apply(s, a);
+				if(sPrimed.equals(s))
+					continue;
+				double cost = stepCostFn.applyAsDouble(s, a, sPrimed) + vertex(sPrimed).g;
+				if(cost < best) {
+					best = cost;
+					bestAction = a;
+					bestState = sPrimed;
+				}
+			}
+			if(bestAction == null)
+				return Optional.empty(); // cannot happen with consistent values
+			result.add(bestAction);
+			s = bestState;
+		}
+		return Optional.of(result);
+	}
+
+	/**
+	 * @return the cost of the cheapest path from the state to a goal as
+	 * computed by the last search (infinity if unknown).
+	 */
+	public double getPathCost(S state) {
+		Vertex<S> v = vertices.get(state);
+		return v != null ? v.g : INFINITY;
+	}
+
+	/**
+	 * Returns all the metrics of the last search.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void computeShortestPath(S start) {
+		Vertex<S> startVertex = vertex(start);
+		calculateKey(startVertex);
+		int expanded = 0;
+		Entry<S> top;
+		while((top = peek()) != null
+				&& (compareKeys(top.k1, top.k2, startVertex.k1, startVertex.k2) < 0 || startVertex.rhs != startVertex.g)) {
+			Vertex<S> u = top.vertex;
+			calculateKey(u);
+			if(compareKeys(top.k1, top.k2, u.k1, u.k2) < 0) {
+				enqueue(u); // the key is outdated since the start has moved
+			} else if(u.g > u.rhs) {
+				u.queued = null;
+				u.g = u.rhs;
+				expanded++;
+				for(S s : predecessorsFn.apply(u.state))
+					updateVertex(s);
+			} else {
+				u.queued = null;
+				u.g = INFINITY;
+				expanded++;
+				for(S s : predecessorsFn.apply(u.state))
+					updateVertex(s);
+				updateVertex(u.state);
+			}
+			calculateKey(startVertex);
+		}
+		metrics.set(METRIC_NODES_EXPANDED, expanded);
+	}
+
+	private void updateVertex(S s) {
+		Vertex<S> v = vertex(s);
+		if(goals.contains(s)) {
+			v.rhs = 0;
+		} else {
+			double rhs = INFINITY;
+			for(A a : actionsFn.apply(s)) {
+				S sPrimed = resultFn.apply(s, a);
+				if(!sPrimed.equals(s))
+					rhs = Math.min(rhs, stepCostFn.applyAsDouble(s, a, sPrimed) + vertex(sPrimed).g);
+			}
+			v.rhs = rhs;
+		}
+		if(v.g != v.rhs) {
+			calculateKey(v);
+			enqueue(v);
+		} else {
+			v.queued = null; // removes the vertex from the queue
+		}
+	}
+
+	/**
+	 * [min(g, rhs) + h(start, s) + km; min(g, rhs)]. Before the first search,
+	 * the start is unknown and h is taken as 0, which gives a lower bound.
+	 */
+	private void calculateKey(Vertex<S> v) {
+		double min = Math.min(v.g, v.rhs);
+		v.k2 = min;
+		v.k1 = min + (lastStart != null ? h.applyAsDouble(lastStart, v.state) : 0) + km;
+	}
+
+	/**
+	 * Inserts the vertex with its current key. Entries of earlier insertions
+	 * become outdated and are skipped (see {@link #peek()}).
+	 */
+	private void enqueue(Vertex<S> v) {
+		v.queued = new Entry<>(v);
+		queue.add(v.queued);
+	}
+
+	/**
+	 * @return the entry with the smallest key, or null if the queue is empty.
+	 */
+	private Entry<S> peek() {
+		while(!queue.isEmpty()) {
+			Entry<S> top = queue.peek();
+			if(top.vertex.queued == top)
+				return top;
+			queue.poll();
+		}
+		return null;
+	}
+
+	private Vertex<S> vertex(S s) {
+		return vertices.computeIfAbsent(s, Vertex::new);
+	}
+
+	private static int compareKeys(double k1, double k2, double l1, double l2) {
+		int result = Double.compare(k1, l1);
+		return result != 0 ? result : Double.compare(k2, l2);
+	}
+
+	private static int compareKeys(Entry<?> e1, Entry<?> e2) {
+		return compareKeys(e1.k1, e1.k2, e2.k1, e2.k2);
+	}
+
+	private static class Vertex<S> {
+		final S state;
+		double g = INFINITY;
+		double rhs = INFINITY;
+		double k1;
+		double k2;
+		Entry<S> queued; // the current queue entry or null
+
+		Vertex(S state) {
+			this.state = state;
+		}
+	}
+
+	private static class Entry<S> {
+		final Vertex<S> vertex;
+		final double k1;
+		final double k2;
+
+		Entry(Vertex<S> vertex) {
+			this.vertex = vertex;
+			k1 = vertex.k1;
+			k2 = vertex.k2;
+		}
+	}
+}
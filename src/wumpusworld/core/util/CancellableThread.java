@@ -1,13 +1,21 @@
 package wumpusworld.core.util;
 
+import java.util.concurrent.Callable;
+
 /**
- * Implements a thread with an additional flag indicating cancellation.
+ * Implements a thread with an additional flag indicating cancellation. Tasks
+ * which are handed over to other threads (e.g. a thread pool) can inherit the
+ * cancellation flag of the submitting thread (see
+ * {@link #inheritCancellation(Callable)}).
  *
  * @author Ruediger Lunde
  * @author Mike Stampone
  */
 public class CancellableThread extends Thread {
 
+	// the thread on whose behalf the current thread works, if any
+	private static final ThreadLocal<CancellableThread> principal = new ThreadLocal<>();
+
 	private volatile boolean isCancelled;
 
 	public CancellableThread() {
@@ -25,7 +33,32 @@ public class CancellableThread extends Thread {
 	public static boolean currIsCancelled() {
 		if(Thread.currentThread() instanceof CancellableThread)
 			return ((CancellableThread) Thread.currentThread()).isCancelled;
-		return false;
+		CancellableThread thread = principal.get();
+		return thread != null && thread.isCancelled;
+	}
+
+	/**
+	 * Wraps a task so that {@link #currIsCancelled()} reports the cancellation
+	 * state of the current thread while the task is executed in another thread.
+	 *
+	 * @param task a task to be executed in another thread.
+	 * @return the wrapped task.
+	 */
+	public static <T> Callable<T> inheritCancellation(Callable<T> task) {
+		Thread current = Thread.currentThread();
+		CancellableThread thread = current instanceof CancellableThread
+				? (CancellableThread) current : principal.get();
+		if(thread == null)
+			return task;
+		return () -> {
+			CancellableThread previous = principal.get();
+			principal.set(thread);
+			try {
+				return task.call();
+			} finally {
+				principal.set(previous);
+			}
+		};
 	}
 
 	/**
@@ -0,0 +1,93 @@
+package wumpusworld.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations in nanoseconds with logarithmic buckets: Bucket i
+ * counts the durations d with 2<sup>i</sup> &le; d &lt; 2<sup>i+1</sup>
+ * (bucket 0 also counts 0). Recording takes constant time and no memory, so
+ * that it can be done for every query. Percentiles are approximated by the
+ * upper bound of the bucket they fall into (at most twice the true value),
+ * count, total, minimum and maximum are exact.
+ */
+public class LatencyHistogram {
+	private static final int NUM_BUCKETS = 64;
+
+	private final long[] buckets = new long[NUM_BUCKETS];
+	private long count;
+	private long total;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * Adds a duration (negative values are recorded as 0).
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+		buckets[NUM_BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1)]++;
+		count++;
+		total += nanos;
+		min = Math.min(min, nanos);
+		max = Math.max(max, nanos);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of all durations in nanoseconds.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMin() {
+		return count > 0 ? min : 0;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count > 0 ? (double) total / count : 0;
+	}
+
+	/**
+	 * @param p a value between 0 and 1, e.g. 0.99 for the 99th percentile.
+	 * @return an upper bound of the duration which is not exceeded by the
+	 * given fraction of the recorded durations (0 if nothing was recorded).
+	 */
+	public long getPercentile(double p) {
+		long rank = (long) Math.ceil(p * count);
+		long seen = 0;
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			seen += buckets[i];
+			if(seen >= rank && seen > 0)
+				return Math.max(min, Math.min(max, i < NUM_BUCKETS - 1 ? (1L << (i + 1)) - 1 : Long.MAX_VALUE));
+		}
+		return max;
+	}
+
+	/**
+	 * @return the number of durations recorded in bucket i.
+	 */
+	public long getBucketCount(int i) {
+		return buckets[i];
+	}
+
+	public void clear() {
+		Arrays.fill(buckets, 0);
+		count = 0;
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[count=" + count + ", mean=" + (long) getMean() + "ns, p50="
+				+ getPercentile(0.5) + "ns, p99=" + getPercentile(0.99) + "ns, max=" + max + "ns]";
+	}
+}
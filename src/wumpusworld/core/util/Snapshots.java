@@ -0,0 +1,83 @@
+package wumpusworld.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for binary snapshots. A snapshot consists of sections, each starting
+ * with a header of magic number and format version. Sections are written with
+ * {@link DataOutput} (big-endian) and read from a {@link ByteBuffer}, typically
+ * a memory-mapped file (see {@link #map(Path)}), so that loading does not copy
+ * the file content into the heap first. Several sections can be written to the
+ * same channel and read back one after the other from the same buffer.
+ */
+public class Snapshots {
+
+	/**
+	 * Writes all bytes of the stream to the channel, e.g. a {@link FileChannel}.
+	 */
+	public static void write(WritableByteChannel channel, ByteArrayOutputStream bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Maps the content of the file into memory (read-only).
+	 */
+	public static MappedByteBuffer map(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	public static void writeHeader(DataOutput out, int magic, int version) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(version);
+	}
+
+	/**
+	 * Reads a header and checks magic number and version.
+	 *
+	 * @throws IOException if the buffer does not contain the expected header.
+	 */
+	public static void readHeader(ByteBuffer in, int magic, int version) throws IOException {
+		if(in.remaining() < 8 || in.getInt() != magic)
+			throw new IOException("Unexpected snapshot section.");
+		int actual = in.getInt();
+		if(actual != version)
+			throw new IOException("Unsupported snapshot version: " + actual);
+	}
+
+	public static void writeString(DataOutput out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(ByteBuffer in) throws IOException {
+		int length = in.getInt();
+		if(length < 0 || length > in.remaining())
+			throw new IOException("Corrupt string length: " + length);
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the value if it lies in [0, bound), otherwise an exception is thrown.
+	 */
+	public static int checkIndex(int value, int bound) throws IOException {
+		if(value < 0 || value >= bound)
+			throw new IOException("Corrupt snapshot, value " + value + " out of range [0, " + bound + ").");
+		return value;
+	}
+}
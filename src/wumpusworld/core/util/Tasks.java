@@ -1,5 +1,6 @@
 package wumpusworld.core.util;
 
+import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -52,6 +53,15 @@ public class Tasks {
 		return isCancelledFn.get();
 	}
 
+	/**
+	 * Wraps a subtask which is to be executed in another thread (e.g. by a thread pool), so that
+	 * {@link #currIsCancelled()} returns true within the subtask when the current task is cancelled.
+	 * Supported by the default implementation based on {@link CancellableThread}.
+	 */
+	public static <T> Callable<T> inheritCancellation(Callable<T> subtask) {
+		return CancellableThread.inheritCancellation(subtask);
+	}
+
 
 	// functionality can be changed at runtime
 
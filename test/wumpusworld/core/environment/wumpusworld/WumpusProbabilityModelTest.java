@@ -0,0 +1,88 @@
+package wumpusworld.core.environment.wumpusworld;
+
+/**
+ * Checks that frontier components with up to
+ * {@link WumpusProbabilityModel#MAX_ENUMERATED_ROOMS} rooms are enumerated
+ * exactly and larger ones are approximated.<br>
+ * <br>
+ * The breezy rooms are observed in the middle row of a cave with three rows,
+ * at every second column. Neighbouring breezy rooms share a frontier room
+ * between them, so all frontier rooms form one component. k breezy rooms
+ * result in 3k + 1 frontier rooms, and each constraint contains four rooms.<br>
+ * <br>
+ * Usage: <code>java wumpusworld.core.environment.wumpusworld.WumpusProbabilityModelTest</code>.
+ * The exit code is 1 if a check fails.
+ */
+public class WumpusProbabilityModelTest {
+	private static final double EPSILON = 1e-9;
+
+	private int failures;
+
+	public static void main(String[] args) {
+		WumpusProbabilityModelTest test = new WumpusProbabilityModelTest();
+		test.testEnumeratedComponent();
+		test.testApproximatedComponent();
+		System.out.println(test.failures == 0 ? "OK" : test.failures + " failed checks");
+		if(test.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * 16 rooms are enumerated: A room shared by two constraints is more likely
+	 * to contain a pit than the approximation says.
+	 */
+	public void testEnumeratedComponent() {
+		WumpusProbabilityModel model = createModel(5);
+		double shared = model.getPitProbability(new Room(3, 2));
+		check(shared > approximation() + 0.01, "enumerated: shared room " + shared);
+		check(model.getCacheMisses() == 1, "enumerated: one component");
+	}
+
+	/**
+	 * 19 rooms are approximated: Each room gets the probability of a single
+	 * constraint with four rooms.
+	 */
+	public void testApproximatedComponent() {
+		WumpusProbabilityModel model = createModel(6);
+		for(int x = 1; x <= 13; x++) {
+			for(int y = 1; y <= 3; y++) {
+				boolean frontier = y == 2 ? x % 2 == 1 : x % 2 == 0;
+				double p = model.getPitProbability(new Room(x, y));
+				// the breezy rooms and the start are safe
+				double expected = frontier ? approximation()
+						: y == 2 || x == 1 && y == 1 ? 0 : WumpusProbabilityModel.DEFAULT_PIT_PROBABILITY;
+				check(Math.abs(p - expected) < EPSILON, "approximated: room " + x + "," + y + " " + p);
+			}
+		}
+		check(model.getCacheMisses() == 1, "approximated: one component");
+	}
+
+	//
+	// PRIVATE
+	//
+
+	/**
+	 * @return a model of a (2k + 1)x3 cave with k breezy rooms in the middle row.
+	 */
+	private static WumpusProbabilityModel createModel(int k) {
+		WumpusProbabilityModel model = new WumpusProbabilityModel(2 * k + 1, 3, new Room(1, 1));
+		for(int i = 1; i <= k; i++)
+			model.observe(new Room(2 * i, 2), new WumpusPercept().setBreeze());
+		return model;
+	}
+
+	/**
+	 * @return P(pit | at least one pit among four rooms).
+	 */
+	private static double approximation() {
+		double p = WumpusProbabilityModel.DEFAULT_PIT_PROBABILITY;
+		return p / (1 - Math.pow(1 - p, 4));
+	}
+
+	private void check(boolean condition, String description) {
+		if(!condition) {
+			System.out.println("FAILED: " + description);
+			failures++;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.CompiledClauses;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.parsing.PLParser;
+import wumpusworld.core.logic.propositional.parsing.ast.ComplexSentence;
+import wumpusworld.core.logic.propositional.parsing.ast.Connective;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * Compares entailment checkers with {@link DPLL} on small random knowledge
+ * bases (differential testing). Each knowledge base starts with a prefix of
+ * clauses, which is told at once, followed by further clauses, which are told
+ * one after the other. Finally, one of the latter is retracted. After each
+ * change, all checkers answer the same queries: literals, clauses, conjunctions,
+ * contradictions and tautologies, also over symbols which do not occur in the
+ * knowledge base. Checkers implementing {@link IncrementalEntailmentChecker}
+ * also classify all queries in one batch and each query on its own. In
+ * addition, the knowledge base is saved as a snapshot and loaded again (see
+ * {@link KnowledgeBase#saveSnapshot(java.nio.channels.WritableByteChannel)}),
+ * and {@link DPLL} has to give the same answers for the loaded one. Every
+ * difference is reported.<br>
+ * <br>
+ * Usage: <code>java wumpusworld.core.logic.propositional.inference.EntailmentCrossCheck
+ * [&lt;number of knowledge bases&gt; [&lt;seed&gt;]]</code>. The exit code is 1
+ * if a difference has been found.
+ */
+public class EntailmentCrossCheck {
+	private static final int NUM_SYMBOLS = 6;
+	private static final String UNKNOWN_SYMBOL = "Fresh";
+
+	private final Map<String, Function<List<Clause>, ? extends EntailmentChecker>> checkers = new LinkedHashMap<>();
+	private final Set<String> satisfiableOnly = new HashSet<>();
+	private final DPLL reference = new DPLL();
+	private final PLParser parser = new PLParser();
+	private final Random random;
+
+	public static void main(String[] args) {
+		int numKBs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 4711;
+		EntailmentCrossCheck check = new EntailmentCrossCheck(seed);
+		check.addChecker("indexed-dpll", prefix -> new IndexedDPLL(), true);
+		check.addChecker("cdcl", prefix -> new CDCLSolver(), true);
+		check.addChecker("incremental-cdcl", prefix -> new IncrementalCDCLSolver(), true);
+		check.addChecker("obdd", prefix -> new OBDDEntailmentChecker(
+				CompiledClauses.compile(prefix, Collections.emptyList(), symbol -> false), new FailingChecker()), true);
+		// set of support is only refutation complete for satisfiable knowledge bases
+		check.addChecker("indexed-resolution", prefix -> new IndexedPLResolution(), false);
+		check.addChecker("portfolio", prefix -> PortfolioSolver.createDefault(), true);
+		int differences = check.run(numKBs, System.out::println);
+		System.out.println(numKBs + " knowledge bases, " + differences + " differences");
+		if(differences > 0)
+			System.exit(1);
+	}
+
+	public EntailmentCrossCheck(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * @param factory creates a checker for each knowledge base, given the
+	 * clauses the knowledge base starts with. They are never retracted.
+	 * @param complete false if the checker is only complete for satisfiable
+	 * knowledge bases (then, unsatisfiable ones are skipped).
+	 * @return this check.
+	 */
+	public EntailmentCrossCheck addChecker(String name, Function<List<Clause>, ? extends EntailmentChecker> factory,
+	                                       boolean complete) {
+		checkers.put(name, factory);
+		if(!complete)
+			satisfiableOnly.add(name);
+		return this;
+	}
+
+	/**
+	 * Checks the given number of random knowledge bases and passes a
+	 * description of each difference to the consumer.
+	 *
+	 * @return the number of differences.
+	 */
+	public int run(int numKBs, Consumer<String> out) {
+		int differences = 0;
+		for(int i = 0; i < numKBs; i++)
+			differences += checkKnowledgeBase(i, out);
+		return differences;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private int checkKnowledgeBase(int number, Consumer<String> out) {
+		List<Clause> prefix = randomClauses(random.nextInt(5));
+		List<Clause> online = randomClauses(1 + random.nextInt(5));
+		List<Sentence> queries = randomQueries();
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tellClauses(prefix);
+		// without duplicates
+		List<Clause> initial = new ArrayList<>(kb.getClauseStore().asList());
+		Map<String, EntailmentChecker> instances = new LinkedHashMap<>();
+		for(Map.Entry<String, Function<List<Clause>, ? extends EntailmentChecker>> checker : checkers.entrySet())
+			instances.put(checker.getKey(), checker.getValue().apply(initial));
+		String name = "KB " + number;
+		int differences = check(name, kb, queries, instances, out);
+		for(Clause clause : online) {
+			kb.tell(clause);
+			differences += check(name, kb, queries, instances, out);
+		}
+		// only clauses which have been told after the initial ones
+		Clause obsolete = online.get(random.nextInt(online.size()));
+		if(!initial.contains(obsolete)) {
+			kb.retract(Arrays.asList(obsolete));
+			differences += check(name, kb, queries, instances, out);
+		}
+		return differences;
+	}
+
+	private int check(String name, KnowledgeBase kb, List<Sentence> queries, Map<String, EntailmentChecker> instances,
+	                  Consumer<String> out) {
+		Boolean[] expected = new Boolean[queries.size()];
+		for(int i = 0; i < queries.size(); i++) {
+			Sentence query = queries.get(i);
+			if(reference.isEntailed(kb, query))
+				expected[i] = Boolean.TRUE;
+			else if(reference.isEntailed(kb, new ComplexSentence(Connective.NOT, query)))
+				expected[i] = Boolean.FALSE;
+		}
+		boolean satisfiable = !reference.isEntailed(kb, parser.parse(UNKNOWN_SYMBOL + " & ~" + UNKNOWN_SYMBOL));
+		int differences = checkSnapshot(name, kb, queries, expected, out);
+		for(Map.Entry<String, EntailmentChecker> instance : instances.entrySet()) {
+			if(!satisfiable && satisfiableOnly.contains(instance.getKey()))
+				continue;
+			EntailmentChecker checker = instance.getValue();
+			for(int i = 0; i < queries.size(); i++) {
+				boolean entailed = checker.isEntailed(kb, queries.get(i));
+				if(entailed != Boolean.TRUE.equals(expected[i])) {
+					out.accept(name + " " + kb + ": " + instance.getKey() + ".isEntailed(" + queries.get(i) + ") = "
+							+ entailed + ", expected " + !entailed);
+					differences++;
+				}
+			}
+			if(checker instanceof IncrementalEntailmentChecker) {
+				// all queries in one batch, and each query on its own
+				IncrementalEntailmentChecker incremental = (IncrementalEntailmentChecker) checker;
+				Boolean[] classification = incremental.classify(kb, queries);
+				for(int i = 0; i < queries.size(); i++) {
+					Boolean single = incremental.classify(kb, queries.subList(i, i + 1))[0];
+					for(Boolean actual : new Boolean[]{classification[i], single}) {
+						if(!Objects.equals(actual, expected[i])) {
+							out.accept(name + " " + kb + ": " + instance.getKey() + ".classify(" + queries.get(i) + ") = "
+									+ actual + ", expected " + expected[i]);
+							differences++;
+						}
+					}
+				}
+			}
+		}
+		return differences;
+	}
+
+	private int checkSnapshot(String name, KnowledgeBase kb, List<Sentence> queries, Boolean[] expected,
+	                          Consumer<String> out) {
+		KnowledgeBase loaded;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			kb.saveSnapshot(Channels.newChannel(bytes));
+			loaded = KnowledgeBase.loadSnapshot(ByteBuffer.wrap(bytes.toByteArray()));
+		} catch(IOException e) {
+			out.accept(name + " " + kb + ": snapshot failed: " + e);
+			return 1;
+		}
+		if(!loaded.asCNF().equals(kb.asCNF())) {
+			out.accept(name + " " + kb + ": snapshot loaded as " + loaded);
+			return 1;
+		}
+		int differences = 0;
+		for(int i = 0; i < queries.size(); i++) {
+			boolean entailed = reference.isEntailed(loaded, queries.get(i));
+			if(entailed != Boolean.TRUE.equals(expected[i])) {
+				out.accept(name + " " + kb + ": loaded snapshot entails " + queries.get(i) + " = " + entailed
+						+ ", expected " + !entailed);
+				differences++;
+			}
+		}
+		return differences;
+	}
+
+	private List<Clause> randomClauses(int n) {
+		List<Clause> result = new ArrayList<>();
+		for(int i = 0; i < n; i++) {
+			List<Literal> literals = new ArrayList<>();
+			int size = 1 + random.nextInt(3);
+			for(int j = 0; j < size; j++)
+				literals.add(new Literal(new PropositionSymbol(randomSymbol()), random.nextBoolean()));
+			result.add(new Clause(literals));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns queries of all kinds, including contradictions (whose negation
+	 * is valid) and tautologies (whose negation contains an empty clause).
+	 */
+	private List<Sentence> randomQueries() {
+		String s1 = randomSymbol();
+		String s2 = randomSymbol();
+		String s3 = randomSymbol();
+		List<Sentence> result = new ArrayList<>();
+		result.add(parser.parse(s1));
+		result.add(parser.parse("~" + s2));
+		result.add(parser.parse(s1 + " | ~" + s3));
+		result.add(parser.parse(s2 + " & " + s3));
+		result.add(parser.parse("(" + s1 + " => " + s2 + ") & ~" + s3));
+		result.add(parser.parse(s1 + " <=> " + s3));
+		result.add(parser.parse(s2 + " & ~" + s2));
+		result.add(parser.parse(s3 + " | ~" + s3));
+		result.add(parser.parse(UNKNOWN_SYMBOL));
+		result.add(parser.parse(UNKNOWN_SYMBOL + " & ~" + UNKNOWN_SYMBOL));
+		result.add(parser.parse(UNKNOWN_SYMBOL + " | " + s1));
+		return result;
+	}
+
+	private String randomSymbol() {
+		return "S" + random.nextInt(NUM_SYMBOLS);
+	}
+
+	/**
+	 * A fallback which makes sure that all queries are answered by the checker under test.
+	 */
+	private static class FailingChecker implements EntailmentChecker {
+		@Override
+		public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+			throw new IllegalStateException("Fallback used for " + alpha);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package wumpusworld.core.logic.propositional.inference;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import wumpusworld.core.logic.propositional.kb.KnowledgeBase;
+import wumpusworld.core.logic.propositional.parsing.PLParser;
+import wumpusworld.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * Checks that engines of a {@link PortfolioSolver} which throw exceptions or
+ * errors neither hang nor break the portfolio.<br>
+ * <br>
+ * Usage: <code>java wumpusworld.core.logic.propositional.inference.PortfolioSolverTest</code>.
+ * The exit code is 1 if a check fails.
+ */
+public class PortfolioSolverTest {
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	private final PLParser parser = new PLParser();
+	private int failures;
+
+	public static void main(String[] args) throws InterruptedException {
+		PortfolioSolverTest test = new PortfolioSolverTest();
+		test.testEngineThrowingError();
+		test.testEngineThrowingException();
+		test.testOnlyFailingEngine();
+		System.out.println(test.failures == 0 ? "OK" : test.failures + " failed checks");
+		if(test.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * An error such as a stack overflow must end the race of the engine.
+	 */
+	public void testEngineThrowingError() throws InterruptedException {
+		AtomicInteger created = new AtomicInteger();
+		PortfolioSolver portfolio = new PortfolioSolver();
+		portfolio.addEngine("broken", () -> new ThrowingChecker(created, new StackOverflowError()), true);
+		portfolio.addEngine("dpll", IndexedDPLL::new, true);
+		checkAnswers(portfolio, "error");
+		check(portfolio.getMetrics().getLong("broken.failures") == 2, "error: failures counted");
+		// the object created by addEngine failed in the first query, so the second query needs a new one
+		check(created.get() == 2, "error: failed objects discarded, created " + created.get());
+	}
+
+	public void testEngineThrowingException() throws InterruptedException {
+		AtomicInteger created = new AtomicInteger();
+		PortfolioSolver portfolio = new PortfolioSolver();
+		portfolio.addEngine("broken", () -> new ThrowingChecker(created, new IllegalStateException()), true);
+		portfolio.addEngine("dpll", IndexedDPLL::new, true);
+		checkAnswers(portfolio, "exception");
+		check(portfolio.getMetrics().getLong("broken.failures") == 2, "exception: failures counted");
+		check(created.get() == 2, "exception: failed objects discarded, created " + created.get());
+	}
+
+	/**
+	 * Without any working engine, the query is undecided, but it returns.
+	 */
+	public void testOnlyFailingEngine() throws InterruptedException {
+		PortfolioSolver portfolio = new PortfolioSolver();
+		portfolio.addEngine("broken", () -> new ThrowingChecker(new AtomicInteger(), new StackOverflowError()), true);
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tell("P");
+		check(askWithTimeout(portfolio, kb, parser.parse("Q")) != null, "only failing engine: query returns");
+		check(portfolio.getMetrics().getLong(PortfolioSolver.METRIC_UNDECIDED) == 1,
+				"only failing engine: undecided");
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void checkAnswers(PortfolioSolver portfolio, String name) throws InterruptedException {
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tell("P & (P => Q)");
+		check(Boolean.TRUE.equals(askWithTimeout(portfolio, kb, parser.parse("Q"))), name + ": entailed");
+		check(Boolean.FALSE.equals(askWithTimeout(portfolio, kb, parser.parse("R"))), name + ": not entailed");
+	}
+
+	/**
+	 * @return the answer, or null if the query did not return in time.
+	 */
+	private Boolean askWithTimeout(PortfolioSolver portfolio, KnowledgeBase kb, Sentence query)
+			throws InterruptedException {
+		Boolean[] result = new Boolean[1];
+		Thread thread = new Thread(() -> result[0] = portfolio.isEntailed(kb, query));
+		thread.setDaemon(true);
+		thread.start();
+		thread.join(TIMEOUT_MILLIS);
+		return thread.isAlive() ? null : result[0];
+	}
+
+	private void check(boolean condition, String description) {
+		if(!condition) {
+			System.out.println("FAILED: " + description);
+			failures++;
+		}
+	}
+
+	private static class ThrowingChecker implements EntailmentChecker {
+		private final Throwable throwable;
+
+		ThrowingChecker(AtomicInteger created, Throwable throwable) {
+			created.incrementAndGet();
+			this.throwable = throwable;
+		}
+
+		@Override
+		public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+			if(throwable instanceof Error)
+				throw (Error) throwable;
+			throw (RuntimeException) throwable;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package wumpusworld.core.logic.propositional.kb;
+
+import java.util.Arrays;
+
+import wumpusworld.core.logic.propositional.inference.DPLL;
+import wumpusworld.core.logic.propositional.kb.data.Clause;
+import wumpusworld.core.logic.propositional.kb.data.Literal;
+import wumpusworld.core.logic.propositional.parsing.PLParser;
+import wumpusworld.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * Checks the retraction of clauses which have been told directly.<br>
+ * <br>
+ * Usage: <code>java wumpusworld.core.logic.propositional.kb.KnowledgeBaseTest</code>.
+ * The exit code is 1 if a check fails.
+ */
+public class KnowledgeBaseTest {
+	private final PLParser parser = new PLParser();
+	private final DPLL dpll = new DPLL();
+	private int failures;
+
+	public static void main(String[] args) {
+		KnowledgeBaseTest test = new KnowledgeBaseTest();
+		test.testRetractClauseOfSentence();
+		test.testRetractClause();
+		System.out.println(test.failures == 0 ? "OK" : test.failures + " failed checks");
+		if(test.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * A clause which has been told directly and also belongs to the CNF of a
+	 * sentence told afterwards stays in the knowledge base.
+	 */
+	public void testRetractClauseOfSentence() {
+		Clause p = new Clause(new Literal(new PropositionSymbol("P")));
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tell(p);
+		kb.tell("P & (P => Q)");
+		check(kb.retract(Arrays.asList(p)) == 1, "shared clause: told clause retracted");
+		check(kb.getSentences().equals(Arrays.asList(parser.parse("P & (P => Q)"))), "shared clause: sentence kept");
+		check(kb.asCNF().contains(p), "shared clause: clause kept");
+		check(dpll.isEntailed(kb, parser.parse("Q")), "shared clause: Q entailed");
+	}
+
+	public void testRetractClause() {
+		Clause p = new Clause(new Literal(new PropositionSymbol("P")));
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tell("P => Q");
+		kb.tell(p);
+		check(dpll.isEntailed(kb, parser.parse("Q")), "told clause: Q entailed");
+		check(kb.retract(Arrays.asList(p)) == 1, "told clause: retracted");
+		check(!kb.asCNF().contains(p), "told clause: removed");
+		check(!dpll.isEntailed(kb, parser.parse("Q")), "told clause: Q no longer entailed");
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private void check(boolean condition, String description) {
+		if(!condition) {
+			System.out.println("FAILED: " + description);
+			failures++;
+		}
+	}
+}